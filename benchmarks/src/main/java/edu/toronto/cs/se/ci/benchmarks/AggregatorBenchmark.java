@@ -0,0 +1,136 @@
+package edu.toronto.cs.se.ci.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.Aggregator;
+import edu.toronto.cs.se.ci.IncrementalAggregator;
+import edu.toronto.cs.se.ci.aggregators.ProbBeliefAggregator;
+import edu.toronto.cs.se.ci.aggregators.ProbabalisticAggregator;
+import edu.toronto.cs.se.ci.aggregators.RankAggregator;
+import edu.toronto.cs.se.ci.aggregators.SetIntersectionAggregator;
+import edu.toronto.cs.se.ci.aggregators.SetUnionAggregator;
+import edu.toronto.cs.se.ci.aggregators.SetVotingAggregator;
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.aggregators.VoteProbAggregator;
+import edu.toronto.cs.se.ci.aggregators.WeightedMeanAggregator;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Trust;
+
+/**
+ * Benchmarks every aggregator in {@code edu.toronto.cs.se.ci.aggregators}, across numbers of
+ * opinions, and numbers of distinct answers given by those opinions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class AggregatorBenchmark {
+
+	@Param({ "Vote", "VoteProb", "Probabalistic", "ProbBelief", "Rank", "WeightedMean", "SetVoting", "SetUnion", "SetIntersection" })
+	public String aggregator;
+
+	@Param({ "10", "100", "1000" })
+	public int opinions;
+
+	@Param({ "2", "10", "100" })
+	public int cardinality;
+
+	private Aggregator agg;
+	private List<Opinion> list;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		list = new ArrayList<>(opinions);
+
+		for (int i = 0; i < opinions; i++) {
+			double trust = 0.1 + 0.8 * random.nextDouble();
+			int answer = random.nextInt(cardinality);
+
+			switch (aggregator) {
+			case "Vote":
+			case "ProbBelief":
+			case "Rank":
+				list.add(new Opinion<Integer, Double>(answer, trust));
+				break;
+			case "VoteProb":
+			case "Probabalistic":
+				list.add(new Opinion<Integer, Trust>(answer, new Trust(trust)));
+				break;
+			case "WeightedMean":
+				list.add(new Opinion<Double, Double>((double) answer, trust));
+				break;
+			default:
+				// Each source reports a random half of the items
+				Set<Integer> items = new HashSet<>();
+				for (int item = 0; item < cardinality; item++) {
+					if (random.nextBoolean())
+						items.add(item);
+				}
+				list.add(new Opinion<Set<Integer>, Double>(items, trust));
+			}
+		}
+
+		switch (aggregator) {
+		case "Vote": agg = new VoteAggregator<Integer>(); break;
+		case "VoteProb": agg = new VoteProbAggregator<Integer>(); break;
+		case "Probabalistic": agg = new ProbabalisticAggregator<Integer>(cardinality); break;
+		case "ProbBelief": agg = new ProbBeliefAggregator<Integer>(); break;
+		case "Rank": agg = new RankAggregator<Integer, Double>(); break;
+		case "WeightedMean": agg = new WeightedMeanAggregator(); break;
+		case "SetVoting": agg = new SetVotingAggregator<Integer>(0.5); break;
+		case "SetUnion": agg = new SetUnionAggregator<Integer, Double>(); break;
+		case "SetIntersection": agg = new SetIntersectionAggregator<Integer, Double>(); break;
+		default: throw new IllegalArgumentException("Unknown aggregator " + aggregator);
+		}
+	}
+
+	/**
+	 * Aggregates every opinion at once
+	 */
+	@Benchmark
+	public Optional aggregate() {
+		return agg.aggregate(list);
+	}
+
+	/**
+	 * Produces a result after each opinion arrives, as an invocation with an acceptor does
+	 */
+	@Benchmark
+	public void perOpinion(Blackhole blackhole) {
+		if (agg instanceof IncrementalAggregator) {
+			IncrementalAggregator.Accumulator accumulator = ((IncrementalAggregator) agg).newAccumulator();
+			for (Opinion opinion : list) {
+				accumulator.add(opinion);
+				blackhole.consume(accumulator.getResult());
+			}
+		} else {
+			for (int i = 1; i <= list.size(); i++)
+				blackhole.consume(agg.aggregate(list.subList(0, i)));
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package edu.toronto.cs.se.ci.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Budgets;
+import edu.toronto.cs.se.ci.budget.CompiledBudget;
+import edu.toronto.cs.se.ci.budget.CostPlan;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.basic.Dollars;
+import edu.toronto.cs.se.ci.budget.basic.Flag;
+import edu.toronto.cs.se.ci.budget.basic.MicroDollars;
+import edu.toronto.cs.se.ci.budget.basic.RequiredFlag;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+
+/**
+ * Benchmarks spending a typical source's cost from a typical budget.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BudgetBenchmark {
+
+	private final Allowance[] budget = new Allowance[] {
+			new Time(30, TimeUnit.SECONDS),
+			new Dollars(new BigDecimal("2.50")),
+			new Flag("network"),
+			new Flag("cached")
+	};
+
+	private final Expenditure[] cost = new Expenditure[] {
+			new Time(800, TimeUnit.MILLISECONDS),
+			new Dollars(new BigDecimal("0.015")),
+			new RequiredFlag("network")
+	};
+
+	// The same budget and cost, with Dollars replaced by MicroDollars
+	private final Allowance[] microBudget = new Allowance[] {
+			new Time(30, TimeUnit.SECONDS),
+			new MicroDollars(2500000),
+			new Flag("network"),
+			new Flag("cached")
+	};
+
+	private final Expenditure[] microCost = new Expenditure[] {
+			new Time(800, TimeUnit.MILLISECONDS),
+			new MicroDollars(15000),
+			new RequiredFlag("network")
+	};
+
+	// The same budget and cost, compiled once as an invocation does
+	private final CompiledBudget compiledBudget = CompiledBudget.compile(budget);
+	private final CostPlan plan = compiledBudget.plan(cost);
+
+	@Benchmark
+	public Optional<Allowance[]> expend() {
+		return Budgets.expend(budget, cost);
+	}
+
+	@Benchmark
+	public Optional<Allowance[]> expendMicroDollars() {
+		return Budgets.expend(microBudget, microCost);
+	}
+
+	@Benchmark
+	public boolean withinBudget() {
+		return Budgets.withinBudget(budget, cost);
+	}
+
+	@Benchmark
+	public boolean withinCompiledBudget() {
+		return compiledBudget.withinBudget(plan, Optional.absent());
+	}
+
+	@Benchmark
+	public Optional<CompiledBudget> expendCompiled() {
+		return compiledBudget.expend(plan, Optional.absent());
+	}
+
+}
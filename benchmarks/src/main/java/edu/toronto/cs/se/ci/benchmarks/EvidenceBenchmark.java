@@ -0,0 +1,78 @@
+package edu.toronto.cs.se.ci.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.toronto.cs.se.ci.data.Evidence;
+import edu.toronto.cs.se.ci.data.EvidenceTable;
+import edu.toronto.cs.se.ci.data.Trust;
+
+/**
+ * Benchmarks conversions between the Trust and Evidence spaces, with and without an
+ * {@link EvidenceTable}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvidenceBenchmark {
+
+	/**
+	 * The belief of the trust being converted. Disbelief is a third of it.
+	 */
+	@Param({ "0.1", "0.45", "0.7" })
+	public double belief;
+
+	@Param({ "false", "true" })
+	public boolean table;
+
+	private Trust trust;
+	private Evidence evidence;
+
+	@Setup
+	public void setup() {
+		if (table) {
+			EvidenceTable evidenceTable = new EvidenceTable();
+			evidenceTable.build();
+			EvidenceTable.install(evidenceTable);
+		}
+
+		trust = new Trust(belief, belief / 3);
+		evidence = new Evidence(trust);
+	}
+
+	@TearDown
+	public void tearDown() {
+		EvidenceTable.install(null);
+	}
+
+	@Benchmark
+	public double confidence() {
+		return evidence.getConfidence();
+	}
+
+	@Benchmark
+	public Evidence trustToEvidence() {
+		return new Evidence(trust);
+	}
+
+	@Benchmark
+	public Trust evidenceToTrust() {
+		return new Trust(evidence);
+	}
+
+}
@@ -0,0 +1,135 @@
+package edu.toronto.cs.se.ci.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.ExecutionContexts;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+import edu.toronto.cs.se.ci.contexts.PerInvocationExecutionContext;
+import edu.toronto.cs.se.ci.contexts.VirtualThreadExecutionContext;
+import edu.toronto.cs.se.ci.data.Result;
+import edu.toronto.cs.se.ci.selectors.AllSelector;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+
+/**
+ * Benchmarks invoking a CI under each {@link edu.toronto.cs.se.ci.ExecutionContext}, with sources
+ * which answer immediately, which measures the overhead of the invocation, and with sources which
+ * block for a while, as they would on remote I/O.
+ * 
+ * <p>The {@code virtual} context requires Java 21 or later. On older runtimes its constructor throws, so
+ * JMH reports those runs as failed and carries on with the rest, unless it is run with {@code -foe true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvocationBenchmark {
+
+	@Param({ "1", "8", "32" })
+	public int sources;
+
+	@Param({ "default", "perInvocation", "virtual" })
+	public String context;
+
+	// The time each source blocks for before it answers, in milliseconds
+	@Param({ "0", "1", "10" })
+	public int latency;
+
+	private CI<Integer, Integer, Double, Double> ci;
+
+	// Never runs out, but its timeout is scheduled on the shared timer and cancelled by every invocation
+	private final Allowance[] budget = { new Time(1, TimeUnit.MINUTES) };
+
+	/**
+	 * A source which answers with its input, after blocking for its latency
+	 */
+	private static class EchoSource extends BasicSource<Integer, Integer, Double> {
+
+		private final String name;
+		private final int latency;
+
+		public EchoSource(String name, int latency) {
+			this.name = name;
+			this.latency = latency;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			if (latency > 0) {
+				try {
+					Thread.sleep(latency);
+				} catch (InterruptedException e) {
+					throw new UnknownException(e);
+				}
+			}
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	@Setup
+	public void setup() {
+		List<Source<Integer, Integer, Double>> list = new ArrayList<>();
+		for (int i = 0; i < sources; i++)
+			list.add(new EchoSource("echo-" + i, latency));
+
+		ci = new CI<>(list, new VoteAggregator<Integer>(), new AllSelector<Integer, Integer, Double>());
+
+		switch (context) {
+		case "default": ci.setExecutionContext(ExecutionContexts.getDefault()); break;
+		case "perInvocation": ci.setExecutionContext(new PerInvocationExecutionContext()); break;
+		case "virtual": ci.setExecutionContext(new VirtualThreadExecutionContext()); break;
+		default: throw new IllegalArgumentException("Unknown context " + context);
+		}
+	}
+
+	@Benchmark
+	public Result<Integer, Double> apply() throws InterruptedException, ExecutionException {
+		return ci.apply(7, budget).get();
+	}
+
+	@Benchmark
+	public Result<Integer, Double> applySync() throws InterruptedException, ExecutionException {
+		return ci.applySync(7, budget);
+	}
+
+}
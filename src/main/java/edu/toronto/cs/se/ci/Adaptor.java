@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 
 import edu.toronto.cs.se.ci.budget.Expenditure;
 import edu.toronto.cs.se.ci.data.Opinion;
@@ -83,6 +85,20 @@ public abstract class Adaptor<I, O, T, OI, OO, OT> {
 	 */
 	public abstract Opinion<O, T> getOpinion(I args, Source<OI, OO, OT> around) throws UnknownException;
 	
+	/**
+	 * Determine the opinion of the adapted source asynchronously. By default, this runs
+	 * {@link #getOpinion(Object, Source)} on {@code pool}. Adaptors should override this to
+	 * transform the result of {@link Source#getOpinionAsync} when the wrapped source is non-blocking.
+	 * 
+	 * @param args The input arguments to the Source
+	 * @param around The source being wrapped
+	 * @param pool The invocation's executor, which may be used to run blocking work
+	 * @return A future for the opinion of the adapted source
+	 */
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(final I args, final Source<OI, OO, OT> around, ListeningExecutorService pool) {
+		return pool.submit(Deadline.propagate(() -> getOpinion(args, around)));
+	}
+	
 	/**
 	 * Determine the trust in the adapted source
 	 * 
@@ -135,6 +151,15 @@ public abstract class Adaptor<I, O, T, OI, OO, OT> {
 			return Adaptor.this.getOpinion(args, around);
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * @see edu.toronto.cs.se.ci.Source#getOpinionAsync(java.lang.Object, com.google.common.util.concurrent.ListeningExecutorService)
+		 */
+		@Override
+		public ListenableFuture<Opinion<O, T>> getOpinionAsync(I args, ListeningExecutorService pool) {
+			return Adaptor.this.getOpinionAsync(args, around, pool);
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * @see edu.toronto.cs.se.ci.Source#getTrust(java.lang.Object, com.google.common.base.Optional)
@@ -0,0 +1,157 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import edu.toronto.cs.se.ci.budget.Allowance;
+
+/**
+ * Runs a {@link CI} over many inputs, bounding the number of invocations in flight. Used
+ * internally by {@link CI#applyAll(Iterator, Allowance[], int, boolean)}.
+ * 
+ * @param <I> Input type
+ * @param <O> Result type
+ * @param <T> Trust type
+ * @param <Q> Quality type
+ */
+class Batch<I, O, T, Q> implements Iterator<CI<I, O, T, Q>.Invocation> {
+
+	private final CI<I, O, T, Q> ci;
+	private final Iterator<I> inputs;
+	private final Allowance[] budget;
+	private final int parallelism;
+	private final boolean ordered;
+
+	// Completed invocations are refilled on the context's selector executor, for an executor scoped to the batch
+	private final ListeningExecutorService scope;
+	private final Executor refills;
+
+	// Invocations in input order (only used when ordered)
+	private final Deque<CI<I, O, T, Q>.Invocation> started = new ArrayDeque<>();
+	// Invocations in completion order (only used when not ordered)
+	private final LinkedBlockingQueue<CI<I, O, T, Q>.Invocation> completed = new LinkedBlockingQueue<>();
+
+	// Number of invocations which haven't completed yet
+	private int running = 0;
+	// Number of invocations which haven't been returned by next() yet
+	private int pending = 0;
+	private boolean filling = false;
+
+	public Batch(CI<I, O, T, Q> ci, Iterator<I> inputs, Allowance[] budget, int parallelism, boolean ordered) {
+		this.ci = ci;
+		this.inputs = inputs;
+		this.budget = budget;
+		this.parallelism = parallelism;
+		this.ordered = ordered;
+
+		ExecutionContext context = ci.getExecutionContext();
+		this.scope = context.newInvocationExecutor();
+		this.refills = context.getSelectorExecutor(scope);
+
+		fill();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public synchronized boolean hasNext() {
+		return pending > 0 || inputs.hasNext();
+	}
+
+	/**
+	 * Returns the next completed invocation, blocking until one is available.
+	 */
+	@Override
+	public CI<I, O, T, Q>.Invocation next() {
+		CI<I, O, T, Q>.Invocation next;
+
+		synchronized (this) {
+			fill();
+
+			if (pending <= 0)
+				throw new NoSuchElementException();
+
+			next = ordered ? started.poll() : null;
+		}
+
+		if (ordered) {
+			// Wait for the head of the batch to complete. Failure is reported through the estimate.
+			try {
+				Uninterruptibles.getUninterruptibly(next.getEstimate());
+			} catch (ExecutionException | CancellationException e) { }
+		} else {
+			next = Uninterruptibles.takeUninterruptibly(completed);
+		}
+
+		synchronized (this) {
+			pending--;
+			fill();
+		}
+
+		return next;
+	}
+
+	/**
+	 * Starts invocations until either the parallelism limit or the buffer limit is reached.
+	 * Re-entrant calls (from invocations which complete immediately) are ignored, as the
+	 * outer call will keep filling.
+	 */
+	private synchronized void fill() {
+		if (filling)
+			return;
+
+		filling = true;
+		try {
+			while (running < parallelism && pending < 2 * parallelism && inputs.hasNext()) {
+				start(inputs.next());
+			}
+		} finally {
+			filling = false;
+		}
+	}
+
+	private synchronized void start(I input) {
+		final CI<I, O, T, Q>.Invocation invocation = ci.invoke(input, budget);
+
+		running++;
+		pending++;
+		if (ordered)
+			started.add(invocation);
+
+		// The estimate's listeners run while its lock is held, so inputs are read and invocations started elsewhere
+		invocation.getEstimate().addListener(() -> {
+			synchronized (Batch.this) {
+				running--;
+				if (! ordered)
+					completed.add(invocation);
+
+				fill();
+
+				// Nothing is left to refill
+				if (running == 0 && ! inputs.hasNext())
+					scope.shutdown();
+			}
+		}, refills);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -0,0 +1,255 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Limits how many queries of each source may run at once, across every invocation it is attached to,
+ * so that one slow or rate-limited source can't take every thread from the others. Attach a bulkhead to
+ * a CI with {@link CI#setBulkhead(Bulkhead)}. While a source has as many queries running as its limit
+ * allows, invocations see it as unavailable: {@link CI.Invocation#withinBudget(Source)} is false, and
+ * selecting it anyway rejects it, rather than queueing it.
+ * 
+ * <p>Limits adapt to how the source responds, by additive increase and multiplicative decrease. Each
+ * opinion given while the source is busy raises its limit by {@code 1 / limit}, so the limit grows by about one
+ * for every limit's worth of opinions. Each failure, including an {@link UnknownException}, and each opinion
+ * which took more than {@code tolerance} times the source's usual latency, multiplies the limit by {@code backoff}.
+ * Cancelled queries don't change the limit.
+ * 
+ * <p>Sources are identified by {@link Source#getName()}. Sources which share a backend may share a limit,
+ * by putting them in the same group with {@link #group(Source, String)}.
+ */
+public class Bulkhead {
+
+	// The weight of each latency in a compartment's usual latency
+	private static final double SMOOTHING = 0.05;
+
+	// The number of latencies a compartment must see before it can tell that one is slow
+	private static final long WARMUP = 10;
+
+	private final int initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoff;
+	private final double tolerance;
+
+	private final ConcurrentMap<String, String> groups = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Compartment> compartments = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a bulkhead which allows 10 concurrent queries of each source at first, and adapts that limit
+	 * between 1 and 200. Limits are multiplied by 0.9 when a source fails, or takes more than twice as long as usual.
+	 */
+	public Bulkhead() {
+		this(10, 1, 200, 0.9, 2);
+	}
+
+	/**
+	 * @param initialLimit The number of concurrent queries of each source allowed at first
+	 * @param minLimit The least the limit may be reduced to, at least 1
+	 * @param maxLimit The most the limit may be raised to
+	 * @param backoff The factor by which the limit is multiplied when a source is overloaded, in (0, 1)
+	 * @param tolerance How many times its usual latency a source may take before it is considered overloaded, at least 1
+	 */
+	public Bulkhead(int initialLimit, int minLimit, int maxLimit, double backoff, double tolerance) {
+		if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit)
+			throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+		if (backoff <= 0 || backoff >= 1)
+			throw new IllegalArgumentException("Backoff must be in (0, 1)");
+		if (tolerance < 1)
+			throw new IllegalArgumentException("Tolerance must be at least 1");
+
+		this.initialLimit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.backoff = backoff;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Put a source in a group, whose sources share a single limit. Queries which are already running
+	 * stay in the source's previous group.
+	 * 
+	 * @param source The source
+	 * @param group The name of the group
+	 */
+	public void group(Source<?, ?, ?> source, String group) {
+		groups.put(source.getName(), group);
+	}
+
+	/**
+	 * @param source A source
+	 * @return The name of the group whose limit the source shares, which is the source's own name, unless
+	 * it was put in a group
+	 */
+	public String getGroup(Source<?, ?, ?> source) {
+		String group = groups.get(source.getName());
+		return group == null ? source.getName() : group;
+	}
+
+	/**
+	 * @param source A source
+	 * @return The number of queries of the source's group which may currently run at once
+	 */
+	public int getLimit(Source<?, ?, ?> source) {
+		return compartment(source).getLimit();
+	}
+
+	/**
+	 * @param source A source
+	 * @return The number of queries of the source's group which are running
+	 */
+	public int getInFlight(Source<?, ?, ?> source) {
+		return compartment(source).getInFlight();
+	}
+
+	/**
+	 * @param source A source
+	 * @return Whether another query of the source may run now
+	 */
+	public boolean isAvailable(Source<?, ?, ?> source) {
+		return compartment(source).isAvailable();
+	}
+
+	/**
+	 * Take a place for a query of a source, if its group isn't at its limit. The permit must be
+	 * released once the query has been made, or abandoned if it isn't made.
+	 * 
+	 * @param source The source
+	 * @return A permit to query the source, or {@code Optional.absent()} if the source is unavailable
+	 */
+	public Optional<Permit> acquire(Source<?, ?, ?> source) {
+		Compartment compartment = compartment(source);
+		if (! compartment.acquire())
+			return Optional.absent();
+
+		return Optional.of(new Permit(compartment));
+	}
+
+	private Compartment compartment(Source<?, ?, ?> source) {
+		String group = getGroup(source);
+		Compartment compartment = compartments.get(group);
+		if (compartment == null) {
+			compartments.putIfAbsent(group, new Compartment());
+			compartment = compartments.get(group);
+		}
+
+		return compartment;
+	}
+
+	/**
+	 * A place taken by a query of a source
+	 */
+	public final class Permit {
+
+		private final Compartment compartment;
+		private final long acquiredAt = System.nanoTime();
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Permit(Compartment compartment) {
+			this.compartment = compartment;
+		}
+
+		/**
+		 * Release the permit once the query completes, adapting the limit of the source to how it responded
+		 * 
+		 * @param opinion The query
+		 */
+		public void release(ListenableFuture<?> opinion) {
+			Futures.addCallback(opinion, new FutureCallback<Object>() {
+
+				@Override
+				public void onSuccess(Object result) {
+					if (released.compareAndSet(false, true))
+						compartment.succeeded(System.nanoTime() - acquiredAt);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					if (! released.compareAndSet(false, true))
+						return;
+
+					if (t instanceof CancellationException)
+						compartment.abandoned();
+					else
+						compartment.failed();
+				}
+
+			});
+		}
+
+		/**
+		 * Release the permit without querying the source
+		 */
+		public void abandon() {
+			if (released.compareAndSet(false, true))
+				compartment.abandoned();
+		}
+
+	}
+
+	/**
+	 * The limit of a group of sources, and the queries running within it
+	 */
+	private final class Compartment {
+
+		// Guarded by this
+		private double limit = initialLimit;
+		private int inFlight = 0;
+		private double usual = 0;
+		private long samples = 0;
+
+		public synchronized int getLimit() {
+			return (int) limit;
+		}
+
+		public synchronized int getInFlight() {
+			return inFlight;
+		}
+
+		public synchronized boolean isAvailable() {
+			return inFlight < (int) limit;
+		}
+
+		public synchronized boolean acquire() {
+			if (inFlight >= (int) limit)
+				return false;
+
+			inFlight++;
+			return true;
+		}
+
+		public synchronized void succeeded(long nanos) {
+			// Only raise the limit if it is being used, otherwise it would grow without bound while the source is idle
+			boolean busy = inFlight * 2 >= (int) limit;
+			inFlight--;
+
+			boolean slow = samples >= WARMUP && nanos > tolerance * usual;
+			usual = samples == 0 ? nanos : usual + (nanos - usual) * SMOOTHING;
+			samples++;
+
+			if (slow)
+				limit = Math.max(minLimit, limit * backoff);
+			else if (busy)
+				limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+
+		public synchronized void failed() {
+			inFlight--;
+			limit = Math.max(minLimit, limit * backoff);
+		}
+
+		public synchronized void abandoned() {
+			inFlight--;
+		}
+
+	}
+
+}
@@ -1,27 +1,48 @@
 package edu.toronto.cs.se.ci;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.BudgetLedger;
 import edu.toronto.cs.se.ci.budget.Budgets;
+import edu.toronto.cs.se.ci.budget.CompiledBudget;
+import edu.toronto.cs.se.ci.budget.CostPlan;
 import edu.toronto.cs.se.ci.budget.Expenditure;
 import edu.toronto.cs.se.ci.budget.basic.Time;
 import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.listeners.CompositeListener;
+import edu.toronto.cs.se.ci.metrics.CostModel;
 import edu.toronto.cs.se.ci.data.Result;
 
 /**
@@ -40,7 +61,17 @@ public class CI<I, O, T, Q> {
 	private final ImmutableSet<Source<I, O, T>> sources;
 	private final Aggregator<O, T, Q> agg;
 	private final Selector<I, O, T> sel;
+	private final ReactiveSelector<I, O, T> reactiveSel;
 	private final Acceptor<O, Q> acceptor;
+	private ExecutionContext context;
+	private volatile boolean coalescing = false;
+	private volatile InvocationListener listener = InvocationListener.NONE;
+	private volatile BudgetLedger ledger = null;
+	private volatile CostModel costModel = null;
+	private volatile HedgingPolicy<I, O, T> hedging = null;
+	private volatile Bulkhead bulkhead = null;
+	private volatile CircuitBreaker circuitBreaker = null;
+	private final ConcurrentHashMap<InvocationKey, Invocation> inflight = new ConcurrentHashMap<>();
 	
 	/**
 	 * Create a CI using source discovery
@@ -65,6 +96,29 @@ public class CI<I, O, T, Q> {
 		this(Contracts.discover(contract), agg, sel, acceptor);
 	}
 
+	/**
+	 * Create a CI using source discovery, whose invocations are driven by a {@link ReactiveSelector}
+	 * 
+	 * @param contract The {@link Contract} to discover sources with
+	 * @param agg The {@link Aggregator} to use
+	 * @param sel The {@link ReactiveSelector} to use
+	 */
+	public CI(Class<? extends Contract<I, O, T>> contract, Aggregator<O, T, Q> agg, ReactiveSelector<I, O, T> sel) {
+		this(Contracts.discover(contract), agg, sel);
+	}
+
+	/**
+	 * Create a CI using source discovery, whose invocations are driven by a {@link ReactiveSelector}
+	 * 
+	 * @param contract The {@link Contract} to discover sources with
+	 * @param agg The {@link Aggregator} to use
+	 * @param sel The {@link ReactiveSelector} to use
+	 * @param acceptor The {@link Acceptor} to use
+	 */
+	public CI(Class<? extends Contract<I, O, T>> contract, Aggregator<O, T, Q> agg, ReactiveSelector<I, O, T> sel, Acceptor<O, Q> acceptor) {
+		this(Contracts.discover(contract), agg, sel, acceptor);
+	}
+
 	/**
 	 * Create a CI using an explicit source set
 	 * 
@@ -73,10 +127,7 @@ public class CI<I, O, T, Q> {
 	 * @param sel The {@link Selector} to use
 	 */
 	public CI(Collection<Source<I, O, T>> sources, Aggregator<O, T, Q> agg, Selector<I, O, T> sel) {
-		this.sources = ImmutableSet.copyOf(sources);
-		this.agg = agg;
-		this.sel = sel;
-		this.acceptor = null;
+		this(sources, agg, sel, null, null);
 	}
 	
 	/**
@@ -88,12 +139,199 @@ public class CI<I, O, T, Q> {
 	 * @param acceptor The {@link Acceptor}
 	 */
 	public CI(Collection<Source<I, O, T>> sources, Aggregator<O, T, Q> agg, Selector<I, O, T> sel, Acceptor<O, Q> acceptor) {
+		this(sources, agg, sel, null, acceptor);
+	}
+	
+	/**
+	 * Create a CI using an explicit source set, whose invocations are driven by a {@link ReactiveSelector}
+	 * 
+	 * @param sources The {@link Source}s to select from
+	 * @param agg The {@link Aggregator} to use
+	 * @param sel The {@link ReactiveSelector} to use
+	 */
+	public CI(Collection<Source<I, O, T>> sources, Aggregator<O, T, Q> agg, ReactiveSelector<I, O, T> sel) {
+		this(sources, agg, null, sel, null);
+	}
+	
+	/**
+	 * Create a CI using an explicit source set, whose invocations are driven by a {@link ReactiveSelector}
+	 * 
+	 * @param sources The {@link Source}s to select from
+	 * @param agg The {@link Aggregator} to use
+	 * @param sel The {@link ReactiveSelector} to use
+	 * @param acceptor The {@link Acceptor}
+	 */
+	public CI(Collection<Source<I, O, T>> sources, Aggregator<O, T, Q> agg, ReactiveSelector<I, O, T> sel, Acceptor<O, Q> acceptor) {
+		this(sources, agg, null, sel, acceptor);
+	}
+	
+	/**
+	 * Exactly one of {@code sel} and {@code reactiveSel} is non-null
+	 */
+	private CI(Collection<Source<I, O, T>> sources, Aggregator<O, T, Q> agg, Selector<I, O, T> sel, ReactiveSelector<I, O, T> reactiveSel, Acceptor<O, Q> acceptor) {
+		if ((sel == null) == (reactiveSel == null))
+			throw new NullPointerException("A CI needs a selector");
+
 		this.sources = ImmutableSet.copyOf(sources);
 		this.agg = agg;
 		this.sel = sel;
+		this.reactiveSel = reactiveSel;
 		this.acceptor = acceptor;
 	}
 	
+	/**
+	 * Set the {@link ExecutionContext} which provides threads to invocations of this CI.
+	 * If no context is set, the global default from {@link ExecutionContexts#getDefault()}
+	 * is used.
+	 * 
+	 * @param context The context to use, or {@code null} to use the global default
+	 */
+	public void setExecutionContext(ExecutionContext context) {
+		this.context = context;
+	}
+	
+	/**
+	 * @return The {@link ExecutionContext} used by invocations of this CI
+	 */
+	public ExecutionContext getExecutionContext() {
+		if (context == null)
+			return ExecutionContexts.getDefault();
+		else
+			return context;
+	}
+	
+	/**
+	 * Enable or disable request coalescing. When enabled, a call to {@link #apply} made while an
+	 * identical invocation (with equal arguments and an equal budget) is still running attaches to
+	 * that invocation, rather than querying every source again. All such callers share a single
+	 * {@link Estimate}, so cancelling it cancels it for every one of them.
+	 * 
+	 * <p>Budgets are compared with {@code equals}. The allowances in
+	 * {@code edu.toronto.cs.se.ci.budget.basic} are compared by value.
+	 * 
+	 * @param coalescing Whether to coalesce identical invocations
+	 */
+	public void setCoalescing(boolean coalescing) {
+		this.coalescing = coalescing;
+	}
+	
+	/**
+	 * @return Whether identical invocations are coalesced
+	 */
+	public boolean isCoalescing() {
+		return coalescing;
+	}
+	
+	/**
+	 * Set the {@link InvocationListener} which receives the events of invocations of this CI.
+	 * Invocations which are already running keep the listener they started with. To attach
+	 * several listeners, use a {@link edu.toronto.cs.se.ci.listeners.CompositeListener}.
+	 * 
+	 * @param listener The listener, or {@code null} to ignore events
+	 */
+	public void setListener(InvocationListener listener) {
+		this.listener = listener == null ? InvocationListener.NONE : listener;
+	}
+	
+	/**
+	 * @return The {@link InvocationListener} which receives the events of invocations of this CI
+	 */
+	public InvocationListener getListener() {
+		return listener;
+	}
+	
+	/**
+	 * Share a {@link BudgetLedger} between the invocations of this CI, and any other CIs it is
+	 * attached to. The cost of each source is reserved from the ledger, as well as from the
+	 * invocation's budget. Invocations which are already running keep the ledger they started with.
+	 * 
+	 * @param ledger The ledger, or {@code null} to only spend from each invocation's budget
+	 */
+	public void setLedger(BudgetLedger ledger) {
+		this.ledger = ledger;
+	}
+	
+	/**
+	 * @return The {@link BudgetLedger} shared by the invocations of this CI, if there is one
+	 */
+	public Optional<BudgetLedger> getLedger() {
+		return Optional.fromNullable(ledger);
+	}
+	
+	/**
+	 * Estimate the cost of sources with a {@link CostModel}, rather than trusting the time they
+	 * declare. The model receives the events of each invocation, in addition to the CI's listener,
+	 * so it shouldn't also be attached as a listener. Invocations which are already running keep
+	 * the model they started with.
+	 * 
+	 * @param costModel The model, or {@code null} to use the costs declared by sources
+	 */
+	public void setCostModel(CostModel costModel) {
+		this.costModel = costModel;
+	}
+	
+	/**
+	 * @return The {@link CostModel} which estimates the costs of this CI's sources, if there is one
+	 */
+	public Optional<CostModel> getCostModel() {
+		return Optional.fromNullable(costModel);
+	}
+	
+	/**
+	 * Hedge slow sources, by querying an alternative once they have taken longer than usual. Latencies
+	 * are taken from the CI's {@link CostModel}, so sources are only hedged once a model has been set with
+	 * {@link #setCostModel(CostModel)}. Synchronous invocations, made with {@link #applySync}, are never hedged.
+	 * Invocations which are already running keep the policy they started with.
+	 * 
+	 * @param hedging The policy, or {@code null} to query each source once
+	 */
+	public void setHedgingPolicy(HedgingPolicy<I, O, T> hedging) {
+		this.hedging = hedging;
+	}
+	
+	/**
+	 * @return The {@link HedgingPolicy} of this CI, if there is one
+	 */
+	public Optional<HedgingPolicy<I, O, T>> getHedgingPolicy() {
+		return Optional.fromNullable(hedging);
+	}
+	
+	/**
+	 * Limit how many queries of each source may run at once, with a {@link Bulkhead}. Sources at their
+	 * limit are unavailable to invocations until one of their queries completes. One bulkhead may be
+	 * shared by several CIs. Invocations which are already running keep the bulkhead they started with.
+	 * 
+	 * @param bulkhead The bulkhead, or {@code null} to query sources without limit
+	 */
+	public void setBulkhead(Bulkhead bulkhead) {
+		this.bulkhead = bulkhead;
+	}
+	
+	/**
+	 * @return The {@link Bulkhead} which limits the queries of this CI's sources, if there is one
+	 */
+	public Optional<Bulkhead> getBulkhead() {
+		return Optional.fromNullable(bulkhead);
+	}
+	
+	/**
+	 * Stop querying sources which keep failing, with a {@link CircuitBreaker}. Sources whose circuit is open
+	 * are unavailable to invocations, so their cost isn't spent on them. One circuit breaker may be shared by
+	 * several CIs. Invocations which are already running keep the circuit breaker they started with.
+	 * 
+	 * @param circuitBreaker The circuit breaker, or {@code null} to query sources regardless of their health
+	 */
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+	
+	/**
+	 * @return The {@link CircuitBreaker} which tracks the health of this CI's sources, if there is one
+	 */
+	public Optional<CircuitBreaker> getCircuitBreaker() {
+		return Optional.fromNullable(circuitBreaker);
+	}
+	
 	/**
 	 * Invokes the CI
 	 * 
@@ -102,16 +340,149 @@ public class CI<I, O, T, Q> {
 	 * @return An {@link Estimate} of the CI's response
 	 */
 	public Estimate<O, Q> apply(I args, Allowance[] budget) {
-		// Create the thread pool
-		ListeningExecutorService pool = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
-		
-		// Create the invocation
-		Invocation invocation = new Invocation(args, budget, pool);
+		// Create the invocation, or attach to an identical one
+		Invocation invocation = coalescing ? coalesce(args, budget) : invoke(args, budget);
 		
 		// Return the estimate
 		return invocation.getEstimate();
 	}
 	
+	/**
+	 * Invokes the CI on every input. At most {@code parallelism} invocations run at once, and
+	 * all of them share the CI's {@link ExecutionContext}. Completed invocations are buffered
+	 * until they are consumed. Once {@code 2 * parallelism} invocations are either running or
+	 * buffered, no new invocations are started until the consumer catches up.
+	 * 
+	 * <p>The returned iterator yields each {@link Invocation} once its estimate is done. The
+	 * input can be retrieved with {@link Invocation#getArgs()}, and the result with
+	 * {@link Invocation#getEstimate()}. Inputs are only read from {@code inputs} as invocations
+	 * are started, so it may be arbitrarily large.
+	 * 
+	 * @param inputs The inputs to invoke the CI on
+	 * @param budget The budget allocated to each invocation
+	 * @param parallelism The maximum number of invocations running at once
+	 * @param ordered If {@code true}, invocations are returned in input order, otherwise they
+	 * are returned in completion order
+	 * @return An iterator over the completed invocations
+	 */
+	public Iterator<Invocation> applyAll(Iterator<I> inputs, Allowance[] budget, int parallelism, boolean ordered) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be at least 1");
+
+		return new Batch<I, O, T, Q>(this, inputs, budget, parallelism, ordered);
+	}
+	
+	/**
+	 * Invokes the CI on every input. See {@link #applyAll(Iterator, Allowance[], int, boolean)}.
+	 * 
+	 * @param inputs The inputs to invoke the CI on
+	 * @param budget The budget allocated to each invocation
+	 * @param parallelism The maximum number of invocations running at once
+	 * @param ordered Whether to return invocations in input order, rather than completion order
+	 * @return An iterable over the completed invocations, which starts a new batch each time it is iterated
+	 */
+	public Iterable<Invocation> applyAll(Iterable<I> inputs, Allowance[] budget, int parallelism, boolean ordered) {
+		return () -> applyAll(inputs.iterator(), budget, parallelism, ordered);
+	}
+	
+	/**
+	 * Invokes the CI on every input. See {@link #applyAll(Iterator, Allowance[], int, boolean)}.
+	 * 
+	 * @param inputs The inputs to invoke the CI on
+	 * @param budget The budget allocated to each invocation
+	 * @param parallelism The maximum number of invocations running at once
+	 * @param ordered Whether to return invocations in input order, rather than completion order
+	 * @return A sequential stream of the completed invocations
+	 */
+	public Stream<Invocation> applyAll(Stream<I> inputs, Allowance[] budget, int parallelism, boolean ordered) {
+		Iterator<Invocation> invocations = applyAll(inputs.iterator(), budget, parallelism, ordered);
+		Spliterator<Invocation> spliterator = Spliterators.spliteratorUnknownSize(invocations,
+				ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL);
+
+		return StreamSupport.stream(spliterator, false).onClose(inputs::close);
+	}
+	
+	/**
+	 * Creates and starts an invocation of the CI, using the CI's {@link ExecutionContext}
+	 * 
+	 * @param args The arguments to pass to the CI
+	 * @param budget The budget allocated to the CI
+	 * @return The running invocation
+	 */
+	Invocation invoke(I args, Allowance[] budget) {
+		// Get an executor for this invocation from the execution context
+		ExecutionContext context = getExecutionContext();
+		ListeningExecutorService pool = context.newInvocationExecutor();
+		
+		Invocation invocation = new Invocation(args, budget, pool, context.getSelectorExecutor(pool));
+		invocation.start();
+		return invocation;
+	}
+	
+	/**
+	 * Invokes the CI, attaching to an identical invocation which is already running if there
+	 * is one. Invocations are identical if their arguments are equal, and their budgets contain
+	 * equal allowances in the same order.
+	 * 
+	 * @param args The arguments to pass to the CI
+	 * @param budget The budget allocated to the CI
+	 * @return The running invocation
+	 */
+	private Invocation coalesce(I args, Allowance[] budget) {
+		InvocationKey key = new InvocationKey(args, budget);
+
+		AtomicBoolean created = new AtomicBoolean();
+
+		// The invocation is only built if there is no running invocation to attach to
+		Invocation invocation = inflight.compute(key, (k, existing) -> {
+			if (existing != null && ! existing.getEstimate().isDone())
+				return existing;
+
+			ExecutionContext context = getExecutionContext();
+			ListeningExecutorService pool = context.newInvocationExecutor();
+			Invocation fresh = new Invocation(args, budget, pool, context.getSelectorExecutor(pool));
+			created.set(true);
+			return fresh;
+		});
+
+		if (created.get()) {
+			// Stop attaching to the invocation once it is complete
+			invocation.getEstimate().addListener(() -> inflight.remove(key, invocation), MoreExecutors.sameThreadExecutor());
+			invocation.start();
+		}
+
+		return invocation;
+	}
+	
+	/**
+	 * The identity of an invocation, for the purpose of request coalescing
+	 */
+	private static final class InvocationKey {
+		
+		private final Object args;
+		private final Allowance[] budget;
+		
+		public InvocationKey(Object args, Allowance[] budget) {
+			this.args = args;
+			this.budget = budget;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (! (obj instanceof InvocationKey))
+				return false;
+			
+			InvocationKey other = (InvocationKey) obj;
+			return Objects.equals(args, other.args) && Arrays.equals(budget, other.budget);
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * Objects.hashCode(args) + Arrays.hashCode(budget);
+		}
+		
+	}
+	
 	/**
 	 * Invokes the CI, running on a single thread. Sources are queried sequentially
 	 * 
@@ -125,8 +496,10 @@ public class CI<I, O, T, Q> {
 		// sameThreadExecutor will cause this to run in sync
 		ListeningExecutorService pool = MoreExecutors.sameThreadExecutor();
 		
-		// Create the invocation
-		Invocation invocation = new Invocation(args, budget, pool);
+		// Create & run the invocation. Its sources are queried on this thread, so they can't be hedged.
+		Invocation invocation = new Invocation(args, budget, pool, pool);
+		invocation.hedging = null;
+		invocation.start();
 		
 		// Return the result
 		return invocation.getEstimate().get();
@@ -143,72 +516,635 @@ public class CI<I, O, T, Q> {
 		
 		// Parameters
 		private final I args;
-		private Allowance[] budget;
+		private volatile CompiledBudget budget;
 		private final ListeningExecutorService pool;
+		private final Executor selectors;
 		
-		// State
-		private final Set<Source<I, O, T>> remaining;
+		// State. Hedges take sources from the remaining set on the pool, while selectors read it.
+		private final Set<Source<I, O, T>> remaining = Collections.newSetFromMap(new ConcurrentHashMap<Source<I, O, T>, Boolean>());
 		private final Set<ListenableFuture<Opinion<O, T>>> opinions;
-		private final EstimateImpl<O, T, Q> estimate = new EstimateImpl<O, T, Q>(agg, acceptor);
+		private final ConcurrentMap<Source<I, O, T>, CostPlan> plans = new ConcurrentHashMap<>();
+		private final BudgetLedger ledger = CI.this.ledger;
+		private final CostModel costModel = CI.this.costModel;
+		private HedgingPolicy<I, O, T> hedging = CI.this.hedging;
+		private final Bulkhead bulkhead = CI.this.bulkhead;
+		private final CircuitBreaker circuitBreaker = CI.this.circuitBreaker;
+		private final InvocationListener events = costModel == null ? listener : new CompositeListener(listener, costModel);
+		private final EstimateImpl<O, T, Q> estimate = new EstimateImpl<O, T, Q>(agg, acceptor, this, events);
+		
+		// State of invocations driven by a ReactiveSelector, guarded by the estimate
+		private final ReactiveSelector<I, O, T> reactive = reactiveSel;
+		private int active = 0;
+		private int depth = 0;
 
+		private ListenableFutureTask<Void> loop;
 		private long startedAt = -1;
+		private volatile Deadline deadline = Deadline.none();
+		
+		// The part of the budget which hedges may still spend, guarded by the estimate
+		private CompiledBudget hedgeBudget;
 		
 		/**
-		 * Create an Invocation of the CI. This will run the invocation, and return immediately.
+		 * Create an Invocation of the CI. The invocation doesn't run until {@code start} is called.
 		 * To wait for the CI to complete, get the estimate by calling {@code getEstimate}
 		 * 
 		 * @param args The arguments to pass to Source functions
 		 * @param budget The budget for the CI
+		 * @param pool The executor for the invocation's sources
+		 * @param selectors The executor for the invocation's selector loop
 		 */
-		private Invocation(I args, Allowance[] budget, ListeningExecutorService pool) {
+		private Invocation(I args, Allowance[] budget, ListeningExecutorService pool, Executor selectors) {
 			this.args = args;
-			this.budget = budget;
+			this.budget = CompiledBudget.compile(budget);
+			this.hedgeBudget = hedging == null ? null : CompiledBudget.compile(hedging.limit(budget));
 			this.pool = pool;
+			this.selectors = selectors;
 			
-			remaining = new HashSet<>(sources);
+			remaining.addAll(sources);
 			opinions = new HashSet<ListenableFuture<Opinion<O, T>>>();
-			
+		}
+		
+		/**
+		 * Starts running the invocation on its pool, and returns immediately.
+		 */
+		private void start() {
 			// Run the invocation, ensuring that the estimate is sealed when it finishes
-			Futures.addCallback(pool.submit(this), new FutureCallback<Object>() {
+			ListenableFutureTask<Void> loop = ListenableFutureTask.create(this);
+			this.loop = loop;
+			
+			Futures.addCallback(loop, new FutureCallback<Object>() {
 				@Override
 				public void onSuccess(Object result) {
+					// Reactive invocations carry on as their sources respond, until the estimate is done
+					if (reactive != null)
+						return;
+					
+					// The pool is only shut down once the estimate is done, as hedges and timeouts run on it until then
 					estimate.seal();
-					Invocation.this.pool.shutdown();
 				}
 
 				@Override
 				public void onFailure(Throwable t) {
 					estimate.seal();
-					Invocation.this.pool.shutdown();
 				}
 			});
 			
-			// Once the estimate is complete & has returned a final answer, kill all of the threads
+			// Selector loops may block, so they are run apart from the sources, if the context allows it
+			selectors.execute(loop);
+			
+			// Once the estimate is complete & has returned a final answer, cancel all of the invocation's tasks
 			Futures.addCallback(estimate, new FutureCallback<Result<O, Q>>() {
 
 				@Override
 				public void onSuccess(Result<O, Q> result) {
-					Invocation.this.pool.shutdownNow();
+					cancel();
 				}
 
 				@Override
 				public void onFailure(Throwable t) {
-					Invocation.this.pool.shutdownNow();
+					cancel();
+				}
+				
+			});
+			
+		}
+		
+		/**
+		 * Cancels every outstanding task of the invocation. Opinions from asynchronous sources
+		 * don't run on the invocation's pool, so they are cancelled individually.
+		 */
+		private void cancel() {
+			pool.shutdownNow();
+			loop.cancel(true);
+
+			synchronized(estimate) {
+				for (ListenableFuture<Opinion<O, T>> opinion : opinions) {
+					opinion.cancel(true);
+				}
+			}
+		}
+		
+		/**
+		 * Asks a source for its opinion, without blocking the calling thread, and hedges the query if
+		 * the {@link HedgingPolicy} calls for it
+		 * 
+		 * @param source The source to query
+		 * @param admission The source's admission past the circuit breaker and bulkhead
+		 * @param launched The time at which the source is queried, from {@link EstimateImpl#launchTime()}
+		 * @return A future for the source's opinion
+		 */
+		private ListenableFuture<Opinion<O, T>> query(Source<I, O, T> source, Admission admission, long launched) {
+			ListenableFuture<Opinion<O, T>> opinion = ask(source, admission);
+			if (hedging == null || costModel == null || opinion.isDone())
+				return opinion;
+			
+			List<Source<I, O, T>> alternatives = hedging.getAlternatives(source);
+			Optional<Long> delay = hedging.getDelay(source, costModel, TimeUnit.NANOSECONDS);
+			if (alternatives.isEmpty() || ! delay.isPresent())
+				return opinion;
+			
+			return new HedgedQuery(source, launched, alternatives, opinion, delay.get()).result;
+		}
+		
+		/**
+		 * Asks a source for its opinion, without blocking the calling thread
+		 * 
+		 * @param source The source to query
+		 * @param admission The source's admission past the circuit breaker and bulkhead, which is released
+		 * once the source responds
+		 * @return A future for the source's opinion
+		 */
+		private ListenableFuture<Opinion<O, T>> ask(Source<I, O, T> source, Admission admission) {
+			ListenableFuture<Opinion<O, T>> opinion;
+			try {
+				opinion = source.getOpinionAsync(args, pool, deadline);
+			} catch (RuntimeException e) {
+				opinion = Futures.immediateFailedFuture(e);
+			}
+			
+			admission.release(opinion);
+			return opinion;
+		}
+		
+		/**
+		 * Admits a query of a source past the CI's circuit breaker and bulkhead
+		 * 
+		 * @param source The source
+		 * @return The admission, which must be released or abandoned, or {@code null} if the source is unavailable
+		 */
+		private Admission admit(Source<I, O, T> source) {
+			CircuitBreaker.Permit circuit = null;
+			if (circuitBreaker != null) {
+				Optional<CircuitBreaker.Permit> acquired = circuitBreaker.acquire(source);
+				if (! acquired.isPresent())
+					return null;
+				circuit = acquired.get();
+			}
+			
+			Bulkhead.Permit place = null;
+			if (bulkhead != null) {
+				Optional<Bulkhead.Permit> acquired = bulkhead.acquire(source);
+				if (! acquired.isPresent()) {
+					if (circuit != null)
+						circuit.abandon();
+					return null;
+				}
+				place = acquired.get();
+			}
+			
+			return new Admission(circuit, place);
+		}
+		
+		/**
+		 * The permits a query of a source holds from the CI's circuit breaker and bulkhead. Either may be
+		 * {@code null}, if the CI doesn't have one.
+		 */
+		private final class Admission {
+			
+			private final CircuitBreaker.Permit circuit;
+			private final Bulkhead.Permit place;
+			
+			public Admission(CircuitBreaker.Permit circuit, Bulkhead.Permit place) {
+				this.circuit = circuit;
+				this.place = place;
+			}
+			
+			/**
+			 * Releases the permits once the query completes
+			 */
+			public void release(ListenableFuture<?> opinion) {
+				if (circuit != null)
+					circuit.release(opinion);
+				if (place != null)
+					place.release(opinion);
+			}
+			
+			/**
+			 * Releases the permits without querying the source
+			 */
+			public void abandon() {
+				if (circuit != null)
+					circuit.abandon();
+				if (place != null)
+					place.abandon();
+			}
+			
+		}
+		
+		/**
+		 * A query of a source which is hedged, by querying an alternative once the source has taken longer
+		 * than the hedging policy's percentile of its latency. The first opinion is the result, and is reported
+		 * as the opinion of the source which gave it. The other query is cancelled, and reported as such. The
+		 * result only fails once every query has failed.
+		 */
+		private final class HedgedQuery implements Runnable {
+			
+			private final Source<I, O, T> source;
+			private final long launched;
+			private final ListenableFuture<Opinion<O, T>> primary;
+			private final List<Source<I, O, T>> alternatives;
+			private final SettableFuture<Opinion<O, T>> result = SettableFuture.create();
+			private volatile ListenableFuture<Opinion<O, T>> hedge = null;
+			
+			// The alternative which was queried, and when, guarded by the estimate
+			private Source<I, O, T> hedgeSource = null;
+			private long hedgeLaunched = 0;
+			
+			// Guarded by this
+			private int pending = 1;
+			private boolean closed = false;
+			private Throwable cause = null;
+			
+			public HedgedQuery(Source<I, O, T> source, long launched, List<Source<I, O, T>> alternatives,
+					final ListenableFuture<Opinion<O, T>> primary, long delay) {
+				this.source = source;
+				this.launched = launched;
+				this.primary = primary;
+				this.alternatives = alternatives;
+				
+				final ScheduledFuture<?> timer = ExecutionContexts.getTimer().schedule(this, delay, TimeUnit.NANOSECONDS);
+				result.addListener(() -> {
+					timer.cancel(false);
+					primary.cancel(true);
+					
+					ListenableFuture<Opinion<O, T>> current = hedge;
+					if (current != null)
+						current.cancel(true);
+				}, MoreExecutors.sameThreadExecutor());
+				
+				watch(primary, false);
+			}
+			
+			/**
+			 * The source has taken too long. The timer thread must never block, so the hedge is queried on the pool.
+			 */
+			@Override
+			public void run() {
+				if (result.isDone())
+					return;
+				
+				try {
+					pool.execute(() -> launch());
+				} catch (RejectedExecutionException e) {
+					// The invocation is over
+				}
+			}
+			
+			private void launch() {
+				synchronized(this) {
+					if (closed || result.isDone())
+						return;
+					
+					pending++;
+				}
+				
+				ListenableFuture<Opinion<O, T>> opinion = query();
+				if (opinion == null) {
+					failed(null);
+					return;
+				}
+				
+				hedge = opinion;
+				if (result.isDone())
+					opinion.cancel(true);
+				
+				watch(opinion, true);
+			}
+			
+			/**
+			 * Queries the first alternative whose cost fits within both the invocation's budget, and the part
+			 * of it which hedges may spend. Other sources of the CI are only queried if they haven't been yet,
+			 * and are no longer remaining once they have been.
+			 * 
+			 * @return The alternative's opinion, or {@code null} if no alternative could be queried
+			 */
+			private ListenableFuture<Opinion<O, T>> query() {
+				synchronized(estimate) {
+					if (estimate.isDone())
+						return null;
+					
+					for (Source<I, O, T> alternative : alternatives) {
+						if (alternative != source && sources.contains(alternative) && ! remaining.contains(alternative))
+							continue;
+						
+						CostPlan plan;
+						try {
+							plan = plan(alternative);
+						} catch (Exception e) {
+							continue;
+						}
+						
+						Optional<CompiledBudget> newBudget = budget.expend(plan, Optional.of(Invocation.this));
+						if (! newBudget.isPresent())
+							continue;
+						
+						Optional<CompiledBudget> newHedgeBudget = hedgeBudget.expend(hedgeBudget.plan(plan.getCost()), Optional.of(Invocation.this));
+						if (! newHedgeBudget.isPresent())
+							continue;
+						
+						Admission admission = admit(alternative);
+						if (admission == null)
+							continue;
+						
+						Optional<BudgetLedger.Reservation> reservation = Optional.absent();
+						if (ledger != null) {
+							reservation = ledger.reserve(plan.getCost());
+							if (! reservation.isPresent()) {
+								admission.abandon();
+								continue;
+							}
+						}
+						
+						remaining.remove(alternative);
+						budget = newBudget.get();
+						hedgeBudget = newHedgeBudget.get();
+						events.budgetExpended(Invocation.this, alternative, plan.getCost(), budget.getBudget());
+						
+						hedgeSource = alternative;
+						hedgeLaunched = estimate.launchTime();
+						ListenableFuture<Opinion<O, T>> opinion = ask(alternative, admission);
+						if (reservation.isPresent())
+							settle(reservation.get(), opinion);
+						
+						return opinion;
+					}
+					
+					return null;
+				}
+			}
+			
+			private void watch(ListenableFuture<Opinion<O, T>> opinion, final boolean hedged) {
+				Futures.addCallback(opinion, new FutureCallback<Opinion<O, T>>() {
+
+					@Override
+					public void onSuccess(Opinion<O, T> value) {
+						won(value, hedged);
+					}
+
+					@Override
+					public void onFailure(Throwable t) {
+						failed(t);
+					}
+
+				});
+			}
+			
+			/**
+			 * A query answered first. The opinion is attributed to the source which gave it, and the other
+			 * query, if it is still running, is reported as cancelled.
+			 */
+			private void won(Opinion<O, T> value, boolean hedged) {
+				synchronized(estimate) {
+					if (result.isDone())
+						return;
+					
+					if (! estimate.isDone()) {
+						long now = System.nanoTime();
+						if (hedged) {
+							estimate.attribute(result, hedgeSource, hedgeLaunched);
+							if (! primary.isDone())
+								events.sourceFailed(Invocation.this, source, new CancellationException("Hedged"), now - launched);
+						} else if (hedgeSource != null && (hedge == null || ! hedge.isDone())) {
+							events.sourceFailed(Invocation.this, hedgeSource, new CancellationException("Hedged"), now - hedgeLaunched);
+						}
+					}
+					
+					result.set(value);
+				}
+			}
+			
+			/**
+			 * A query failed, or couldn't be made. The result is only failed once nothing is pending, and it
+			 * is failed outside of the lock, as its callbacks may take the estimate's lock.
+			 */
+			private void failed(Throwable t) {
+				Throwable failure;
+				synchronized(this) {
+					if (cause == null)
+						cause = t;
+					if (--pending > 0)
+						return;
+					
+					closed = true;
+					failure = cause;
 				}
 				
+				result.setException(failure);
+			}
+			
+		}
+		
+		/**
+		 * Spends the cost of a source, queries it, and augments the estimate with its opinion.
+		 * Must be called while holding the estimate's lock, as hedges spend from the same budget.
+		 * 
+		 * @param source The source to query
+		 * @param plan The plan of the source's cost
+		 * @return The source's opinion, or {@code null} if the source doesn't fit within the budget, is
+		 * unavailable, or the ledger couldn't cover the cost
+		 */
+		private ListenableFuture<Opinion<O, T>> consult(Source<I, O, T> source, CostPlan plan) {
+			Optional<CompiledBudget> newBudget = budget.expend(plan, Optional.of(this));
+			if (! newBudget.isPresent()) {
+				events.sourceRejected(this, source);
+				return null;
+			}
+			
+			// Unavailable sources are rejected, rather than queued, before their cost is spent
+			Expenditure[] cost = plan.getCost();
+			Admission admission = admit(source);
+			if (admission == null) {
+				events.sourceUnavailable(this, source);
+				return null;
+			}
+			
+			Optional<BudgetLedger.Reservation> reservation = Optional.absent();
+			if (ledger != null) {
+				reservation = ledger.reserve(cost);
+				if (! reservation.isPresent()) {
+					admission.abandon();
+					events.sourceRejected(this, source);
+					return null;
+				}
+			}
+			
+			budget = newBudget.get();
+			events.budgetExpended(this, source, cost, budget.getBudget());
+			
+			// Query the source & augment the estimate
+			long launched = estimate.launchTime();
+			ListenableFuture<Opinion<O, T>> opinion = query(source, admission, launched);
+			opinions.add(opinion);
+			estimate.augment(source, launched, opinion);
+			
+			if (reservation.isPresent())
+				settle(reservation.get(), opinion);
+			
+			return opinion;
+		}
+		
+		/**
+		 * Commits a reservation once the source gives its opinion, or refunds it if the source fails.
+		 * Sources which are cancelled may already have incurred their cost, so it is kept.
+		 */
+		private void settle(final BudgetLedger.Reservation reservation, ListenableFuture<Opinion<O, T>> opinion) {
+			Futures.addCallback(opinion, new FutureCallback<Opinion<O, T>>() {
+
+				@Override
+				public void onSuccess(Opinion<O, T> result) {
+					reservation.commit();
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					if (t instanceof CancellationException)
+						reservation.commit();
+					else
+						reservation.refund();
+				}
+
 			});
+		}
+		
+		/**
+		 * Queries the sources chosen by a {@link ReactiveSelector}, and then the sources it chooses
+		 * once the budget has been spent on them. Seals the estimate if nothing is left to wait for.
+		 * Must be called while holding the estimate's lock.
+		 * 
+		 * @param chosen The sources chosen by the selector
+		 * @throws Exception If a source's cost, or the selector, throws an exception
+		 */
+		private void launch(List<Source<I, O, T>> chosen) throws Exception {
+			// Sources may respond immediately, calling back into the selector before this returns
+			depth++;
+			try {
+				while (! chosen.isEmpty()) {
+					boolean spent = false;
+					
+					for (final Source<I, O, T> next : chosen) {
+						if (estimate.isSealed())
+							return;
+						
+						if (! remaining.remove(next))
+							continue;
+						events.sourceSelected(this, next);
+						
+						// The estimate's callback is added first, so it has recorded the opinion before the selector hears of it
+						ListenableFuture<Opinion<O, T>> opinion = consult(next, plan(next));
+						if (opinion == null)
+							continue;
+						
+						spent = true;
+						active++;
+						
+						Futures.addCallback(opinion, new FutureCallback<Opinion<O, T>>() {
+
+							@Override
+							public void onSuccess(Opinion<O, T> result) {
+								react(next, result, null);
+							}
+
+							@Override
+							public void onFailure(Throwable t) {
+								react(next, null, t);
+							}
+
+						});
+					}
+					
+					if (! spent || estimate.isSealed())
+						break;
+					
+					chosen = reactive.onBudgetChange(this);
+				}
+			} finally {
+				depth--;
+			}
 			
+			if (depth == 0 && active == 0)
+				estimate.seal();
+		}
+		
+		/**
+		 * Tells the {@link ReactiveSelector} that a source responded, and queries the sources it chooses
+		 * 
+		 * @param source The source which responded
+		 * @param opinion Its opinion, or {@code null} if it failed
+		 * @param cause The reason it failed, or {@code null} if it gave an opinion
+		 */
+		private void react(Source<I, O, T> source, Opinion<O, T> opinion, Throwable cause) {
+			synchronized(estimate) {
+				active--;
+				
+				if (estimate.isSealed())
+					return;
+				
+				try {
+					if (opinion != null)
+						launch(reactive.onOpinion(this, source, opinion));
+					else
+						launch(reactive.onFailure(this, source, cause));
+				} catch (Exception e) {
+					estimate.seal();
+				}
+			}
 		}
 		
 		/**
-		 * Checks whether the given source fits within the CI's remaining budget
+		 * Checks whether the given source is available, and fits within the CI's remaining budget
 		 * 
 		 * @param source The given source
-		 * @return Whether the source fits within the CI's remaining budget
+		 * @return Whether the source can be queried within the CI's remaining budget
 		 * @throws Exception If the Source's getCost function throws an exception
 		 */
 		public boolean withinBudget(Source<I, O, T> source) throws Exception {
-			return Budgets.withinBudget(budget, source.getCost(args), Optional.of(this));
+			return isAvailable(source) && budget.withinBudget(plan(source), Optional.of(this));
+		}
+		
+		/**
+		 * Checks whether the given source may be queried now. Sources whose circuit is open in the CI's
+		 * {@link CircuitBreaker}, or which have as many queries running as the CI's {@link Bulkhead} allows,
+		 * are temporarily unavailable.
+		 * 
+		 * @param source The given source
+		 * @return Whether the source is available
+		 */
+		public boolean isAvailable(Source<I, O, T> source) {
+			return (circuitBreaker == null || circuitBreaker.isAvailable(source))
+					&& (bulkhead == null || bulkhead.isAvailable(source));
+		}
+		
+		/**
+		 * Gets the cost of querying a source in this invocation. Each source's cost is only computed
+		 * once per invocation. If the CI has a {@link CostModel}, this is the cost estimated by the model.
+		 * 
+		 * @param source The source
+		 * @return The cost of the source
+		 * @throws Exception If the Source's getCost function throws an exception
+		 */
+		public Expenditure[] getCost(Source<I, O, T> source) throws Exception {
+			return plan(source).getCost();
+		}
+		
+		/**
+		 * Gets the plan of a source's cost, compiling it against the budget the first time it is needed.
+		 * 
+		 * @param source The source
+		 * @return The plan of the source's cost
+		 * @throws Exception If the Source's getCost function throws an exception
+		 */
+		private CostPlan plan(Source<I, O, T> source) throws Exception {
+			CostPlan plan = plans.get(source);
+			if (plan == null) {
+				Expenditure[] cost = source.getCost(args);
+				if (costModel != null)
+					cost = costModel.estimate(this, source, cost);
+				
+				plan = budget.plan(cost);
+				plans.put(source, plan);
+			}
+			
+			return plan;
 		}
 		
 		/**
@@ -223,12 +1159,26 @@ public class CI<I, O, T, Q> {
 		}
 		
 		/**
-		 * @return The Selector object for the CI
+		 * @return The time by which the invocation must be done, which is passed to the sources it queries
+		 */
+		public Deadline getDeadline() {
+			return deadline;
+		}
+		
+		/**
+		 * @return The Selector object for the CI, or {@code null} if the CI uses a {@link ReactiveSelector}
 		 */
 		public Selector<I, O, T> getSelector() {
 			return sel;
 		}
 
+		/**
+		 * @return The ReactiveSelector object for the CI, or {@code null} if the CI uses a polled {@link Selector}
+		 */
+		public ReactiveSelector<I, O, T> getReactiveSelector() {
+			return reactive;
+		}
+
 		/**
 		 * @return The Aggregator object for the CI
 		 */
@@ -244,10 +1194,19 @@ public class CI<I, O, T, Q> {
 		}
 		
 		/**
-		 * @return The Sources which haven't been queried yet
+		 * @return A snapshot of the Sources which haven't been queried yet. Hedges may query sources while
+		 * the invocation is running, so the snapshot may be out of date by the time it is read.
 		 */
 		public Set<Source<I, O, T>> getRemaining() {
-			return Collections.unmodifiableSet(remaining);
+			return ImmutableSet.copyOf(remaining);
+		}
+		
+		/**
+		 * @param source The given source
+		 * @return Whether the source hasn't been queried yet
+		 */
+		public boolean isRemaining(Source<I, O, T> source) {
+			return remaining.contains(source);
 		}
 
 		/**
@@ -274,7 +1233,7 @@ public class CI<I, O, T, Q> {
 		 * @return The Budget still available for running Sources
 		 */
 		public Allowance[] getBudget() {
-			return budget;
+			return budget.getBudget();
 		}
 		
 		/**
@@ -292,12 +1251,28 @@ public class CI<I, O, T, Q> {
 		}
 		
 		/**
-		 * @return The ListeningExecutorService used for parallel execution of Source functions
+		 * @return The ListeningExecutorService used for parallel execution of Source functions.
+		 * Shutting it down only affects this invocation.
 		 */
 		public ListeningExecutorService getPool() {
 			return pool;
 		}
 
+		/**
+		 * Forces the estimate to be done, once the invocation's time has run out. The timer thread must
+		 * never block, so the estimate is completed on the selector executor. A bounded pool may be full
+		 * of the very sources which the timeout cuts off, so the estimate isn't completed on the pool.
+		 * It is only completed on the timer if the context refuses the task.
+		 */
+		private void timeout() {
+			try {
+				selectors.execute(() -> estimate.done());
+			} catch (RejectedExecutionException e) {
+				if (! estimate.isDone())
+					estimate.done();
+			}
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * @see java.lang.Runnable#run()
@@ -309,20 +1284,23 @@ public class CI<I, O, T, Q> {
 
 			startedAt = System.nanoTime();
 			
-			// Create the timeout timer
-			Optional<Time> timeAllowance = Budgets.getByClass(budget, Time.class);
+			// Schedule the timeout on the shared timer, rather than holding a thread until the deadline
+			Optional<Time> timeAllowance = Budgets.getByClass(budget.getBudget(), Time.class);
 			if (timeAllowance.isPresent()) {
 				long time = timeAllowance.get().getDuration(TimeUnit.NANOSECONDS);
+				deadline = Deadline.after(time, TimeUnit.NANOSECONDS);
 
-				pool.submit(() -> {
-					try {
-						synchronized(this) {
-							this.wait(time / 1000000, (int) (time % 1000000));
-						}
-
-						estimate.done(); // If the estimate isn't done yet - force it to be so.
-					} catch (InterruptedException e) { }
-				});
+				final ScheduledFuture<?> timeout = ExecutionContexts.getTimer().schedule(() -> timeout(), time, TimeUnit.NANOSECONDS);
+				estimate.addListener(() -> timeout.cancel(false), MoreExecutors.sameThreadExecutor());
+			}
+			
+			// Reactive selectors choose the first sources now, and the rest as they respond
+			if (reactive != null) {
+				synchronized(estimate) {
+					launch(reactive.onStart(this));
+				}
+				
+				return null;
 			}
 			
 			Source<I, O, T> next;
@@ -334,31 +1312,18 @@ public class CI<I, O, T, Q> {
 				else
 					break;
 				
-				// Record that the source has been consulted
-				remaining.remove(next);
-				
-				// Exhaust budget
-				Expenditure[] cost = next.getCost(args);
-				Optional<Allowance[]> newBudget = Budgets.expend(budget, cost, Optional.of(this));
-
-				if (! newBudget.isPresent()) {
-					System.err.println("Selection function chose source out of budget");
-					continue;
-				}
-
-				// Run the opinion if the estimate isn't already sealed. Stop running if it is.
+				// Exhaust budget, and run the opinion if the estimate isn't already sealed. Stop running if it is.
+				CostPlan plan = plan(next);
 				synchronized(estimate) {
 					if (estimate.isSealed())
 						return null;
 
-					budget = newBudget.get();
-					
-					System.out.println("Calling " + next.getName()); // TODO: DEBUG
-					
-					// Query the source & augment the estimate
-					ListenableFuture<Opinion<O, T>> opinion = pool.submit(new Source.SourceCallable<I, O, T>(next, args));
-					opinions.add(opinion);
-					estimate.augment(opinion);
+					// Record that the source has been consulted. A hedge may have consulted it since it was selected.
+					if (! remaining.remove(next))
+						continue;
+					events.sourceSelected(this, next);
+
+					consult(next, plan);
 				}
 			}
 			
@@ -0,0 +1,321 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Tracks the health of each source, across every invocation it is attached to, and stops invocations
+ * from querying sources which keep failing. Attach a circuit breaker to a CI with
+ * {@link CI#setCircuitBreaker(CircuitBreaker)}. Sources whose circuit is open are unavailable:
+ * {@link CI.Invocation#withinBudget(Source)} is false, and selecting them anyway rejects them before their
+ * cost is spent.
+ * 
+ * <p>Each source's circuit starts closed. Once it has seen {@code window} queries, it opens if at least
+ * {@code failureRate} of the last {@code window} queries were bad: they failed, or took longer than the
+ * slow call time. A source which throws an {@link UnknownException} has answered that it has no opinion,
+ * so by default this only counts as bad if it was slow, unless the circuit breaker is created to count
+ * unknown answers as failures. After the open time, the circuit
+ * becomes half-open, and at most {@code probes} queries of the source may run at once. If {@code probes}
+ * of them in a row are good, the circuit closes, and if any is bad, it opens again. Cancelled queries
+ * aren't counted.
+ * 
+ * <p>Sources are identified by {@link Source#getName()}.
+ */
+public class CircuitBreaker {
+
+	/**
+	 * The state of a source's circuit
+	 */
+	public static enum State {
+		/**
+		 * The source may be queried
+		 */
+		CLOSED,
+		/**
+		 * The source is failing, and may not be queried until the open time has passed
+		 */
+		OPEN,
+		/**
+		 * The source is being probed, and only a few queries of it may run at once
+		 */
+		HALF_OPEN
+	}
+
+	private final double failureRate;
+	private final int window;
+	private final long slowNanos;
+	private final long openNanos;
+	private final int probes;
+	private final boolean countUnknown;
+
+	private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a circuit breaker which opens a source's circuit when half of its last 20 queries failed,
+	 * or took longer than 10 seconds, keeps it open for 30 seconds, and then probes it with up to 3 queries
+	 */
+	public CircuitBreaker() {
+		this(0.5, 20, 10, 30, TimeUnit.SECONDS, 3);
+	}
+
+	/**
+	 * @param failureRate The fraction of bad queries at which a circuit opens, in (0, 1]
+	 * @param window The number of recent queries over which the failure rate is measured
+	 * @param slowCall The time after which a query is bad, even if the source gives its opinion
+	 * @param openTime The time a circuit stays open before it is probed
+	 * @param unit The unit of {@code slowCall} and {@code openTime}
+	 * @param probes The number of queries which may run at once while a circuit is half-open, and which must
+	 * succeed for it to close
+	 */
+	public CircuitBreaker(double failureRate, int window, long slowCall, long openTime, TimeUnit unit, int probes) {
+		this(failureRate, window, slowCall, openTime, unit, probes, false);
+	}
+
+	/**
+	 * @param failureRate The fraction of bad queries at which a circuit opens, in (0, 1]
+	 * @param window The number of recent queries over which the failure rate is measured
+	 * @param slowCall The time after which a query is bad, even if the source gives its opinion
+	 * @param openTime The time a circuit stays open before it is probed
+	 * @param unit The unit of {@code slowCall} and {@code openTime}
+	 * @param probes The number of queries which may run at once while a circuit is half-open, and which must
+	 * succeed for it to close
+	 * @param countUnknown Whether queries which throw an {@link UnknownException} are bad
+	 */
+	public CircuitBreaker(double failureRate, int window, long slowCall, long openTime, TimeUnit unit, int probes, boolean countUnknown) {
+		if (failureRate <= 0 || failureRate > 1)
+			throw new IllegalArgumentException("Failure rate must be in (0, 1]");
+		if (window < 1)
+			throw new IllegalArgumentException("The window must hold at least one query");
+		if (probes < 1)
+			throw new IllegalArgumentException("There must be at least one probe");
+
+		this.failureRate = failureRate;
+		this.window = window;
+		this.slowNanos = unit.toNanos(slowCall);
+		this.openNanos = unit.toNanos(openTime);
+		this.probes = probes;
+		this.countUnknown = countUnknown;
+	}
+
+	/**
+	 * @param source A source
+	 * @return The state of the source's circuit. An open circuit stays open until the source is next
+	 * queried after the open time.
+	 */
+	public State getState(Source<?, ?, ?> source) {
+		return circuit(source).getState();
+	}
+
+	/**
+	 * @param source A source
+	 * @return Whether the source may be queried now
+	 */
+	public boolean isAvailable(Source<?, ?, ?> source) {
+		return circuit(source).isAvailable(System.nanoTime());
+	}
+
+	/**
+	 * Admit a query of a source, if its circuit allows it. The permit must be released once the query
+	 * has been made, or abandoned if it isn't made.
+	 * 
+	 * @param source The source
+	 * @return A permit to query the source, or {@code Optional.absent()} if the source is unavailable
+	 */
+	public Optional<Permit> acquire(Source<?, ?, ?> source) {
+		Circuit circuit = circuit(source);
+		long generation = circuit.acquire(System.nanoTime());
+		if (generation < 0)
+			return Optional.absent();
+
+		return Optional.of(new Permit(circuit, generation));
+	}
+
+	private Circuit circuit(Source<?, ?, ?> source) {
+		String name = source.getName();
+		Circuit circuit = circuits.get(name);
+		if (circuit == null) {
+			circuits.putIfAbsent(name, new Circuit());
+			circuit = circuits.get(name);
+		}
+
+		return circuit;
+	}
+
+	/**
+	 * A query of a source, admitted by its circuit
+	 */
+	public final class Permit {
+
+		private final Circuit circuit;
+		private final long generation;
+		private final long acquiredAt = System.nanoTime();
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Permit(Circuit circuit, long generation) {
+			this.circuit = circuit;
+			this.generation = generation;
+		}
+
+		/**
+		 * Release the permit once the query completes, recording whether it was good or bad
+		 * 
+		 * @param opinion The query
+		 */
+		public void release(ListenableFuture<?> opinion) {
+			Futures.addCallback(opinion, new FutureCallback<Object>() {
+
+				@Override
+				public void onSuccess(Object result) {
+					if (released.compareAndSet(false, true))
+						circuit.record(generation, isSlow());
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					if (! released.compareAndSet(false, true))
+						return;
+
+					if (t instanceof CancellationException)
+						circuit.abandoned(generation);
+					else if (t instanceof UnknownException && ! countUnknown)
+						circuit.record(generation, isSlow());
+					else
+						circuit.record(generation, true);
+				}
+
+			});
+		}
+
+		/**
+		 * @return Whether the query has taken longer than the slow call time
+		 */
+		private boolean isSlow() {
+			return System.nanoTime() - acquiredAt > slowNanos;
+		}
+
+		/**
+		 * Release the permit without querying the source
+		 */
+		public void abandon() {
+			if (released.compareAndSet(false, true))
+				circuit.abandoned(generation);
+		}
+
+	}
+
+	/**
+	 * The circuit of a single source. Each change of state starts a new generation, and queries admitted
+	 * in an earlier generation are ignored when they complete.
+	 */
+	private final class Circuit {
+
+		// Guarded by this
+		private State state = State.CLOSED;
+		private long generation = 0;
+
+		// The outcomes of recent queries while closed, as a ring, where true is bad
+		private final boolean[] outcomes = new boolean[window];
+		private int recorded = 0;
+		private int next = 0;
+		private int bad = 0;
+
+		private long openedAt = 0;
+		private int probing = 0;
+		private int probed = 0;
+
+		public synchronized State getState() {
+			return state;
+		}
+
+		public synchronized boolean isAvailable(long now) {
+			switch (state) {
+			case OPEN:
+				return now - openedAt >= openNanos;
+			case HALF_OPEN:
+				return probing < probes;
+			default:
+				return true;
+			}
+		}
+
+		/**
+		 * @return The generation the query was admitted in, or -1 if it wasn't admitted
+		 */
+		public synchronized long acquire(long now) {
+			if (state == State.OPEN) {
+				if (now - openedAt < openNanos)
+					return -1;
+
+				transition(State.HALF_OPEN);
+			}
+
+			if (state == State.HALF_OPEN) {
+				if (probing >= probes)
+					return -1;
+
+				probing++;
+			}
+
+			return generation;
+		}
+
+		public synchronized void record(long generation, boolean isBad) {
+			if (generation != this.generation)
+				return;
+
+			if (state == State.HALF_OPEN) {
+				probing--;
+				if (isBad)
+					open();
+				else if (++probed >= probes)
+					transition(State.CLOSED);
+
+				return;
+			}
+
+			if (recorded == window && outcomes[next])
+				bad--;
+			else if (recorded < window)
+				recorded++;
+
+			outcomes[next] = isBad;
+			if (isBad)
+				bad++;
+			next = (next + 1) % window;
+
+			if (recorded == window && bad >= failureRate * window)
+				open();
+		}
+
+		public synchronized void abandoned(long generation) {
+			if (generation == this.generation && state == State.HALF_OPEN)
+				probing--;
+		}
+
+		private void open() {
+			transition(State.OPEN);
+			openedAt = System.nanoTime();
+		}
+
+		private void transition(State state) {
+			this.state = state;
+			generation++;
+
+			probing = 0;
+			probed = 0;
+			recorded = 0;
+			next = 0;
+			bad = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,137 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time by which an invocation must be done, as given by its {@link edu.toronto.cs.se.ci.budget.basic.Time}
+ * allowance. Invocations pass their deadline to the sources they query, so that sources can shorten
+ * their own timeouts, rather than working on after the invocation has given up on them.
+ * 
+ * <p>Sources which are queried with {@link Source#getOpinion(Object)} can get the deadline with {@link #current()},
+ * which is set while the CI queries them. Asynchronous sources receive it as an argument of
+ * {@link Source#getOpinionAsync(Object, com.google.common.util.concurrent.ListeningExecutorService, Deadline)}.
+ */
+public final class Deadline {
+
+	private static final Deadline NONE = new Deadline(0, false);
+
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+	// The value of System.nanoTime() at the deadline
+	private final long at;
+	private final boolean bounded;
+
+	private Deadline(long at, boolean bounded) {
+		this.at = at;
+		this.bounded = bounded;
+	}
+
+	/**
+	 * @param duration The time until the deadline
+	 * @param unit The unit of {@code duration}
+	 * @return A deadline {@code duration} from now
+	 */
+	public static Deadline after(long duration, TimeUnit unit) {
+		return new Deadline(System.nanoTime() + unit.toNanos(duration), true);
+	}
+
+	/**
+	 * @return The absence of a deadline, for invocations with unlimited time
+	 */
+	public static Deadline none() {
+		return NONE;
+	}
+
+	/**
+	 * @return The deadline of the source being queried by this thread, or {@link #none()} if there isn't one
+	 */
+	public static Deadline current() {
+		Deadline deadline = CURRENT.get();
+		return deadline == null ? NONE : deadline;
+	}
+
+	/**
+	 * Wrap a task, such that it runs with the current thread's deadline, wherever it is run. Sources
+	 * which submit blocking work to a pool should wrap it, so that the work can see the deadline.
+	 * 
+	 * @param task The task
+	 * @return A task which runs {@code task} with the current deadline
+	 */
+	public static <V> Callable<V> propagate(final Callable<V> task) {
+		final Deadline deadline = current();
+
+		return new Callable<V>() {
+
+			@Override
+			public V call() throws Exception {
+				Deadline previous = deadline.install();
+				try {
+					return task.call();
+				} finally {
+					restore(previous);
+				}
+			}
+
+		};
+	}
+
+	/**
+	 * Make this the deadline of the current thread
+	 * 
+	 * @return The thread's previous deadline, to be passed to {@link #restore(Deadline)}
+	 */
+	Deadline install() {
+		Deadline previous = CURRENT.get();
+		CURRENT.set(this);
+		return previous;
+	}
+
+	/**
+	 * @param previous The deadline returned by {@link #install()}
+	 */
+	static void restore(Deadline previous) {
+		if (previous == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(previous);
+	}
+
+	/**
+	 * @return Whether there is a deadline
+	 */
+	public boolean isBounded() {
+		return bounded;
+	}
+
+	/**
+	 * @param unit The unit of the result
+	 * @return The time remaining until the deadline, which is never negative, or {@code Long.MAX_VALUE} if there is no deadline
+	 */
+	public long getRemaining(TimeUnit unit) {
+		if (! bounded)
+			return Long.MAX_VALUE;
+
+		return unit.convert(Math.max(0, at - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return Whether the deadline has passed
+	 */
+	public boolean isExpired() {
+		return bounded && at - System.nanoTime() <= 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (! bounded)
+			return "Deadline(none)";
+
+		return "Deadline(" + getRemaining(TimeUnit.MILLISECONDS) + "ms)";
+	}
+
+}
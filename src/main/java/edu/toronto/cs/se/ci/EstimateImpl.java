@@ -1,7 +1,10 @@
 package edu.toronto.cs.se.ci;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executor;
 
 import com.google.common.base.Optional;
@@ -28,17 +31,42 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 	private int incomplete = 0;
 	private boolean sealed = false;
 	private Optional<Result<O, Q>> value = Optional.absent();
+	private boolean stale = true;
 	
 	// Functions
 	private Aggregator<O, T, Q> agg;
+	private IncrementalAggregator.Accumulator<O, T, Q> accumulator;
 	private Acceptor<O, Q> acceptor;
 	
 	// Listeners
 	private List<Listener> listeners = new ArrayList<>();
+	private final CI<?, ?, ?, ?>.Invocation invocation;
+	private final InvocationListener events;
+	private final boolean listening;
+	
+	// The source and launch time of each opinion which hasn't completed, if anyone is listening
+	private final Map<ListenableFuture<Opinion<O, T>>, Launch> outstanding = new IdentityHashMap<>();
 	
 	public EstimateImpl(Aggregator<O, T, Q> agg, Acceptor<O, Q> acceptor) {
+		this(agg, acceptor, null, InvocationListener.NONE);
+	}
+
+	/**
+	 * @param agg The aggregator
+	 * @param acceptor The acceptor, or {@code null}
+	 * @param invocation The invocation which the estimate belongs to, reported with events
+	 * @param events The listener to report events to
+	 */
+	public EstimateImpl(Aggregator<O, T, Q> agg, Acceptor<O, Q> acceptor, CI<?, ?, ?, ?>.Invocation invocation, InvocationListener events) {
 		this.agg = agg;
 		this.acceptor = acceptor;
+		this.invocation = invocation;
+		this.events = events;
+		this.listening = events != InvocationListener.NONE;
+
+		// Aggregators which support it absorb each opinion as it arrives
+		if (agg instanceof IncrementalAggregator)
+			this.accumulator = ((IncrementalAggregator<O, T, Q>) agg).newAccumulator();
 	}
 
 	/**
@@ -47,12 +75,35 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 	 * 
 	 * @param opinion The opinion to augment the Estimate with
 	 */
-	public synchronized void augment(ListenableFuture<Opinion<O, T>> opinion) {
+	public void augment(ListenableFuture<Opinion<O, T>> opinion) {
+		augment(null, launchTime(), opinion);
+	}
+
+	/**
+	 * @return The time at which a source is queried, which its latency is measured from, or 0 if
+	 * no one is listening for latencies
+	 */
+	public long launchTime() {
+		return listening ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Augments the Estimate with a new opinion. Cannot be called if the
+	 * estimate has been sealed already.
+	 * 
+	 * @param source The source giving the opinion, reported with events
+	 * @param launched The time at which the source was queried, from {@link #launchTime()}
+	 * @param opinion The opinion to augment the Estimate with
+	 */
+	public synchronized void augment(Source<?, ?, ?> source, long launched, ListenableFuture<Opinion<O, T>> opinion) {
 		if (sealed)
 			throw new Error("Cannot augment a sealed Estimate");
 
 		incomplete++;
+		if (listening)
+			outstanding.put(opinion, new Launch(source, launched));
 
+		final ListenableFuture<Opinion<O, T>> future = opinion;
 		Futures.addCallback(opinion, new FutureCallback<Opinion<O, T>>() {
 
 			@Override
@@ -62,19 +113,23 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 						return;
 					
 					// We can record the opinion now!
-					opinions.add(opinion);
+					if (listening) {
+						Launch launch = outstanding.remove(future);
+						events.opinionReceived(invocation, launch.source, opinion, System.nanoTime() - launch.launched);
+					}
+
+					record(opinion);
 					incomplete--;
 					
 					// Caching
 					if (acceptor != null)
-						value = aggregate();
+						value = getCurrent();
 					
 					for (Listener listener : listeners) {
 						try {
 							listener.execute();
 						} catch (Exception e) {
-							System.err.print("Exception while executing listener: ");
-							e.printStackTrace();
+							events.listenerFailed(invocation, e);
 						}
 					}
 					
@@ -82,8 +137,10 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 					if (sealed && incomplete <= 0)
 						done();
 					
-					if (acceptor != null && value.isPresent() && acceptor.isAcceptable(value.get()) == Acceptability.GOOD)
+					if (! isDone() && acceptor != null && value.isPresent() && acceptor.isAcceptable(value.get()) == Acceptability.GOOD) {
+						events.accepted(invocation, value.get());
 						done();
+					}
 				}
 			}
 
@@ -96,9 +153,9 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 					// We can still mark it as incomplete
 					incomplete--;
 					
-					if (! (t instanceof UnknownException)) {
-						System.err.println("Source threw an exception: ");
-						t.printStackTrace();
+					if (listening) {
+						Launch launch = outstanding.remove(future);
+						events.sourceFailed(invocation, launch.source, t, System.nanoTime() - launch.launched);
 					}
 					
 					// Check if we are done
@@ -110,6 +167,20 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 		});
 	}
 	
+	/**
+	 * Attributes an opinion which hasn't completed yet to a different source, such as the alternative
+	 * which answers a hedged query. The opinion is reported with events as that source's, and its
+	 * latency is measured from the time that source was queried.
+	 * 
+	 * @param opinion The opinion, with which the estimate was augmented
+	 * @param source The source giving the opinion
+	 * @param launched The time at which the source was queried, from {@link #launchTime()}
+	 */
+	synchronized void attribute(ListenableFuture<Opinion<O, T>> opinion, Source<?, ?, ?> source, long launched) {
+		if (outstanding.containsKey(opinion))
+			outstanding.put(opinion, new Launch(source, launched));
+	}
+
 	/**
 	 * Seals the Estimate. This marks that no more opinions will
 	 * be used to augment the Estimate. If {@link augment(Opinion<T>)}
@@ -120,6 +191,7 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 			return;
 		
 		sealed = true;
+		events.sealed(invocation);
 		
 		if (incomplete <= 0)
 			done();
@@ -137,28 +209,70 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 	 * @see edu.toronto.cs.se.ci.Estimate#getCurrent()
 	 */
 	@Override
-	public Optional<Result<O, Q>> getCurrent() {
-		if (! value.isPresent()) // TODO: Be smarter about this
-			return aggregate();
-		else
-			return value;
+	public synchronized Optional<Result<O, Q>> getCurrent() {
+		// The result is only re-aggregated once new opinions have arrived
+		if (stale) {
+			value = aggregate();
+			stale = false;
+
+			events.aggregated(invocation, value);
+		}
+
+		return value;
 	}
 	
 	/**
 	 * Mark the Estimate as complete, firing callbacks etc.
 	 */
 	public synchronized void done() {
-		sealed = true;
+		if (! sealed) {
+			sealed = true;
+			events.sealed(invocation);
+		}
 		
 		if (isDone())
 			return;
 		
 		value = getCurrent();
+		
+		// The opinions which are still outstanding will be cancelled, so their sources are reported now
+		if (! outstanding.isEmpty()) {
+			long now = System.nanoTime();
+			for (Map.Entry<ListenableFuture<Opinion<O, T>>, Launch> entry : outstanding.entrySet()) {
+				Launch launch = entry.getValue();
+				events.sourceFailed(invocation, launch.source, new CancellationException("The estimate is done"), now - launch.launched);
+			}
+			outstanding.clear();
+		}
 
-		if (! value.isPresent() || (acceptor != null && acceptor.isAcceptable(value.get()) == Acceptability.BAD))
+		if (! value.isPresent() || (acceptor != null && acceptor.isAcceptable(value.get()) == Acceptability.BAD)) {
 			setException(new UnknownException("Unknown")); // TODO: More meaningful error? Should it throw?
-		else
+			events.done(invocation, Optional.<Result<O, Q>>absent());
+		} else {
 			set(value.get());
+			events.done(invocation, value);
+		}
+	}
+	
+	/**
+	 * Records a complete opinion, marking the current result as stale
+	 * 
+	 * @param opinion The opinion to record
+	 */
+	private void record(Opinion<O, T> opinion) {
+		stale = true;
+
+		if (accumulator == null) {
+			opinions.add(opinion);
+			return;
+		}
+
+		try {
+			accumulator.add(opinion);
+		} catch (Exception e) {
+			// There was a problem aggregating
+			events.aggregationFailed(invocation, e);
+		}
 	}
 	
 	/**
@@ -168,10 +282,13 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 	 */
 	private Optional<Result<O, Q>> aggregate() {
 		try {
+			if (accumulator != null)
+				return accumulator.getResult();
+
 			return agg.aggregate(opinions);
 		} catch (Exception e) {
 			// There was a problem aggregating
-			e.printStackTrace();
+			events.aggregationFailed(invocation, e);
 			return Optional.absent();
 		}
 	}
@@ -215,4 +332,19 @@ public class EstimateImpl<O, T, Q> extends AbstractFuture<Result<O, Q>> implemen
 
 	}
 
+	/**
+	 * A source which has been queried, and the time at which it was queried
+	 */
+	private static final class Launch {
+
+		private final Source<?, ?, ?> source;
+		private final long launched;
+
+		public Launch(Source<?, ?, ?> source, long launched) {
+			this.source = source;
+			this.launched = launched;
+		}
+
+	}
+
 }
@@ -0,0 +1,45 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.concurrent.Executor;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * An ExecutionContext supplies the threads which a {@link CI} uses to run its invocations.
+ * Implementations are free to share a single long-lived pool between many invocations, or
+ * to create new resources for every invocation.
+ */
+public interface ExecutionContext {
+
+	/**
+	 * Create an executor for a single invocation of a CI. Every source queried by the invocation
+	 * is submitted to this executor, as is its selector loop, unless {@link #getSelectorExecutor}
+	 * provides another executor for it.
+	 * 
+	 * <p>Calling {@code shutdown} or {@code shutdownNow} on the returned executor must only
+	 * affect the tasks which were submitted through it, and never the tasks belonging to
+	 * other invocations.
+	 * 
+	 * @return A new executor scoped to a single invocation
+	 */
+	public ListeningExecutorService newInvocationExecutor();
+	
+	/**
+	 * Get the executor which runs the selector loop of an invocation. Selector loops may block until
+	 * the sources they have queried respond, so contexts whose pool is bounded should run them elsewhere.
+	 * Otherwise, enough concurrent invocations could take every thread of the pool with loops which are
+	 * waiting for sources that can't be run.
+	 * 
+	 * <p>Invocations whose time runs out are also completed on this executor, as the sources they cut off
+	 * may hold every thread of a bounded pool.
+	 * 
+	 * <p>The invocation cancels its selector loop itself, so the returned executor needn't be scoped to it.
+	 * 
+	 * @param invocationExecutor The invocation's executor, created by {@link #newInvocationExecutor()}
+	 * @return The executor for the invocation's selector loop, which is the invocation's executor by default
+	 */
+	public default Executor getSelectorExecutor(ListeningExecutorService invocationExecutor) {
+		return invocationExecutor;
+	}
+
+}
@@ -0,0 +1,87 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.toronto.cs.se.ci.contexts.SharedExecutionContext;
+
+/**
+ * The global {@link ExecutionContext} registry. Holds the context used by every {@link CI}
+ * which hasn't been given a context of its own.
+ */
+public final class ExecutionContexts {
+
+	private ExecutionContexts() {}
+
+	private static volatile ExecutionContext defaultContext;
+	private static volatile ScheduledExecutorService timer;
+
+	/**
+	 * The number of threads which run sources in the default execution context. Sources usually wait
+	 * on the network rather than compute, so there are several per processor.
+	 */
+	public static final int DEFAULT_THREADS = Math.max(32, 8 * Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Get the default execution context. Unless it has been replaced with {@link #setDefault},
+	 * this is a single process-wide {@link SharedExecutionContext}, which is shared by every invocation
+	 * so that threads are reused rather than created and destroyed for every call. It runs sources on
+	 * at most {@link #DEFAULT_THREADS} daemon threads, and selector loops on at most
+	 * {@link SharedExecutionContext#DEFAULT_SELECTOR_THREADS}.
+	 * 
+	 * @return The default execution context
+	 */
+	public static ExecutionContext getDefault() {
+		ExecutionContext context = defaultContext;
+		if (context != null)
+			return context;
+
+		synchronized (ExecutionContexts.class) {
+			if (defaultContext == null) {
+				defaultContext = new SharedExecutionContext(DEFAULT_THREADS);
+			}
+
+			return defaultContext;
+		}
+	}
+
+	/**
+	 * Replace the default execution context. Invocations which have already started are
+	 * unaffected.
+	 * 
+	 * @param context The new default execution context
+	 */
+	public static void setDefault(ExecutionContext context) {
+		if (context == null)
+			throw new NullPointerException("ExecutionContext not null.");
+
+		defaultContext = context;
+	}
+	
+	/**
+	 * Get the shared timer. It is used to schedule short, non-blocking tasks, such as flushing
+	 * batches or firing timeouts. Tasks scheduled on the timer must never block, as they share
+	 * a single thread; blocking work should be handed off to an executor.
+	 * 
+	 * @return The shared timer
+	 */
+	public static ScheduledExecutorService getTimer() {
+		ScheduledExecutorService current = timer;
+		if (current != null)
+			return current;
+
+		synchronized (ExecutionContexts.class) {
+			if (timer == null) {
+				ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+						new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ci-timer-%d").build());
+				executor.setRemoveOnCancelPolicy(true);
+				timer = executor;
+			}
+
+			return timer;
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+package edu.toronto.cs.se.ci;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.BasicDepletable;
+import edu.toronto.cs.se.ci.budget.FixedPointDepletable;
+import edu.toronto.cs.se.ci.metrics.CostModel;
+import edu.toronto.cs.se.ci.metrics.SourceCost;
+
+/**
+ * Decides which sources of a CI are hedged, and how. When a hedged source hasn't given its opinion
+ * by a percentile of its observed latency, an alternative is queried as well: another request to the
+ * same source, one of its replicas, or an equivalent source of the same {@link Contract}. The first
+ * opinion is used, and the other query is cancelled.
+ * 
+ * <p>Hedges are charged against the invocation's budget, like any other query, and must also fit within
+ * a fraction of the invocation's original budget, which is all that hedges may spend. Attach a policy to a
+ * CI with {@link CI#setHedgingPolicy(HedgingPolicy)}. Latencies are taken from the CI's {@link CostModel}, so
+ * sources are only hedged once the CI has a cost model, and it has observed them often enough.
+ * 
+ * <p>Sources are identified by {@link Source#getName()}.
+ * 
+ * @param <I>
+ * @param <O>
+ * @param <T>
+ */
+public class HedgingPolicy<I, O, T> {
+
+	private final double percentile;
+	private final double budgetFraction;
+	private final long minimumSamples;
+
+	private final ConcurrentMap<String, List<Source<I, O, T>>> alternatives = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a policy which hedges sources once they have been observed 20 times
+	 * 
+	 * @param percentile The percentile of a source's observed latency after which it is hedged, in [0, 100]
+	 * @param budgetFraction The fraction of each depletable in an invocation's budget which hedges may spend, in [0, 1]
+	 */
+	public HedgingPolicy(double percentile, double budgetFraction) {
+		this(percentile, budgetFraction, 20);
+	}
+
+	/**
+	 * @param percentile The percentile of a source's observed latency after which it is hedged, in [0, 100]
+	 * @param budgetFraction The fraction of each depletable in an invocation's budget which hedges may spend, in [0, 1]
+	 * @param minimumSamples The number of times a source must be observed before it is hedged
+	 */
+	public HedgingPolicy(double percentile, double budgetFraction, long minimumSamples) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("Percentile must be in [0, 100]");
+		if (budgetFraction < 0 || budgetFraction > 1)
+			throw new IllegalArgumentException("Budget fraction must be in [0, 1]");
+
+		this.percentile = percentile;
+		this.budgetFraction = budgetFraction;
+		this.minimumSamples = Math.max(1, minimumSamples);
+	}
+
+	/**
+	 * Hedge a source by querying it a second time
+	 * 
+	 * @param source The source
+	 */
+	public void hedge(Source<I, O, T> source) {
+		alternatives.put(source.getName(), ImmutableList.of(source));
+	}
+
+	/**
+	 * Hedge a source by querying one of its replicas. Replicas are tried in order, and the first one
+	 * whose cost fits within the budget is queried.
+	 * 
+	 * @param source The source
+	 * @param replicas The replicas of the source
+	 */
+	public void hedge(Source<I, O, T> source, List<Source<I, O, T>> replicas) {
+		alternatives.put(source.getName(), ImmutableList.copyOf(replicas));
+	}
+
+	/**
+	 * Hedge every source of a contract by querying the other sources of the contract, which are
+	 * assumed to be equivalent
+	 * 
+	 * @param contract The contract
+	 */
+	public void hedge(Class<? extends Contract<I, O, T>> contract) {
+		List<Source<I, O, T>> sources = Contracts.discover(contract);
+
+		for (Source<I, O, T> source : sources) {
+			List<Source<I, O, T>> others = new ArrayList<>(sources);
+			others.remove(source);
+			alternatives.put(source.getName(), ImmutableList.copyOf(others));
+		}
+	}
+
+	/**
+	 * @param source A source
+	 * @return The alternatives to query when the source is hedged, in order of preference, or an empty list
+	 * if it isn't hedged
+	 */
+	public List<Source<I, O, T>> getAlternatives(Source<I, O, T> source) {
+		List<Source<I, O, T>> list = alternatives.get(source.getName());
+		return list == null ? Collections.<Source<I, O, T>>emptyList() : list;
+	}
+
+	/**
+	 * @param source A source
+	 * @param model The cost model which observes the source
+	 * @param unit The unit of the result
+	 * @return The time after which the source is hedged, if it has been observed often enough
+	 */
+	public Optional<Long> getDelay(Source<I, O, T> source, CostModel model, TimeUnit unit) {
+		Optional<SourceCost> cost = model.get(source.getName());
+		if (! cost.isPresent() || cost.get().getObserved().getCount() < minimumSamples)
+			return Optional.absent();
+
+		return Optional.of(cost.get().getObserved().getPercentile(percentile, unit));
+	}
+
+	/**
+	 * Determine how much of a budget hedges may spend. Depletables are reduced to the policy's fraction of
+	 * their quantity, and every other allowance, such as flags and time, is kept.
+	 * 
+	 * @param budget The invocation's budget
+	 * @return The budget for hedges
+	 */
+	@SuppressWarnings("unchecked")
+	public Allowance[] limit(Allowance[] budget) {
+		Allowance[] limit = budget.clone();
+
+		for (int i = 0; i < budget.length; i++) {
+			if (budget[i] instanceof FixedPointDepletable) {
+				FixedPointDepletable depletable = (FixedPointDepletable) budget[i];
+				limit[i] = depletable.withUnits((long) (depletable.getUnits() * budgetFraction));
+			} else if (budget[i] instanceof BasicDepletable<?>) {
+				Object quantity = ((BasicDepletable<?>) budget[i]).getQuantity();
+
+				if (quantity instanceof BigDecimal)
+					limit[i] = ((BasicDepletable<BigDecimal>) budget[i]).withQuantity(((BigDecimal) quantity).multiply(BigDecimal.valueOf(budgetFraction)));
+				else if (quantity instanceof Long)
+					limit[i] = ((BasicDepletable<Long>) budget[i]).withQuantity((long) ((Long) quantity * budgetFraction));
+			}
+		}
+
+		return limit;
+	}
+
+}
@@ -0,0 +1,63 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.List;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+
+/**
+ * An {@link Aggregator} which can absorb opinions one at a time. Each invocation of a CI
+ * gets its own {@link Accumulator}, which is given each opinion as it arrives, such that
+ * the current result can be produced without re-aggregating every opinion.
+ *
+ * <p>Batch aggregation is performed by folding the opinions into a new accumulator.
+ *
+ * @param <O>
+ * @param <T>
+ * @param <Q>
+ */
+public interface IncrementalAggregator<O, T, Q> extends Aggregator<O, T, Q> {
+
+	/**
+	 * @return A new accumulator, with no opinions
+	 */
+	public Accumulator<O, T, Q> newAccumulator();
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Aggregator#aggregate(java.util.List)
+	 */
+	@Override
+	public default Optional<Result<O, Q>> aggregate(List<Opinion<O, T>> opinions) {
+		Accumulator<O, T, Q> accumulator = newAccumulator();
+		for (Opinion<O, T> opinion : opinions)
+			accumulator.add(opinion);
+
+		return accumulator.getResult();
+	}
+
+	/**
+	 * The aggregation state of a single invocation. Accumulators are not thread safe,
+	 * the caller is responsible for synchronization.
+	 *
+	 * @param <O>
+	 * @param <T>
+	 * @param <Q>
+	 */
+	public interface Accumulator<O, T, Q> {
+
+		/**
+		 * @param opinion An opinion to include in the result
+		 */
+		public void add(Opinion<O, T> opinion);
+
+		/**
+		 * @return The aggregate of every opinion added so far
+		 */
+		public Optional<Result<O, Q>> getResult();
+
+	}
+
+}
@@ -0,0 +1,133 @@
+package edu.toronto.cs.se.ci;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+
+/**
+ * Receives the events which occur during invocations of a CI. Every method has a no-op
+ * default, so listeners only implement the events they are interested in.
+ * 
+ * <p>Events are delivered synchronously, on the threads running the invocation, and often while
+ * the invocation's estimate is locked. Listeners must return quickly, and must not throw. Listeners
+ * which do expensive work, such as I/O, should be wrapped in a
+ * {@link edu.toronto.cs.se.ci.listeners.RingBufferListener}, which moves delivery onto its own thread.
+ * 
+ * <p>No event objects are allocated to deliver events, and CIs don't gather the information
+ * for events unless a listener is attached.
+ */
+public interface InvocationListener {
+
+	/**
+	 * A listener which ignores every event
+	 */
+	public static final InvocationListener NONE = new InvocationListener() {};
+
+	/**
+	 * The selector chose a source to query
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source
+	 */
+	public default void sourceSelected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {}
+
+	/**
+	 * The selector chose a source whose cost was not within the invocation's budget, or which the CI's
+	 * ledger couldn't cover, so it was not queried
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source
+	 */
+	public default void sourceRejected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {}
+
+	/**
+	 * The selector chose a source which is unavailable for now, as its bulkhead is full or its circuit is
+	 * open, so it was not queried. Its cost was not spent.
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source
+	 */
+	public default void sourceUnavailable(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {}
+
+	/**
+	 * The cost of a source was spent from the invocation's budget
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source which is about to be queried
+	 * @param cost The cost of the source
+	 * @param remaining The budget remaining after the cost was spent
+	 */
+	public default void budgetExpended(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Expenditure[] cost, Allowance[] remaining) {}
+
+	/**
+	 * A source gave its opinion
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source
+	 * @param opinion The opinion
+	 * @param elapsedNanos The time between querying the source and receiving its opinion
+	 */
+	public default void opinionReceived(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Opinion<?, ?> opinion, long elapsedNanos) {}
+
+	/**
+	 * A source failed to give an opinion. Sources which don't know the answer fail with an
+	 * {@link UnknownException}.
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source
+	 * @param cause The reason the source failed
+	 * @param elapsedNanos The time between querying the source and it failing
+	 */
+	public default void sourceFailed(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Throwable cause, long elapsedNanos) {}
+
+	/**
+	 * The opinions received so far were aggregated
+	 * 
+	 * @param invocation The invocation
+	 * @param result The aggregated result
+	 */
+	public default void aggregated(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {}
+
+	/**
+	 * The aggregator threw an exception
+	 * 
+	 * @param invocation The invocation
+	 * @param cause The exception
+	 */
+	public default void aggregationFailed(CI<?, ?, ?, ?>.Invocation invocation, Throwable cause) {}
+
+	/**
+	 * A partial result listener, registered with {@link Estimate#addPartialListener}, threw an exception
+	 * 
+	 * @param invocation The invocation
+	 * @param cause The exception
+	 */
+	public default void listenerFailed(CI<?, ?, ?, ?>.Invocation invocation, Throwable cause) {}
+
+	/**
+	 * The acceptor accepted a result, so the invocation finishes early
+	 * 
+	 * @param invocation The invocation
+	 * @param result The accepted result
+	 */
+	public default void accepted(CI<?, ?, ?, ?>.Invocation invocation, Result<?, ?> result) {}
+
+	/**
+	 * No more sources will be queried by the invocation
+	 * 
+	 * @param invocation The invocation
+	 */
+	public default void sealed(CI<?, ?, ?, ?>.Invocation invocation) {}
+
+	/**
+	 * The invocation finished
+	 * 
+	 * @param invocation The invocation
+	 * @param result The final result, or {@code Optional.absent()} if the invocation failed
+	 */
+	public default void done(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {}
+
+}
@@ -0,0 +1,73 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.Collections;
+import java.util.List;
+
+import edu.toronto.cs.se.ci.data.Opinion;
+
+/**
+ * Chooses the sources to query, like a {@link Selector}, but is driven by the events of an invocation,
+ * rather than being polled by it. Pass it to one of the CI constructors which take a reactive selector. Each
+ * callback returns the sources to query next, which may be none. Invocations using a reactive selector
+ * hold no thread while waiting for their sources, so strategies such as "query three sources, and
+ * only query more if they disagree" don't occupy a thread per invocation.
+ * 
+ * <p>Callbacks for a single invocation are never run concurrently, but they may be run on any thread,
+ * including the one which completed a source's opinion, so they must not block. The invocation is sealed
+ * once no sources are being queried, and the last callback returned no sources.
+ * 
+ * <p>Sources which are returned, but have already been queried, are ignored. Sources whose cost doesn't
+ * fit within the remaining budget are rejected, as they are for polled selectors.
+ * 
+ * @param <I>
+ * @param <O>
+ * @param <T>
+ */
+public interface ReactiveSelector<I, O, T> {
+
+	/**
+	 * The invocation has started
+	 * 
+	 * @param invocation The invocation
+	 * @return The sources to query
+	 * @throws Exception If the sources couldn't be chosen. The invocation is sealed.
+	 */
+	public List<Source<I, O, T>> onStart(CI<I, O, T, ?>.Invocation invocation) throws Exception;
+
+	/**
+	 * A source gave its opinion. The opinion has already been recorded in the invocation's estimate.
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source
+	 * @param opinion The source's opinion
+	 * @return The sources to query
+	 * @throws Exception If the sources couldn't be chosen. The invocation is sealed.
+	 */
+	public List<Source<I, O, T>> onOpinion(CI<I, O, T, ?>.Invocation invocation, Source<I, O, T> source, Opinion<O, T> opinion) throws Exception;
+
+	/**
+	 * A source failed to give an opinion
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source
+	 * @param cause The reason the source failed, usually an {@link UnknownException}
+	 * @return The sources to query
+	 * @throws Exception If the sources couldn't be chosen. The invocation is sealed.
+	 */
+	public default List<Source<I, O, T>> onFailure(CI<I, O, T, ?>.Invocation invocation, Source<I, O, T> source, Throwable cause) throws Exception {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * The invocation spent part of its budget on the sources returned by a callback. This is called
+	 * until it returns no sources, or no more of the budget is spent.
+	 * 
+	 * @param invocation The invocation
+	 * @return The sources to query
+	 * @throws Exception If the sources couldn't be chosen. The invocation is sealed.
+	 */
+	public default List<Source<I, O, T>> onBudgetChange(CI<I, O, T, ?>.Invocation invocation) throws Exception {
+		return Collections.emptyList();
+	}
+
+}
@@ -17,7 +17,9 @@ public interface Selector<I, O, T> {
 	/**
 	 * Get the next source to be consulted by the CI. This function will be called
 	 * repeatedly until it returns {@code null}, at which point, the CI will stop
-	 * calling functions. It may block to wait for sources to be consulted.
+	 * calling functions. It may block to wait for sources to be consulted. Selectors which
+	 * would block should implement {@link ReactiveSelector} instead, which isn't polled, and is passed to
+	 * the CI in place of a Selector.
 	 * 
 	 * @param invocation The current invocation of the CI
 	 * @return The next source to consult, or {@code null}
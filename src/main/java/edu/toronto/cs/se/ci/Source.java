@@ -5,6 +5,8 @@ import java.util.concurrent.Callable;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 
 import edu.toronto.cs.se.ci.budget.Expenditure;
 import edu.toronto.cs.se.ci.data.Opinion;
@@ -54,6 +56,45 @@ public abstract class Source<I, O, T> {
 	 */
 	public abstract Opinion<O, T> getOpinion(I args) throws UnknownException;
 
+	/**
+	 * Get the source's opinion asynchronously. The CI queries sources exclusively through this
+	 * method. By default, {@link #getOpinion(Object)} is run on {@code pool}. Sources which are backed
+	 * by an asynchronous client should override this method, and return a future which is completed
+	 * by the client, such that no thread is held while waiting for the response.
+	 * 
+	 * <p>If the source has no opinion, the future should fail with an {@link UnknownException}.
+	 * 
+	 * <p>The invocation's deadline is given by {@link Deadline#current()} while this method runs, and
+	 * while {@link #getOpinion(Object)} runs on {@code pool}.
+	 * 
+	 * @param args The arguments passed to the CI
+	 * @param pool The invocation's executor, which may be used to run blocking work
+	 * @return A future for the source's opinion
+	 */
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(I args, ListeningExecutorService pool) {
+		return pool.submit(new SourceCallable<I, O, T>(this, args));
+	}
+
+	/**
+	 * Get the source's opinion asynchronously, before a deadline. This is the method the CI queries
+	 * sources through. By default, {@link #getOpinionAsync(Object, ListeningExecutorService)} is called with
+	 * {@code deadline} as the {@link Deadline#current() current} deadline. Sources which can shorten their
+	 * own timeouts to fit the deadline may override this method instead.
+	 * 
+	 * @param args The arguments passed to the CI
+	 * @param pool The invocation's executor, which may be used to run blocking work
+	 * @param deadline The time by which the invocation must be done
+	 * @return A future for the source's opinion
+	 */
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(I args, ListeningExecutorService pool, Deadline deadline) {
+		Deadline previous = deadline.install();
+		try {
+			return getOpinionAsync(args, pool);
+		} finally {
+			Deadline.restore(previous);
+		}
+	}
+
 	/**
 	 * Callable wrapper for a source.
 	 *
@@ -64,15 +105,29 @@ public abstract class Source<I, O, T> {
 		
 		private Source<I, O, T> source;
 		private I args;
+		private Deadline deadline;
 		
+		/**
+		 * Create a callable which runs with the current thread's deadline
+		 */
 		public SourceCallable(Source<I, O, T> source, I args) {
+			this(source, args, Deadline.current());
+		}
+		
+		public SourceCallable(Source<I, O, T> source, I args, Deadline deadline) {
 			this.source = source;
 			this.args = args;
+			this.deadline = deadline;
 		}
 
 		@Override
 		public Opinion<O, T> call() throws Exception {
-			return source.getOpinion(args);
+			Deadline previous = deadline.install();
+			try {
+				return source.getOpinion(args);
+			} finally {
+				Deadline.restore(previous);
+			}
 		}
 
 	}
@@ -1,12 +1,12 @@
 package edu.toronto.cs.se.ci.aggregators;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import com.google.common.base.Optional;
 
 import edu.toronto.cs.se.ci.Aggregator;
+import edu.toronto.cs.se.ci.IncrementalAggregator;
 import edu.toronto.cs.se.ci.data.Evidence;
 import edu.toronto.cs.se.ci.data.Opinion;
 import edu.toronto.cs.se.ci.data.Result;
@@ -17,10 +17,14 @@ import edu.toronto.cs.se.ci.data.Trust;
  * "Evidence-Based Trust: A Mathematical Model Geared for Multiagent Systems"
  * to determine which result to choose, and the quality of the result.
  * 
+ * <p>Opinion values are compared with {@code equals}, so opinions whose values are equal are evidence for
+ * the same option, even if they are different instances. An opinion's counter-evidence goes to every
+ * option except its own.
+ * 
  * @author Michael Layzell
  *
  */
-public class ProbabalisticAggregator<O> implements Aggregator<O, Trust, Double> {
+public class ProbabalisticAggregator<O> implements IncrementalAggregator<O, Trust, Double> {
 	
 	private int nOptions;
 	
@@ -36,57 +40,84 @@ public class ProbabalisticAggregator<O> implements Aggregator<O, Trust, Double>
 		return new Evidence(a.getConsenting() + b.getConsenting(), a.getDissenting() + b.getDissenting());
 	}
 
-	public Evidence addEvidence(Map<O, Evidence> options, O answer, Evidence evidence, Evidence memo) {
+	/**
+	 * @param evidence The evidence for one option
+	 * @return The evidence which it provides for every other option
+	 */
+	private Evidence counterEvidence(Evidence evidence) {
 		// The counter-evidence is the evidence which, because of the evidence for k, will be acting
 		// "for" every other option. This depends on the number of options which are avaliable.
 		// If nOptions == -1, nOptions is assumed to be infinity.
-		Evidence counter;
 		if (nOptions == -1)
-			counter = new Evidence(0, evidence.getConsenting());
+			return new Evidence(0, evidence.getConsenting());
 		else
-			counter = new Evidence(evidence.getDissenting() / (nOptions + 1), evidence.getConsenting());
-		
-		// Record the evidence for k
-		options.put(answer, combine(options.getOrDefault(answer, memo), evidence));
-		
-		// Record the evidence for everything else
-		for (Map.Entry<O, Evidence> option : options.entrySet()) {
-			if (option.getKey() != answer)
-				options.put(option.getKey(), combine(option.getValue(), counter));
-		}
-		
-		return combine(memo, counter);
+			return new Evidence(evidence.getDissenting() / (nOptions + 1), evidence.getConsenting());
 	}
-	
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.IncrementalAggregator#newAccumulator()
+	 */
 	@Override
-	public Optional<Result<O, Double>> aggregate(List<Opinion<O, Trust>> opinions) {
-		// Add the evidence from every source
-		Map<O, Evidence> options = new HashMap<>();
-		Evidence memo = new Evidence(0, 0);
-		for (Opinion<O, Trust> opinion : opinions) {
-			memo = addEvidence(options, opinion.getValue(), new Evidence(opinion.getTrust()), memo);
-		}
+	public Accumulator<O, Trust, Double> newAccumulator() {
+		return new Options();
+	}
+
+	/**
+	 * The evidence gathered so far in an invocation. The evidence for an option is the
+	 * evidence given for it directly, plus the counter-evidence from every opinion for
+	 * another option. Rather than adding counter-evidence to every option as each opinion
+	 * arrives, the total counter-evidence is recorded once, and each option records the
+	 * counter-evidence from its own opinions, which is subtracted back out.
+	 */
+	private class Options implements Accumulator<O, Trust, Double> {
+
+		private final Map<O, Evidence[]> options = new HashMap<>();
+		private Evidence totalCounter = new Evidence(0, 0);
+
+		@Override
+		public void add(Opinion<O, Trust> opinion) {
+			Evidence evidence = new Evidence(opinion.getTrust());
+			Evidence counter = counterEvidence(evidence);
 
-		// Convert each evidence into trust space
-		Map<O, Trust> optionTrusts = new HashMap<>();
-		for (Map.Entry<O, Evidence> option : options.entrySet()) {
-			optionTrusts.put(option.getKey(), new Trust(option.getValue()));
+			// Record the evidence for k, and the counter-evidence it doesn't receive
+			Evidence[] option = options.get(opinion.getValue());
+			if (option == null)
+				options.put(opinion.getValue(), new Evidence[] { evidence, counter });
+			else {
+				option[0] = combine(option[0], evidence);
+				option[1] = combine(option[1], counter);
+			}
+
+			// Record the evidence for everything else
+			totalCounter = combine(totalCounter, counter);
 		}
-		
-		// And choose the best one
-		double bestBelief = 0;
-		O bestOption = null;
-		for (Map.Entry<O, Trust> option : optionTrusts.entrySet()) {
-			if (option.getValue().getBelief() > bestBelief) {
-				bestBelief = option.getValue().getBelief();
-				bestOption = option.getKey();
+
+		@Override
+		public Optional<Result<O, Double>> getResult() {
+			// Convert each evidence into trust space, and choose the best one
+			double bestBelief = 0;
+			O bestOption = null;
+			for (Map.Entry<O, Evidence[]> option : options.entrySet()) {
+				Evidence own = option.getValue()[0];
+				Evidence excluded = option.getValue()[1];
+				Evidence total = new Evidence(
+						totalCounter.getConsenting() - excluded.getConsenting() + own.getConsenting(),
+						totalCounter.getDissenting() - excluded.getDissenting() + own.getDissenting());
+
+				double belief = new Trust(total).getBelief();
+				if (belief > bestBelief) {
+					bestBelief = belief;
+					bestOption = option.getKey();
+				}
 			}
+
+			if (bestOption == null)
+				return Optional.absent();
+
+			return Optional.of(new Result<O, Double>(bestOption, bestBelief));
 		}
-		
-		if (bestOption == null)
-			return Optional.absent();
-		
-		return Optional.of(new Result<O, Double>(bestOption, bestBelief));
+
 	}
-	
+
 }
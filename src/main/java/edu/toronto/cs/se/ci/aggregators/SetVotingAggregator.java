@@ -2,13 +2,13 @@ package edu.toronto.cs.se.ci.aggregators;
 
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.google.common.base.Optional;
 
 import edu.toronto.cs.se.ci.Aggregator;
+import edu.toronto.cs.se.ci.IncrementalAggregator;
 import edu.toronto.cs.se.ci.data.Opinion;
 import edu.toronto.cs.se.ci.data.Result;
 
@@ -25,7 +25,7 @@ import edu.toronto.cs.se.ci.data.Result;
  *
  * @param <O> Set element type
  */
-public class SetVotingAggregator<O> implements Aggregator<Set<O>, Double, Double> {
+public class SetVotingAggregator<O> implements IncrementalAggregator<Set<O>, Double, Double> {
 
 	private double threshold;
 
@@ -38,41 +38,58 @@ public class SetVotingAggregator<O> implements Aggregator<Set<O>, Double, Double
 		this.threshold = threshold;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.IncrementalAggregator#newAccumulator()
+	 */
 	@Override
-	public Optional<Result<Set<O>, Double>> aggregate(List<Opinion<Set<O>, Double>> opinions) {
-		double totalWeight = 0;
-		Map<O, Double> votes = new HashMap<O, Double>();
-		
-		// Each source votes for the items in its set
-		for (Opinion<Set<O>, Double> opinion : opinions) {
+	public Accumulator<Set<O>, Double, Double> newAccumulator() {
+		return new Votes();
+	}
+
+	/**
+	 * The votes cast so far in an invocation
+	 */
+	private class Votes implements Accumulator<Set<O>, Double, Double> {
+
+		private double totalWeight = 0;
+		private final Map<O, Double> votes = new HashMap<O, Double>();
+
+		@Override
+		public void add(Opinion<Set<O>, Double> opinion) {
 			double trust = opinion.getTrust();
 
+			// Each source votes for the items in its set
 			for (O item : opinion.getValue()) {
 				double weight = votes.getOrDefault(item, 0.0) + trust;
 				votes.put(item, weight);
 			}
-			
+
 			totalWeight += trust;
 		}
-		
-		// Items which have an agreement level above the threshold are added to the set
-		Set<O> results = new HashSet<O>();
-		double agreementSum = 0;
-		
-		for (Map.Entry<O, Double> entry : votes.entrySet()) {
-			double agreement = entry.getValue() / totalWeight;
-
-			if (agreement > threshold) {
-				// Add the entry
-				results.add(entry.getKey());
-				
-				// Record the level of agreement
-				agreementSum += agreement;
+
+		@Override
+		public Optional<Result<Set<O>, Double>> getResult() {
+			// Items which have an agreement level above the threshold are added to the set
+			Set<O> results = new HashSet<O>();
+			double agreementSum = 0;
+
+			for (Map.Entry<O, Double> entry : votes.entrySet()) {
+				double agreement = entry.getValue() / totalWeight;
+
+				if (agreement > threshold) {
+					// Add the entry
+					results.add(entry.getKey());
+
+					// Record the level of agreement
+					agreementSum += agreement;
+				}
 			}
+
+			// The quality is the average agreement level of items in the set
+			return Optional.of(new Result<Set<O>, Double>(results, agreementSum / results.size()));
 		}
-		
-		// The quality is the average agreement level of items in the set
-		return Optional.of(new Result<Set<O>, Double>(results, agreementSum / results.size()));
+
 	}
 
 }
@@ -1,12 +1,13 @@
 package edu.toronto.cs.se.ci.aggregators;
 
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 
 import com.google.common.base.Optional;
 
 import edu.toronto.cs.se.ci.Aggregator;
+import edu.toronto.cs.se.ci.IncrementalAggregator;
 import edu.toronto.cs.se.ci.data.Opinion;
 import edu.toronto.cs.se.ci.data.Result;
 
@@ -15,23 +16,44 @@ import edu.toronto.cs.se.ci.data.Result;
  * what the correct answer is. The value of the result is the opinion with
  * the most votes. Each vote is weighted as the opinion's trust. 
  * 
- * <p>Opinion values are compared using a HashMap.
+ * <p>Opinion values are compared using a HashMap. Votes are counted incrementally, as
+ * each opinion arrives.
+ * 
+ * <p>When values tie, the leader is the value which reached the winning weight first. If a vote with
+ * negative trust takes the lead away from it, the new leader is chosen from the tied values in the
+ * order in which they first received a vote.
  * 
  * @author Michael Layzell
  *
  * @param <O>
  */
-public class VoteAggregator<O> implements Aggregator<O, Double, Double> {
+public class VoteAggregator<O> implements IncrementalAggregator<O, Double, Double> {
 
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.IncrementalAggregator#newAccumulator()
+	 */
 	@Override
-	public Optional<Result<O, Double>> aggregate(List<Opinion<O, Double>> opinions) {
-		// Map from each value to its current aggregate weight
-		Map<O, Double> options = new HashMap<O, Double>();
-		
+	public Accumulator<O, Double, Double> newAccumulator() {
+		return new Votes();
+	}
+
+	/**
+	 * The votes cast so far in an invocation
+	 */
+	private class Votes implements Accumulator<O, Double, Double> {
+
+		// Map from each value to its current aggregate weight, in the order the values were first voted for
+		private final Map<O, Double> options = new LinkedHashMap<O, Double>();
+
 		// The total trust in all sources in the system
-		double totalVotes = 0.0;
-		
-		for (Opinion<O, Double> opinion : opinions) {
+		private double totalVotes = 0.0;
+
+		private O bestValue = null;
+		private double bestWeight = 0.0;
+
+		@Override
+		public void add(Opinion<O, Double> opinion) {
 			// Get values from the opinion
 			O value = opinion.getValue();
 			double trust = opinion.getTrust();
@@ -44,26 +66,37 @@ public class VoteAggregator<O> implements Aggregator<O, Double, Double> {
 			// Record the opinion's vote
 			votes += trust;
 			totalVotes += trust;
-			
+
 			// Store the new vote back in the Map
 			options.put(value, votes);
-		}
-		
-		O bestValue = null;
-		double bestWeight = 0.0;
-		
-		// Choose the entry with the highest weight
-		for (Map.Entry<O, Double> e : options.entrySet()) {
-			if (e.getValue() > bestWeight) {
-				bestValue = e.getKey();
-				bestWeight = e.getValue();
+
+			// Weights only grow, unless a vote has negative trust, in which case
+			// the leading value may have lost its lead.
+			if (votes > bestWeight) {
+				bestValue = value;
+				bestWeight = votes;
+			} else if (trust < 0 && Objects.equals(value, bestValue)) {
+				bestValue = null;
+				bestWeight = 0.0;
+
+				// Choose the entry with the highest weight
+				for (Map.Entry<O, Double> e : options.entrySet()) {
+					if (e.getValue() > bestWeight) {
+						bestValue = e.getKey();
+						bestWeight = e.getValue();
+					}
+				}
 			}
 		}
-		
-		double quality = getQuality(bestWeight, totalVotes - bestWeight);
-		
-		// Return the result
-		return Optional.of(new Result<O, Double>(bestValue, quality));
+
+		@Override
+		public Optional<Result<O, Double>> getResult() {
+			double quality = getQuality(bestWeight, totalVotes - bestWeight);
+
+			// Return the result
+			return Optional.of(new Result<O, Double>(bestValue, quality));
+		}
+
 	}
 
 	/**
@@ -1,12 +1,12 @@
 package edu.toronto.cs.se.ci.aggregators;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import com.google.common.base.Optional;
 
 import edu.toronto.cs.se.ci.Aggregator;
+import edu.toronto.cs.se.ci.IncrementalAggregator;
 import edu.toronto.cs.se.ci.data.Evidence;
 import edu.toronto.cs.se.ci.data.Opinion;
 import edu.toronto.cs.se.ci.data.Result;
@@ -20,35 +20,51 @@ import edu.toronto.cs.se.ci.data.Trust;
  *
  * @param <O> The result type
  */
-public class VoteProbAggregator<O> implements Aggregator<O, Trust, Double> {
+public class VoteProbAggregator<O> implements IncrementalAggregator<O, Trust, Double> {
 
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.IncrementalAggregator#newAccumulator()
+	 */
 	@Override
-	public Optional<Result<O, Double>> aggregate(List<Opinion<O, Trust>> opinions) {
-		Map<O, Double> options = new HashMap<>();
-		double total = 0;
-		
-		for (Opinion<O, Trust> opinion : opinions) {
+	public Accumulator<O, Trust, Double> newAccumulator() {
+		return new Votes();
+	}
+
+	/**
+	 * The votes cast so far in an invocation
+	 */
+	private class Votes implements Accumulator<O, Trust, Double> {
+
+		private final Map<O, Double> options = new HashMap<>();
+		private double total = 0;
+
+		// Beliefs are never negative, so the best option can only be overtaken
+		private O bestOption = null;
+		private double bestTrust = 0;
+
+		@Override
+		public void add(Opinion<O, Trust> opinion) {
 			O value = opinion.getValue();
 			double trust = opinion.getTrust().getBelief();
-			options.put(value, options.getOrDefault(value, 0.0) + trust);
+			double votes = options.getOrDefault(value, 0.0) + trust;
+			options.put(value, votes);
 			total += trust;
-		}
-		
-		// Choose the best one
-		O bestOption = null;
-		double bestTrust = 0;
-		
-		for (Map.Entry<O, Double> entry : options.entrySet()) {
-			if (entry.getValue() > bestTrust) {
-				bestOption = entry.getKey();
-				bestTrust = entry.getValue();
+
+			if (votes > bestTrust) {
+				bestOption = value;
+				bestTrust = votes;
 			}
 		}
-		
-		// Generate a confidence level
-		double conf = new Trust(new Evidence(bestTrust, total - bestTrust)).getBelief();
-				
-		return Optional.of(new Result<O, Double>(bestOption, conf));
+
+		@Override
+		public Optional<Result<O, Double>> getResult() {
+			// Generate a confidence level
+			double conf = new Trust(new Evidence(bestTrust, total - bestTrust)).getBelief();
+
+			return Optional.of(new Result<O, Double>(bestOption, conf));
+		}
+
 	}
 
 }
@@ -1,10 +1,9 @@
 package edu.toronto.cs.se.ci.aggregators;
 
-import java.util.List;
-
 import com.google.common.base.Optional;
 
 import edu.toronto.cs.se.ci.Aggregator;
+import edu.toronto.cs.se.ci.IncrementalAggregator;
 import edu.toronto.cs.se.ci.data.Opinion;
 import edu.toronto.cs.se.ci.data.Result;
 
@@ -13,36 +12,59 @@ import edu.toronto.cs.se.ci.data.Result;
  * The weighting of each opinion is its trust. The quality of the result is 
  * {@code 1.0/(stdev + 1)} where stdev is the weighted standard deviation.
  * 
+ * <p>Opinions with a trust of zero carry no weight, and are ignored, even if their values aren't finite.
+ * If no opinion has any weight, both the value and the quality of the result are {@code NaN}.
+ * 
  * @author Michael Layzell
  *
  */
-public class WeightedMeanAggregator implements Aggregator<Double, Double, Double> {
+public class WeightedMeanAggregator implements IncrementalAggregator<Double, Double, Double> {
 
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.IncrementalAggregator#newAccumulator()
+	 */
 	@Override
-	public Optional<Result<Double, Double>> aggregate(List<Opinion<Double, Double>> opinions) {
-		// Get the weighted mean
-		double sum = 0;
-		double totalWeight = 0;
+	public Accumulator<Double, Double, Double> newAccumulator() {
+		return new Moments();
+	}
 
-		for (Opinion<Double, Double> opinion : opinions) {
+	/**
+	 * The running weighted mean and variance of an invocation's opinions, maintained
+	 * with West's weighted incremental algorithm.
+	 */
+	private static class Moments implements Accumulator<Double, Double, Double> {
+
+		private double totalWeight = 0;
+		private double mean = 0;
+		private double squareDiffSum = 0;
+
+		@Override
+		public void add(Opinion<Double, Double> opinion) {
 			double trust = opinion.getTrust();
-			sum += opinion.getValue() * trust;
+
+			// Opinions with no weight don't affect the mean or deviation
+			if (trust == 0)
+				return;
+
 			totalWeight += trust;
+
+			double diff = opinion.getValue() - mean;
+			mean += diff * trust / totalWeight;
+			squareDiffSum += trust * diff * (opinion.getValue() - mean);
 		}
 
-		double mean = sum / totalWeight;
-		
-		// Get the weighted standard deviation
-		double squareDiffSum = 0;
-		
-		for (Opinion<Double, Double> opinion : opinions) {
-			squareDiffSum += Math.pow(opinion.getValue() - mean, 2) * opinion.getTrust();
+		@Override
+		public Optional<Result<Double, Double>> getResult() {
+			if (totalWeight == 0)
+				return Optional.of(new Result<Double, Double>(Double.NaN, Double.NaN));
+
+			double stdev = Math.sqrt(squareDiffSum / totalWeight);
+
+			// Return the result
+			return Optional.of(new Result<Double, Double>(mean, 1.0/(stdev + 1)));
 		}
-		
-		double stdev = Math.sqrt(squareDiffSum / totalWeight);
-		
-		// Return the result
-		return Optional.of(new Result<Double, Double>(mean, 1.0/(stdev + 1)));
+
 	}
 
 }
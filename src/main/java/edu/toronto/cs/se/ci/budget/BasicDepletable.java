@@ -100,4 +100,25 @@ public abstract class BasicDepletable<T> implements Allowance, Expenditure, Clon
 			return Optional.absent(); // If the depletable is not present - return Optional.absent()
 	}
 	
+	/**
+	 * Two depletables are equal if they are of the same class, and have equal quantities
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || obj.getClass() != getClass())
+			return false;
+		
+		Object other = ((BasicDepletable<?>) obj).quantity;
+		return quantity == null ? other == null : quantity.equals(other);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * getClass().hashCode() + (quantity == null ? 0 : quantity.hashCode());
+	}
+
 }
@@ -0,0 +1,375 @@
+package edu.toronto.cs.se.ci.budget;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.ExecutionContexts;
+
+/**
+ * A budget which is shared by every invocation it is attached to, such as "at most $500 an hour,
+ * across every CI in the JVM". Attach a ledger to a CI with {@link edu.toronto.cs.se.ci.CI#setLedger(BudgetLedger)}.
+ * Invocations then reserve the cost of each source from the ledger, as well as from their own budget,
+ * and sources whose cost the ledger can't cover are rejected.
+ * 
+ * <p>The ledger has a limit for each type of {@link BasicDepletable} or {@link FixedPointDepletable}, such as
+ * {@link edu.toronto.cs.se.ci.budget.basic.Dollars}.
+ * Expenditures of other types, or of types without a limit, are ignored by the ledger. A limit may be
+ * refilled periodically, in which case every reservation made before the refill is forgotten.
+ * 
+ * <p>Reservations are either committed, once the source has given its opinion, or refunded, if it failed.
+ * Unlike the budget of an invocation, a reservation succeeds if it exactly exhausts the limit.
+ * 
+ * <p>The balance of each limit is split into stripes, which threads reserve from without locking. A
+ * thread reserves from its own stripe if it can, and otherwise gathers the amount from every stripe.
+ * While one thread is gathering, a reservation by another thread may fail, even though the limit
+ * could just cover both.
+ */
+public class BudgetLedger implements Closeable {
+
+	/**
+	 * The number of decimal places to which decimal quantities, such as Dollars, are tracked. Costs
+	 * are rounded up, and limits down, to the nearest unit. Fixed-point quantities are tracked exactly.
+	 */
+	public static final int DECIMAL_SCALE = 6;
+
+	private final int stripes;
+	private final ConcurrentMap<Class<?>, Account> accounts = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a ledger with a stripe per processor
+	 */
+	public BudgetLedger() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stripes The number of stripes to split each balance into. Rounded up to a power of two.
+	 */
+	public BudgetLedger(int stripes) {
+		if (stripes < 1)
+			throw new IllegalArgumentException("There must be at least one stripe");
+
+		int size = Integer.highestOneBit(stripes);
+		this.stripes = size < stripes ? size << 1 : size;
+	}
+
+	/**
+	 * Limit the total amount spent of a type of depletable, replacing any previous limit of that type.
+	 * 
+	 * @param limit The limit, such as {@code new Dollars(new BigDecimal(500))}
+	 */
+	public void setLimit(BasicDepletable<?> limit) {
+		setLimit((Allowance) limit);
+	}
+
+	/**
+	 * Limit the total amount spent of a type of depletable, replacing any previous limit of that type.
+	 * 
+	 * @param limit The limit, such as {@code new MicroDollars(500000000)}
+	 */
+	public void setLimit(FixedPointDepletable limit) {
+		setLimit((Allowance) limit);
+	}
+
+	private void setLimit(Allowance limit) {
+		Account previous = accounts.put(limit.getClass(), new Account(limit, toUnits(limit, RoundingMode.DOWN)));
+		if (previous != null)
+			previous.stop();
+	}
+
+	/**
+	 * Limit the amount spent of a type of depletable in each period, replacing any previous limit of
+	 * that type. The balance is reset to the limit at the end of every period.
+	 * 
+	 * @param limit The limit, such as {@code new Dollars(new BigDecimal(500))}
+	 * @param period The length of a period
+	 * @param unit The unit of {@code period}
+	 */
+	public void setLimit(BasicDepletable<?> limit, long period, TimeUnit unit) {
+		setLimit((Allowance) limit, period, unit);
+	}
+
+	/**
+	 * Limit the amount spent of a type of depletable in each period, replacing any previous limit of
+	 * that type. The balance is reset to the limit at the end of every period.
+	 * 
+	 * @param limit The limit, such as {@code new MicroDollars(500000000)}
+	 * @param period The length of a period
+	 * @param unit The unit of {@code period}
+	 */
+	public void setLimit(FixedPointDepletable limit, long period, TimeUnit unit) {
+		setLimit((Allowance) limit, period, unit);
+	}
+
+	private void setLimit(Allowance limit, long period, TimeUnit unit) {
+		final Account account = new Account(limit, toUnits(limit, RoundingMode.DOWN));
+		account.refill = ExecutionContexts.getTimer().scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				account.reset();
+			}
+
+		}, period, period, unit);
+
+		Account previous = accounts.put(limit.getClass(), account);
+		if (previous != null)
+			previous.stop();
+	}
+
+	/**
+	 * Remove the limit on a type of depletable
+	 * 
+	 * @param type The type of depletable
+	 */
+	public void removeLimit(Class<? extends Allowance> type) {
+		Account previous = accounts.remove(type);
+		if (previous != null)
+			previous.stop();
+	}
+
+	/**
+	 * @param type The type of depletable
+	 * @return The balance remaining of the type, if it has a limit
+	 */
+	public <A extends Allowance> Optional<A> getRemaining(Class<A> type) {
+		Account account = accounts.get(type);
+		if (account == null)
+			return Optional.absent();
+
+		return Optional.of(type.cast(fromUnits(account.limit, account.getBalance())));
+	}
+
+	/**
+	 * Reserve a cost from the ledger. Either the whole cost is reserved, or none of it is.
+	 * 
+	 * @param cost The cost
+	 * @return The reservation, which must be committed or refunded, or {@code Optional.absent()} if
+	 * the ledger can't cover the cost
+	 */
+	public Optional<Reservation> reserve(Expenditure[] cost) {
+		Account[] reserved = new Account[cost.length];
+		long[] amounts = new long[cost.length];
+		AtomicLongArray[] periods = new AtomicLongArray[cost.length];
+
+		for (int i = 0; i < cost.length; i++) {
+			Account account = accounts.get(cost[i].getClass());
+			if (account == null)
+				continue;
+
+			long amount = toUnits(cost[i], RoundingMode.UP);
+			AtomicLongArray period = account.take(amount);
+
+			if (period == null) {
+				// Give back what has been taken so far
+				for (int j = 0; j < i; j++) {
+					if (reserved[j] != null)
+						reserved[j].give(amounts[j], periods[j]);
+				}
+
+				return Optional.absent();
+			}
+
+			reserved[i] = account;
+			amounts[i] = amount;
+			periods[i] = period;
+		}
+
+		return Optional.of(new Reservation(reserved, amounts, periods));
+	}
+
+	/**
+	 * Stops refilling the ledger's limits
+	 */
+	@Override
+	public void close() {
+		for (Account account : accounts.values())
+			account.stop();
+	}
+
+	/**
+	 * @return The quantity of a depletable, as a whole number of units
+	 */
+	private static long toUnits(Object depletable, RoundingMode rounding) {
+		if (depletable instanceof FixedPointDepletable)
+			return ((FixedPointDepletable) depletable).getUnits();
+		if (! (depletable instanceof BasicDepletable))
+			throw new IllegalArgumentException("The ledger can't track " + depletable.getClass().getName());
+
+		Object quantity = ((BasicDepletable<?>) depletable).getQuantity();
+
+		if (quantity instanceof BigDecimal)
+			return ((BigDecimal) quantity).setScale(DECIMAL_SCALE, rounding).unscaledValue().longValue();
+		if (quantity instanceof Long || quantity instanceof Integer)
+			return ((Number) quantity).longValue();
+
+		throw new IllegalArgumentException("The ledger can't track quantities of " + depletable.getClass().getName());
+	}
+
+	/**
+	 * @return A depletable of the same class as {@code allowance}, with the quantity represented by {@code units}
+	 */
+	@SuppressWarnings("unchecked")
+	private static Allowance fromUnits(Allowance allowance, long units) {
+		if (allowance instanceof FixedPointDepletable)
+			return ((FixedPointDepletable) allowance).withUnits(units);
+
+		BasicDepletable<?> like = (BasicDepletable<?>) allowance;
+		if (like.getQuantity() instanceof BigDecimal)
+			return ((BasicDepletable<BigDecimal>) like).withQuantity(BigDecimal.valueOf(units, DECIMAL_SCALE));
+		if (like.getQuantity() instanceof Integer)
+			return ((BasicDepletable<Integer>) like).withQuantity((int) units);
+
+		return ((BasicDepletable<Long>) like).withQuantity(units);
+	}
+
+	/**
+	 * The balance of a single type of depletable
+	 */
+	private final class Account {
+
+		private final Allowance limit;
+		private final long units;
+
+		// The balances of the current period. Resetting the balance replaces them, so a reservation is tagged
+		// with the period it was taken from by the same read that takes it, and isn't refunded into a later one.
+		private volatile AtomicLongArray balances;
+
+		private volatile ScheduledFuture<?> refill = null;
+
+		public Account(Allowance limit, long units) {
+			this.limit = limit;
+			this.units = units;
+			this.balances = fill();
+		}
+
+		private AtomicLongArray fill() {
+			AtomicLongArray balances = new AtomicLongArray(stripes);
+			for (int i = 0; i < stripes; i++)
+				balances.set(i, units / stripes + (i == 0 ? units % stripes : 0));
+
+			return balances;
+		}
+
+		public void reset() {
+			balances = fill();
+		}
+
+		public void stop() {
+			ScheduledFuture<?> task = refill;
+			if (task != null)
+				task.cancel(false);
+		}
+
+		public long getBalance() {
+			AtomicLongArray balances = this.balances;
+			long total = 0;
+			for (int i = 0; i < stripes; i++)
+				total += balances.get(i);
+
+			return total;
+		}
+
+		private int home() {
+			return (int) Thread.currentThread().getId() & (stripes - 1);
+		}
+
+		/**
+		 * @return The period the amount was taken from, or {@code null} if the balance couldn't cover it
+		 */
+		public AtomicLongArray take(long amount) {
+			AtomicLongArray balances = this.balances;
+			int home = home();
+
+			// Usually the thread's own stripe covers the amount
+			long balance = balances.get(home);
+			if (balance >= amount && balances.compareAndSet(home, balance, balance - amount))
+				return balances;
+
+			// Otherwise gather it from every stripe
+			long taken = 0;
+			for (int i = 0; i < stripes && taken < amount; i++) {
+				int stripe = (home + i) & (stripes - 1);
+
+				for (;;) {
+					balance = balances.get(stripe);
+					long part = Math.min(balance, amount - taken);
+					if (part <= 0)
+						break;
+
+					if (balances.compareAndSet(stripe, balance, balance - part)) {
+						taken += part;
+						break;
+					}
+				}
+			}
+
+			if (taken == amount)
+				return balances;
+
+			balances.addAndGet(home, taken);
+			return null;
+		}
+
+		/**
+		 * Return an amount to the balance, unless it was taken before the balance was last reset
+		 * 
+		 * @param period The period the amount was taken from
+		 */
+		public void give(long amount, AtomicLongArray period) {
+			AtomicLongArray balances = this.balances;
+			if (period == balances)
+				balances.addAndGet(home(), amount);
+		}
+
+	}
+
+	/**
+	 * A cost which has been reserved from a ledger. A reservation is settled exactly once, by
+	 * committing or refunding it; later calls are ignored.
+	 */
+	public static final class Reservation {
+
+		private final Account[] accounts;
+		private final long[] amounts;
+		private final AtomicLongArray[] periods;
+		private final AtomicBoolean settled = new AtomicBoolean();
+
+		private Reservation(Account[] accounts, long[] amounts, AtomicLongArray[] periods) {
+			this.accounts = accounts;
+			this.amounts = amounts;
+			this.periods = periods;
+		}
+
+		/**
+		 * The cost was spent, and is kept by the ledger
+		 */
+		public void commit() {
+			settled.set(true);
+		}
+
+		/**
+		 * The cost wasn't spent, and is returned to the ledger
+		 */
+		public void refund() {
+			if (! settled.compareAndSet(false, true))
+				return;
+
+			for (int i = 0; i < accounts.length; i++) {
+				if (accounts[i] != null)
+					accounts[i].give(amounts[i], periods[i]);
+			}
+		}
+
+	}
+
+}
@@ -1,5 +1,9 @@
 package edu.toronto.cs.se.ci.budget;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
 import com.google.common.base.Optional;
 
 import edu.toronto.cs.se.ci.CI;
@@ -91,5 +95,48 @@ public final class Budgets {
 
 		return Optional.absent();
 	}
+	
+	/**
+	 * Split a cost into {@code n} equal shares, such as when a single bulk request is made on
+	 * behalf of {@code n} callers. Depletable quantities ({@link DecimalDepletable}s,
+	 * {@link LongDepletable}s and {@link FixedPointDepletable}s) are divided, rounding up so that the shares never add up to less
+	 * than the original cost. All other expenditures, such as flags and {@link edu.toronto.cs.se.ci.budget.basic.Time},
+	 * apply to every caller unchanged.
+	 * 
+	 * @param cost The cost to split
+	 * @param n The number of shares
+	 * @return The cost of a single share
+	 */
+	public static Expenditure[] split(Expenditure[] cost, int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("Cannot split a cost into " + n + " shares");
+
+		Expenditure[] share = new Expenditure[cost.length];
+
+		for (int i = 0; i < cost.length; i++) {
+			share[i] = cost[i];
+
+			if (n > 1 && cost[i] instanceof FixedPointDepletable) {
+				FixedPointDepletable depletable = (FixedPointDepletable) cost[i];
+				share[i] = depletable.withUnits((depletable.getUnits() + n - 1) / n);
+			} else if (n > 1 && cost[i] instanceof BasicDepletable<?>) {
+				Object quantity = ((BasicDepletable<?>) cost[i]).getQuantity();
+
+				if (quantity instanceof BigDecimal) {
+					@SuppressWarnings("unchecked")
+					BasicDepletable<BigDecimal> depletable = (BasicDepletable<BigDecimal>) cost[i];
+					share[i] = depletable.withQuantity(((BigDecimal) quantity).divide(
+							BigDecimal.valueOf(n), new MathContext(16, RoundingMode.UP)));
+				} else if (quantity instanceof Long) {
+					@SuppressWarnings("unchecked")
+					BasicDepletable<Long> depletable = (BasicDepletable<Long>) cost[i];
+					long total = (Long) quantity;
+					share[i] = depletable.withQuantity((total + n - 1) / n);
+				}
+			}
+		}
+
+		return share;
+	}
 
 }
@@ -0,0 +1,405 @@
+package edu.toronto.cs.se.ci.budget;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.budget.basic.Flag;
+import edu.toronto.cs.se.ci.budget.basic.RequiredFlag;
+import edu.toronto.cs.se.ci.budget.basic.RestrictedFlag;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+
+/**
+ * A budget which has been compiled into an indexed form, so that costs compiled against it with
+ * {@link #plan(Expenditure[])} can be checked with a few primitive comparisons. Each depletable in the
+ * budget is given a slot by its class, the names of its flags are kept in a set, and its {@link Time}
+ * allowances are reduced to the shortest one.
+ * 
+ * <p>Spending a plan produces a new compiled budget with the same layout, so plans only need to be
+ * compiled once per budget they are spent from. Compiled budgets give the same answers as {@link Budgets}.
+ * Budgets and costs which can't be compiled exactly are handled generically, by {@link Budgets}. These
+ * include budgets containing two depletables of the same class, or of classes extending one another,
+ * and costs containing expenditures of other types, or whose classes override how they are spent.
+ * Budgets spent generically keep their layout as long as they keep their structure, so that plans
+ * compiled against it remain valid.
+ */
+public final class CompiledBudget {
+
+	/**
+	 * The ways in which the compiled types of expenditure are spent
+	 */
+	private static enum Kind { FIXED_POINT, LONG, DECIMAL, TIME, REQUIRED, RESTRICTED, OTHER }
+
+	private static final ClassValue<Kind> KINDS = new ClassValue<Kind>() {
+
+		@Override
+		protected Kind computeValue(Class<?> type) {
+			try {
+				// Subclasses which override how they are spent must be spent generically
+				Class<?> spent = type.getMethod("expend", Allowance[].class, Optional.class).getDeclaringClass();
+
+				if (spent == FixedPointDepletable.class)
+					return Kind.FIXED_POINT;
+				if (spent == Time.class)
+					return Kind.TIME;
+				if (spent == RequiredFlag.class)
+					return Kind.REQUIRED;
+				if (spent == RestrictedFlag.class)
+					return Kind.RESTRICTED;
+
+				if (spent == BasicDepletable.class && LongDepletable.class.isAssignableFrom(type)
+						&& type.getMethod("deplete", Long.class).getDeclaringClass() == LongDepletable.class)
+					return Kind.LONG;
+				if (spent == BasicDepletable.class && DecimalDepletable.class.isAssignableFrom(type)
+						&& type.getMethod("deplete", BigDecimal.class).getDeclaringClass() == DecimalDepletable.class)
+					return Kind.DECIMAL;
+			} catch (NoSuchMethodException e) {
+				// Not one of the compiled types
+			}
+
+			return Kind.OTHER;
+		}
+
+	};
+
+	private static final long NO_TIME = Long.MAX_VALUE;
+
+	private final Layout layout;
+	private final Allowance[] budget;
+
+	// The quantity of each fixed-point or long depletable, and of each decimal depletable, by slot
+	private final long[] units;
+	private final BigDecimal[] decimals;
+
+	private CompiledBudget(Layout layout, Allowance[] budget, long[] units, BigDecimal[] decimals) {
+		this.layout = layout;
+		this.budget = budget;
+		this.units = units;
+		this.decimals = decimals;
+	}
+
+	/**
+	 * Compile a budget
+	 * 
+	 * @param budget The budget
+	 * @return The compiled budget
+	 */
+	public static CompiledBudget compile(Allowance[] budget) {
+		Map<Class<?>, Integer> slots = new HashMap<>();
+		List<Integer> positions = new ArrayList<>();
+		List<Class<?>> depletables = new ArrayList<>();
+		Set<String> flags = new HashSet<>();
+		long time = NO_TIME;
+		boolean generic = false;
+
+		for (int i = 0; i < budget.length; i++) {
+			Allowance allowance = budget[i];
+
+			if (allowance instanceof Flag) {
+				flags.add(((Flag) allowance).getName());
+			} else if (allowance instanceof Time) {
+				time = Math.min(time, ((Time) allowance).getDuration(TimeUnit.NANOSECONDS));
+			} else if (allowance instanceof FixedPointDepletable || allowance instanceof BasicDepletable) {
+				// A depletable is spent from every allowance which is an instance of its class
+				for (Class<?> other : depletables) {
+					if (other.isInstance(allowance) || allowance.getClass().isAssignableFrom(other))
+						generic = true;
+				}
+				depletables.add(allowance.getClass());
+
+				if (allowance instanceof FixedPointDepletable
+						|| ((BasicDepletable<?>) allowance).getQuantity() instanceof Long
+						|| ((BasicDepletable<?>) allowance).getQuantity() instanceof BigDecimal) {
+					slots.put(allowance.getClass(), positions.size());
+					positions.add(i);
+				}
+			}
+		}
+
+		int[] positionArray = new int[positions.size()];
+		for (int slot = 0; slot < positionArray.length; slot++)
+			positionArray[slot] = positions.get(slot);
+
+		long[] units = new long[positionArray.length];
+		BigDecimal[] decimals = new BigDecimal[positionArray.length];
+		readSlots(budget, positionArray, units, decimals);
+
+		return new CompiledBudget(new Layout(generic, flags, slots, positionArray, time), budget, units, decimals);
+	}
+
+	/**
+	 * Read the quantity of each slot's allowance from a budget
+	 * 
+	 * @return Whether every slot's allowance has a quantity of the kind the slot holds
+	 */
+	private static boolean readSlots(Allowance[] budget, int[] positions, long[] units, BigDecimal[] decimals) {
+		for (int slot = 0; slot < positions.length; slot++) {
+			Allowance allowance = budget[positions[slot]];
+			if (allowance instanceof FixedPointDepletable) {
+				units[slot] = ((FixedPointDepletable) allowance).getUnits();
+			} else {
+				Object quantity = ((BasicDepletable<?>) allowance).getQuantity();
+				if (quantity instanceof Long)
+					units[slot] = (Long) quantity;
+				else if (quantity instanceof BigDecimal)
+					decimals[slot] = (BigDecimal) quantity;
+				else
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Compile a budget which was spent generically from this one. If it has the same structure as this
+	 * budget, it is given this budget's layout, so that costs planned against this budget remain valid.
+	 * 
+	 * @param spent The spent budget
+	 * @return The compiled budget
+	 */
+	private CompiledBudget respent(Allowance[] spent) {
+		if (spent.length != budget.length)
+			return compile(spent);
+
+		for (int i = 0; i < spent.length; i++) {
+			if (spent[i].getClass() != budget[i].getClass())
+				return compile(spent);
+
+			if (spent[i] instanceof Flag && ! ((Flag) spent[i]).getName().equals(((Flag) budget[i]).getName()))
+				return compile(spent);
+			if (spent[i] instanceof Time && ((Time) spent[i]).getDuration(TimeUnit.NANOSECONDS) != ((Time) budget[i]).getDuration(TimeUnit.NANOSECONDS))
+				return compile(spent);
+		}
+
+		// Depletables keep their classes, so only their quantities need to be read again
+		long[] newUnits = new long[units.length];
+		BigDecimal[] newDecimals = new BigDecimal[decimals.length];
+		if (! readSlots(spent, layout.positions, newUnits, newDecimals))
+			return compile(spent);
+
+		for (int slot = 0; slot < decimals.length; slot++) {
+			if ((decimals[slot] == null) != (newDecimals[slot] == null))
+				return compile(spent);
+		}
+
+		return new CompiledBudget(layout, spent, newUnits, newDecimals);
+	}
+
+	/**
+	 * Compile a cost against the layout of this budget
+	 * 
+	 * @param cost The cost
+	 * @return The plan, which may be checked against, and spent from, this budget and every budget produced from it
+	 */
+	public CostPlan plan(Expenditure[] cost) {
+		if (layout.generic)
+			return new CostPlan(layout, cost);
+
+		boolean flags = true;
+		long time = -1;
+
+		// The total quantity of each slot, in order of appearance
+		List<Integer> unitSlots = new ArrayList<>();
+		List<Long> units = new ArrayList<>();
+		List<Integer> decimalSlots = new ArrayList<>();
+		List<BigDecimal> decimals = new ArrayList<>();
+
+		for (Expenditure expenditure : cost) {
+			switch (KINDS.get(expenditure.getClass())) {
+			case REQUIRED:
+				flags &= layout.flags.contains(((RequiredFlag) expenditure).getName());
+				break;
+			case RESTRICTED:
+				flags &= ! layout.flags.contains(((RestrictedFlag) expenditure).getName());
+				break;
+			case TIME:
+				time = Math.max(time, ((Time) expenditure).getDuration(TimeUnit.NANOSECONDS));
+				break;
+			case FIXED_POINT:
+			case LONG: {
+				Integer slot = layout.slots.get(expenditure.getClass());
+				long quantity = expenditure instanceof FixedPointDepletable
+						? ((FixedPointDepletable) expenditure).getUnits()
+						: ((LongDepletable) expenditure).getQuantity();
+
+				// Spending the parts of a cost one by one is the same as spending their total, as long as none is negative
+				if (slot == null || quantity < 0)
+					return new CostPlan(layout, cost);
+
+				int index = unitSlots.indexOf(slot);
+				if (index < 0) {
+					unitSlots.add(slot);
+					units.add(quantity);
+				} else {
+					try {
+						units.set(index, Math.addExact(units.get(index), quantity));
+					} catch (ArithmeticException e) {
+						return new CostPlan(layout, cost);
+					}
+				}
+				break;
+			}
+			case DECIMAL: {
+				Integer slot = layout.slots.get(expenditure.getClass());
+				BigDecimal quantity = ((DecimalDepletable) expenditure).getQuantity();
+
+				if (slot == null || quantity.signum() < 0)
+					return new CostPlan(layout, cost);
+
+				int index = decimalSlots.indexOf(slot);
+				if (index < 0) {
+					decimalSlots.add(slot);
+					decimals.add(quantity);
+				} else {
+					decimals.set(index, decimals.get(index).add(quantity));
+				}
+				break;
+			}
+			default:
+				return new CostPlan(layout, cost);
+			}
+		}
+
+		int[] unitSlotArray = new int[unitSlots.size()];
+		long[] unitArray = new long[units.size()];
+		for (int i = 0; i < unitSlotArray.length; i++) {
+			unitSlotArray[i] = unitSlots.get(i);
+			unitArray[i] = units.get(i);
+		}
+
+		int[] decimalSlotArray = new int[decimalSlots.size()];
+		for (int i = 0; i < decimalSlotArray.length; i++)
+			decimalSlotArray[i] = decimalSlots.get(i);
+
+		return new CostPlan(layout, cost, false, flags, unitSlotArray, unitArray,
+				decimalSlotArray, decimals.toArray(new BigDecimal[decimals.size()]), time);
+	}
+
+	/**
+	 * Determine if a planned cost is within budget
+	 * 
+	 * @param plan The planned cost. If it was planned against a different layout, its cost is checked generically.
+	 * @param invocation The current CI invocation, used to determine how much time remains
+	 * @return Whether the cost is within budget
+	 */
+	public boolean withinBudget(CostPlan plan, Optional<CI<?, ?, ?, ?>.Invocation> invocation) {
+		if (plan.generic || plan.layout != layout)
+			return Budgets.withinBudget(budget, plan.cost, invocation);
+
+		if (! plan.flags)
+			return false;
+
+		for (int i = 0; i < plan.unitSlots.length; i++) {
+			if (units[plan.unitSlots[i]] <= plan.units[i])
+				return false;
+		}
+
+		for (int i = 0; i < plan.decimalSlots.length; i++) {
+			if (decimals[plan.decimalSlots[i]].compareTo(plan.decimals[i]) <= 0)
+				return false;
+		}
+
+		if (plan.time >= 0 && layout.time != NO_TIME) {
+			long elapsed = 0;
+			if (invocation.isPresent())
+				elapsed = invocation.get().getElapsedTime(TimeUnit.NANOSECONDS);
+
+			if (layout.time - elapsed - plan.time < 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Produce a new budget, as though a planned cost had been spent in this one
+	 * 
+	 * @param plan The planned cost. If it was planned against a different layout, its cost is spent generically.
+	 * @param invocation The current CI invocation, used to determine how much time remains
+	 * @return The new budget, or {@code Optional.absent()} if this budget cannot support the cost
+	 */
+	@SuppressWarnings("unchecked")
+	public Optional<CompiledBudget> expend(CostPlan plan, Optional<CI<?, ?, ?, ?>.Invocation> invocation) {
+		if (plan.generic || plan.layout != layout) {
+			Optional<Allowance[]> spent = Budgets.expend(budget, plan.cost, invocation);
+			if (! spent.isPresent())
+				return Optional.absent();
+
+			return Optional.of(respent(spent.get()));
+		}
+
+		if (! withinBudget(plan, invocation))
+			return Optional.absent();
+
+		if (plan.unitSlots.length == 0 && plan.decimalSlots.length == 0)
+			return Optional.of(this);
+
+		Allowance[] newBudget = budget.clone();
+		long[] newUnits = units.clone();
+		BigDecimal[] newDecimals = decimals.clone();
+
+		for (int i = 0; i < plan.unitSlots.length; i++) {
+			int slot = plan.unitSlots[i];
+			int position = layout.positions[slot];
+			newUnits[slot] -= plan.units[i];
+
+			if (budget[position] instanceof FixedPointDepletable)
+				newBudget[position] = ((FixedPointDepletable) budget[position]).withUnits(newUnits[slot]);
+			else
+				newBudget[position] = ((BasicDepletable<Long>) budget[position]).withQuantity(newUnits[slot]);
+		}
+
+		for (int i = 0; i < plan.decimalSlots.length; i++) {
+			int slot = plan.decimalSlots[i];
+			int position = layout.positions[slot];
+			newDecimals[slot] = newDecimals[slot].subtract(plan.decimals[i]);
+			newBudget[position] = ((BasicDepletable<BigDecimal>) budget[position]).withQuantity(newDecimals[slot]);
+		}
+
+		return Optional.of(new CompiledBudget(layout, newBudget, newUnits, newDecimals));
+	}
+
+	/**
+	 * @return The budget which was compiled
+	 */
+	public Allowance[] getBudget() {
+		return budget;
+	}
+
+	/**
+	 * The parts of a compiled budget which don't change as it is spent
+	 */
+	static final class Layout {
+
+		// Whether the budget must be spent generically
+		private final boolean generic;
+
+		private final Set<String> flags;
+
+		// The slot of each depletable class, and the position of the slot's allowance in the budget
+		private final Map<Class<?>, Integer> slots;
+		private final int[] positions;
+
+		// The shortest Time allowance, in nanoseconds
+		private final long time;
+
+		private Layout(boolean generic, Set<String> flags, Map<Class<?>, Integer> slots, int[] positions, long time) {
+			this.generic = generic;
+			this.flags = flags;
+			this.slots = slots;
+			this.positions = positions;
+			this.time = time;
+		}
+
+	}
+
+}
@@ -0,0 +1,67 @@
+package edu.toronto.cs.se.ci.budget;
+
+import java.math.BigDecimal;
+
+/**
+ * A cost which has been compiled against the layout of a {@link CompiledBudget}. Checking whether a
+ * plan fits within a budget compares a few primitive quantities, rather than expending each part of
+ * the cost against each allowance.
+ * 
+ * <p>Plans are created with {@link CompiledBudget#plan(Expenditure[])}, and remain valid for every
+ * budget produced by spending from that budget. Costs which can't be compiled, such as those containing
+ * expenditures of unknown types, are planned generically, and spent with {@link Budgets}.
+ */
+public final class CostPlan {
+
+	final CompiledBudget.Layout layout;
+	final Expenditure[] cost;
+
+	// Whether the cost must be spent generically
+	final boolean generic;
+
+	// Whether the budget has every required flag, and none of the restricted ones
+	final boolean flags;
+
+	// The slots of the fixed-point and long depletables in the cost, and their total quantities
+	final int[] unitSlots;
+	final long[] units;
+
+	// The slots of the decimal depletables in the cost, and their total quantities
+	final int[] decimalSlots;
+	final BigDecimal[] decimals;
+
+	// The longest Time in the cost, in nanoseconds, or -1 if there is none
+	final long time;
+
+	CostPlan(CompiledBudget.Layout layout, Expenditure[] cost) {
+		this(layout, cost, true, true, new int[0], new long[0], new int[0], new BigDecimal[0], -1);
+	}
+
+	CostPlan(CompiledBudget.Layout layout, Expenditure[] cost, boolean generic, boolean flags,
+			int[] unitSlots, long[] units, int[] decimalSlots, BigDecimal[] decimals, long time) {
+		this.layout = layout;
+		this.cost = cost;
+		this.generic = generic;
+		this.flags = flags;
+		this.unitSlots = unitSlots;
+		this.units = units;
+		this.decimalSlots = decimalSlots;
+		this.decimals = decimals;
+		this.time = time;
+	}
+
+	/**
+	 * @return The cost which was compiled
+	 */
+	public Expenditure[] getCost() {
+		return cost;
+	}
+
+	/**
+	 * @return Whether the cost couldn't be compiled, and is spent generically
+	 */
+	public boolean isGeneric() {
+		return generic;
+	}
+
+}
@@ -0,0 +1,31 @@
+package edu.toronto.cs.se.ci.budget;
+
+/**
+ * A {@link FixedPointDepletable} which counts whole things, such as requests to a rate-limited API
+ */
+public abstract class CounterDepletable extends FixedPointDepletable {
+
+	/**
+	 * @param count The number of things
+	 */
+	public CounterDepletable(long count) {
+		super(count);
+	}
+
+	/**
+	 * @return The number of things
+	 */
+	public long getCount() {
+		return getUnits();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.budget.FixedPointDepletable#getScale()
+	 */
+	@Override
+	public final int getScale() {
+		return 0;
+	}
+
+}
@@ -32,4 +32,25 @@ public abstract class DecimalDepletable extends BasicDepletable<BigDecimal> {
 		return Optional.absent();
 	}
 	
+	/**
+	 * Two decimal depletables are equal if they are of the same class, and have numerically
+	 * equal quantities, regardless of scale.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || obj.getClass() != getClass())
+			return false;
+		
+		return getQuantity().compareTo(((DecimalDepletable) obj).getQuantity()) == 0;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.budget.BasicDepletable#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * getClass().hashCode() + getQuantity().stripTrailingZeros().hashCode();
+	}
+
 }
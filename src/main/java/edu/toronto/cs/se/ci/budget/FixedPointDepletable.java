@@ -0,0 +1,129 @@
+package edu.toronto.cs.se.ci.budget;
+
+import java.math.BigDecimal;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.CI;
+
+/**
+ * A depletable resource whose quantity is a fixed-point decimal, stored as a primitive {@code long}
+ * number of units, each worth {@code 10^-scale}. It behaves like a {@link BasicDepletable}, depleting
+ * allowances of the same class, but depleting it is a primitive subtraction, rather than arithmetic on
+ * boxed or {@link BigDecimal} quantities, and new quantities are created with {@link #withUnits(long)},
+ * rather than by cloning.
+ * 
+ * <p>As with BasicDepletable, concrete subclasses should not be generic, and an allowance must exceed
+ * the cost it pays for.
+ */
+public abstract class FixedPointDepletable implements Allowance, Expenditure {
+
+	/**
+	 * Returned by {@link #deplete(long)} when an allowance can't pay for the depletable
+	 */
+	public static final long INSUFFICIENT = -1;
+
+	private final long units;
+
+	/**
+	 * @param units The quantity, in units of {@code 10^-scale}
+	 */
+	public FixedPointDepletable(long units) {
+		if (units < 0)
+			throw new IllegalArgumentException("Quantities can't be negative");
+
+		this.units = units;
+	}
+
+	/**
+	 * @return The quantity, in units of {@code 10^-scale}
+	 */
+	public final long getUnits() {
+		return units;
+	}
+
+	/**
+	 * @return The number of decimal places in the quantity. Every instance of a class must have the same scale.
+	 */
+	public abstract int getScale();
+
+	/**
+	 * Create a depletable of the same class, with a different quantity
+	 * 
+	 * @param units The quantity, in units of {@code 10^-scale}
+	 * @return The new depletable
+	 */
+	public abstract FixedPointDepletable withUnits(long units);
+
+	/**
+	 * @return The quantity, as a decimal
+	 */
+	public BigDecimal getQuantity() {
+		return BigDecimal.valueOf(units, getScale());
+	}
+
+	/**
+	 * Remove the quantity of this depletable from an allowance
+	 * 
+	 * @param allowance The units in the allowance
+	 * @return The units remaining in the allowance, or {@link #INSUFFICIENT} if it doesn't exceed this quantity
+	 */
+	public final long deplete(long allowance) {
+		return allowance > units ? allowance - units : INSUFFICIENT;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.budget.Expenditure#expend(edu.toronto.cs.se.ci.budget.Allowance[], com.google.common.base.Optional)
+	 */
+	@Override
+	public Optional<Allowance[]> expend(Allowance[] budget, Optional<CI<?, ?, ?, ?>.Invocation> invocation) {
+		Allowance[] newBudget = null;
+
+		for (int i = 0; i < budget.length; i++) {
+			if (! getClass().isInstance(budget[i]))
+				continue;
+
+			long remaining = deplete(((FixedPointDepletable) budget[i]).units);
+			if (remaining == INSUFFICIENT)
+				return Optional.absent();
+
+			if (newBudget == null)
+				newBudget = budget.clone();
+			newBudget[i] = withUnits(remaining);
+		}
+
+		// If the depletable is not present - return Optional.absent()
+		if (newBudget == null)
+			return Optional.absent();
+
+		return Optional.of(newBudget);
+	}
+
+	/**
+	 * Two fixed-point depletables are equal if they are of the same class, and have equal quantities
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj != null && obj.getClass() == getClass() && ((FixedPointDepletable) obj).units == units;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * getClass().hashCode() + Long.hashCode(units);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + getQuantity().toPlainString() + ")";
+	}
+
+}
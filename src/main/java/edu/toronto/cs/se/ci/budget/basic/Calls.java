@@ -0,0 +1,23 @@
+package edu.toronto.cs.se.ci.budget.basic;
+
+import edu.toronto.cs.se.ci.budget.CounterDepletable;
+
+/**
+ * Represents a number of calls to sources, such as the calls a metered API allows per day.
+ */
+public class Calls extends CounterDepletable {
+
+	public Calls(long count) {
+		super(count);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.budget.FixedPointDepletable#withUnits(long)
+	 */
+	@Override
+	public Calls withUnits(long units) {
+		return new Calls(units);
+	}
+
+}
@@ -0,0 +1,62 @@
+package edu.toronto.cs.se.ci.budget.basic;
+
+import java.math.BigDecimal;
+
+import edu.toronto.cs.se.ci.budget.FixedPointDepletable;
+
+/**
+ * Represents a cost in Dollars, as a whole number of millionths of a dollar. Unlike {@link Dollars},
+ * spending MicroDollars doesn't involve any {@link BigDecimal} arithmetic.
+ * 
+ * <p>MicroDollars only deplete MicroDollars allowances. Budgets and costs in Dollars can be converted
+ * with {@link #fromDollars(Dollars)} and {@link #toDollars()}, which are lossless.
+ */
+public class MicroDollars extends FixedPointDepletable {
+
+	/**
+	 * The number of decimal places in a quantity of MicroDollars
+	 */
+	public static final int SCALE = 6;
+
+	/**
+	 * @param micros The quantity, in millionths of a dollar
+	 */
+	public MicroDollars(long micros) {
+		super(micros);
+	}
+
+	/**
+	 * @param dollars A quantity of Dollars
+	 * @return The same quantity, in MicroDollars
+	 * @throws ArithmeticException If the quantity has more than six decimal places, or is too large
+	 */
+	public static MicroDollars fromDollars(Dollars dollars) {
+		return new MicroDollars(dollars.getQuantity().movePointRight(SCALE).longValueExact());
+	}
+
+	/**
+	 * @return The same quantity, in Dollars
+	 */
+	public Dollars toDollars() {
+		return new Dollars(getQuantity());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.budget.FixedPointDepletable#getScale()
+	 */
+	@Override
+	public int getScale() {
+		return SCALE;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.budget.FixedPointDepletable#withUnits(long)
+	 */
+	@Override
+	public MicroDollars withUnits(long units) {
+		return new MicroDollars(units);
+	}
+
+}
@@ -55,5 +55,23 @@ public class Time implements Allowance, Expenditure {
 
 		return Optional.of(budget);
 	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Time && ((Time) obj).nanos == nanos;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return Long.hashCode(nanos);
+	}
 
 }
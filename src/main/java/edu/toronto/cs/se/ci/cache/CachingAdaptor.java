@@ -0,0 +1,258 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import edu.toronto.cs.se.ci.Adaptor;
+import edu.toronto.cs.se.ci.Contract;
+import edu.toronto.cs.se.ci.Deadline;
+import edu.toronto.cs.se.ci.ExecutionContext;
+import edu.toronto.cs.se.ci.ExecutionContexts;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+
+/**
+ * An {@link Adaptor} which memoizes the opinions of the sources it wraps, in memory. Opinions are
+ * cached per {@link OpinionKey}, that is per source name and input. The cache is configured with a
+ * Guava {@link CacheBuilder}, which supports expiry after a time to live, and eviction of the least
+ * recently used entries once a maximum size or weight is reached.
+ * 
+ * <p>Concurrent queries for the same key which miss the cache are coalesced, such that only one of
+ * them queries the wrapped source. Failed queries are not cached.
+ * 
+ * <p>While an opinion is cached (or being loaded), the adapted source reports {@code hitCost} as its
+ * cost, rather than the cost of the wrapped source, so that selectors can choose cached sources for
+ * free, or at a reduced cost. Selectors ask for costs without querying, so quoting a cost has no effect on
+ * the cache, and doesn't count as a hit. The hit cost is only a quote: if the opinion expires or is evicted
+ * between the quote and the query, the query is answered by the wrapped source, rather than with a stale
+ * opinion.
+ * 
+ * <p>Loads run on the executors of an {@link ExecutionContext}, rather than on the pool of the invocation
+ * which started them, as the invocation may finish (cancelling its tasks) while other invocations are
+ * still waiting on the load.
+ * 
+ * @param <I> Input type
+ * @param <O> Output type
+ * @param <T> Trust type
+ */
+public class CachingAdaptor<I, O, T> extends Adaptor<I, O, T, I, O, T> {
+
+	private final Cache<OpinionKey, Opinion<O, T>> cache;
+	private final ConcurrentMap<OpinionKey, ListenableFuture<Opinion<O, T>>> loading = new ConcurrentHashMap<>();
+	private final Expenditure[] hitCost;
+	private final ListeningExecutorService loader;
+
+	/**
+	 * Cache the opinions of a single source. Cache hits are free.
+	 * 
+	 * @param around The source to wrap
+	 * @param ttl The time after which a cached opinion expires
+	 * @param unit The unit of {@code ttl}
+	 * @param maximumSize The maximum number of cached opinions
+	 */
+	public CachingAdaptor(Source<I, O, T> around, long ttl, TimeUnit unit, long maximumSize) {
+		this(around, CacheBuilder.newBuilder().expireAfterWrite(ttl, unit).maximumSize(maximumSize), new Expenditure[0]);
+	}
+
+	/**
+	 * Cache the opinions of a single source
+	 * 
+	 * @param around The source to wrap
+	 * @param spec The configuration of the cache. Statistics are always recorded.
+	 * @param hitCost The cost of a query which is answered from the cache
+	 */
+	public CachingAdaptor(Source<I, O, T> around, CacheBuilder<? super OpinionKey, ? super Opinion<O, T>> spec, Expenditure[] hitCost) {
+		this(around, spec, hitCost, ExecutionContexts.getDefault());
+	}
+
+	/**
+	 * Cache the opinions of a single source
+	 * 
+	 * @param around The source to wrap
+	 * @param spec The configuration of the cache. Statistics are always recorded.
+	 * @param hitCost The cost of a query which is answered from the cache
+	 * @param context The context providing the threads which query {@code around}
+	 */
+	public CachingAdaptor(Source<I, O, T> around, CacheBuilder<? super OpinionKey, ? super Opinion<O, T>> spec, Expenditure[] hitCost, ExecutionContext context) {
+		super(around);
+		this.cache = spec.recordStats().build();
+		this.hitCost = hitCost;
+		this.loader = context.newInvocationExecutor();
+	}
+
+	/**
+	 * Cache the opinions of every source implementing a contract. The sources share a single cache.
+	 * 
+	 * @param around The contract to wrap
+	 * @param spec The configuration of the cache. Statistics are always recorded.
+	 * @param hitCost The cost of a query which is answered from the cache
+	 */
+	public CachingAdaptor(Class<? extends Contract<I, O, T>> around, CacheBuilder<? super OpinionKey, ? super Opinion<O, T>> spec, Expenditure[] hitCost) {
+		this(around, spec, hitCost, ExecutionContexts.getDefault());
+	}
+
+	/**
+	 * Cache the opinions of every source implementing a contract. The sources share a single cache.
+	 * 
+	 * @param around The contract to wrap
+	 * @param spec The configuration of the cache. Statistics are always recorded.
+	 * @param hitCost The cost of a query which is answered from the cache
+	 * @param context The context providing the threads which query the wrapped sources
+	 */
+	public CachingAdaptor(Class<? extends Contract<I, O, T>> around, CacheBuilder<? super OpinionKey, ? super Opinion<O, T>> spec, Expenditure[] hitCost, ExecutionContext context) {
+		super(around);
+		this.cache = spec.recordStats().build();
+		this.hitCost = hitCost;
+		this.loader = context.newInvocationExecutor();
+	}
+
+	/**
+	 * @return Hit, miss and eviction statistics for the cache
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	/**
+	 * Discards every cached opinion
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Determine if an opinion is cached, or is currently being loaded.
+	 * 
+	 * @param args The input arguments to the Source
+	 * @param around The source being wrapped
+	 * @return Whether querying the source would be answered without querying {@code around}
+	 */
+	public boolean isCached(I args, Source<I, O, T> around) {
+		OpinionKey key = new OpinionKey(around.getName(), args);
+		return loading.containsKey(key) || cache.asMap().containsKey(key);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getCost(java.lang.Object, edu.toronto.cs.se.ci.Source)
+	 */
+	@Override
+	public Expenditure[] getCost(I args, Source<I, O, T> around) throws Exception {
+		// Quotes aren't counted as hits
+		if (isCached(args, around))
+			return hitCost;
+
+		return around.getCost(args);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getOpinion(java.lang.Object, edu.toronto.cs.se.ci.Source)
+	 */
+	@Override
+	public Opinion<O, T> getOpinion(I args, Source<I, O, T> around) throws UnknownException {
+		try {
+			return load(args, around, MoreExecutors.sameThreadExecutor()).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UnknownException)
+				throw (UnknownException) e.getCause();
+
+			throw new UnknownException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnknownException(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getOpinionAsync(java.lang.Object, edu.toronto.cs.se.ci.Source, com.google.common.util.concurrent.ListeningExecutorService)
+	 */
+	@Override
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(I args, Source<I, O, T> around, ListeningExecutorService pool) {
+		return load(args, around, loader);
+	}
+
+	/**
+	 * Get an opinion from the cache, or query the wrapped source for it
+	 * 
+	 * @param args The input arguments to the Source
+	 * @param around The source being wrapped
+	 * @param pool The executor to query {@code around} on
+	 * @return A future for the opinion
+	 */
+	private ListenableFuture<Opinion<O, T>> load(I args, Source<I, O, T> around, ListeningExecutorService pool) {
+		final OpinionKey key = new OpinionKey(around.getName(), args);
+
+		Opinion<O, T> cached = cache.getIfPresent(key);
+		if (cached != null)
+			return Futures.immediateFuture(cached);
+
+		// Join a load which is already in progress
+		final SettableFuture<Opinion<O, T>> load = SettableFuture.create();
+		ListenableFuture<Opinion<O, T>> existing = loading.putIfAbsent(key, load);
+		if (existing != null)
+			return Futures.nonCancellationPropagating(existing);
+
+		// The opinion may have been cached between checking the cache and starting the load
+		cached = cache.asMap().get(key);
+		if (cached != null) {
+			loading.remove(key, load);
+			load.set(cached);
+			return Futures.immediateFuture(cached);
+		}
+
+		ListenableFuture<Opinion<O, T>> opinion;
+		try {
+			opinion = around.getOpinionAsync(args, pool, Deadline.current());
+		} catch (RuntimeException e) {
+			opinion = Futures.immediateFailedFuture(e);
+		}
+
+		Futures.addCallback(opinion, new FutureCallback<Opinion<O, T>>() {
+
+			@Override
+			public void onSuccess(Opinion<O, T> result) {
+				cache.put(key, result);
+				loading.remove(key, load);
+				load.set(result);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				loading.remove(key, load);
+				load.setException(t);
+			}
+
+		});
+
+		// Other invocations may be waiting on this load, so cancelling the returned future
+		// must not cancel the load itself.
+		return Futures.nonCancellationPropagating(load);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getTrust(java.lang.Object, com.google.common.base.Optional, edu.toronto.cs.se.ci.Source)
+	 */
+	@Override
+	public T getTrust(I args, Optional<O> value, Source<I, O, T> around) {
+		return around.getTrust(args, value);
+	}
+
+}
@@ -0,0 +1,480 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.data.Opinion;
+
+/**
+ * A persistent store of source opinions, which survives restarts. Opinions are keyed by the
+ * name of the source which produced them, and the serialized input which the source was queried
+ * with.
+ * 
+ * <p>Opinions are appended to fixed-size segment files, which are memory-mapped. An in-memory hash
+ * index maps each key to the location of its most recent record. Lookups read the opinion straight
+ * out of the mapped segment with the {@link Serializer}s, without copying the record or using object
+ * streams. When a key is written again, its old record becomes garbage, which is reclaimed by
+ * {@link #compact()}.
+ * 
+ * <p>Records are written body first, and their length last, with a checksum. If the process crashes
+ * partway through a write, the partial record is ignored when the store is reopened.
+ * 
+ * <p>A store is safe for use by many threads, but a directory must only be opened by one store at a time.
+ * 
+ * @param <I> Input type
+ * @param <O> Output type
+ * @param <T> Trust type
+ */
+public class DiskOpinionStore<I, O, T> implements Closeable {
+
+	/**
+	 * Default size of each segment file, in bytes
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	// Record header: body length, then checksum of the body
+	private static final int HEADER = 8;
+
+	private static final Consumer<MappedByteBuffer> UNMAPPER = findUnmapper();
+
+	private final Path directory;
+	private final int segmentSize;
+	private final Serializer<I> inputs;
+	private final Serializer<O> values;
+	private final Serializer<T> trusts;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+	private final Map<ByteBuffer, Long> index = new HashMap<>();
+	private Segment active;
+	private long liveBytes = 0;
+	private long totalBytes = 0;
+
+	/**
+	 * Open a store with the default segment size
+	 * 
+	 * @param directory The directory holding the segment files. It is created if it doesn't exist.
+	 * @param inputs The serializer for inputs
+	 * @param values The serializer for opinion values
+	 * @param trusts The serializer for opinion trusts
+	 * @throws IOException
+	 */
+	public DiskOpinionStore(File directory, Serializer<I> inputs, Serializer<O> values, Serializer<T> trusts) throws IOException {
+		this(directory, inputs, values, trusts, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Open a store, recovering the index from any existing segment files
+	 * 
+	 * @param directory The directory holding the segment files. It is created if it doesn't exist.
+	 * @param inputs The serializer for inputs
+	 * @param values The serializer for opinion values
+	 * @param trusts The serializer for opinion trusts
+	 * @param segmentSize The size of each segment file, which bounds the size of a single record
+	 * @throws IOException
+	 */
+	public DiskOpinionStore(File directory, Serializer<I> inputs, Serializer<O> values, Serializer<T> trusts, int segmentSize) throws IOException {
+		this.directory = directory.toPath();
+		this.segmentSize = segmentSize;
+		this.inputs = inputs;
+		this.values = values;
+		this.trusts = trusts;
+
+		Files.createDirectories(this.directory);
+
+		File[] files = directory.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				String name = file.getName();
+				if (name.startsWith("segment-") && name.endsWith(".dat")) {
+					int id = Integer.parseInt(name.substring(8, name.length() - 4));
+					recover(new Segment(id, file.toPath(), Math.max(segmentSize, (int) file.length())));
+				}
+			}
+		}
+
+		if (segments.isEmpty())
+			active = newSegment();
+		else
+			active = segments.lastEntry().getValue();
+	}
+
+	/**
+	 * Look up an opinion
+	 * 
+	 * @param source The name of the source
+	 * @param args The input the source was queried with
+	 * @return The stored opinion, or {@code Optional.absent()} if there is none
+	 */
+	public Optional<Opinion<O, T>> get(String source, I args) {
+		ByteBuffer key = key(source, args);
+
+		lock.readLock().lock();
+		try {
+			Long location = index.get(key);
+			if (location == null)
+				return Optional.absent();
+
+			// Read the opinion in place, from a view of the mapped segment
+			ByteBuffer record = segments.get(segmentOf(location)).buffer.duplicate();
+			record.position(offsetOf(location) + HEADER);
+			record.position(record.position() + 4 + record.getInt());
+
+			O value = values.read(record);
+			T trust = trusts.read(record);
+			return Optional.of(new Opinion<O, T>(value, trust));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param source The name of the source
+	 * @param args The input the source was queried with
+	 * @return Whether an opinion is stored
+	 */
+	public boolean contains(String source, I args) {
+		ByteBuffer key = key(source, args);
+
+		lock.readLock().lock();
+		try {
+			return index.containsKey(key);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Store an opinion, replacing any opinion already stored for the same source and input
+	 * 
+	 * @param source The name of the source
+	 * @param args The input the source was queried with
+	 * @param opinion The opinion to store
+	 * @throws IOException
+	 */
+	public void put(String source, I args, Opinion<O, T> opinion) throws IOException {
+		ByteBuffer key = key(source, args);
+		int bodySize = 4 + key.remaining() + values.sizeOf(opinion.getValue()) + trusts.sizeOf(opinion.getTrust());
+		int recordSize = HEADER + bodySize;
+
+		if (recordSize > segmentSize)
+			throw new IllegalArgumentException("Record of " + recordSize + " bytes is larger than the segment size");
+
+		lock.writeLock().lock();
+		try {
+			if (active.end + recordSize > segmentSize)
+				active = newSegment();
+
+			// Write the body directly into the mapped segment
+			ByteBuffer buffer = active.buffer.duplicate();
+			int offset = active.end;
+			buffer.position(offset + HEADER);
+			buffer.putInt(key.remaining());
+			buffer.put(key.duplicate());
+			values.write(opinion.getValue(), buffer);
+			trusts.write(opinion.getTrust(), buffer);
+
+			if (buffer.position() != offset + recordSize)
+				throw new IllegalStateException("Serializer wrote a different number of bytes than reported by sizeOf");
+
+			// The length is written last, which marks the record as complete
+			buffer.putInt(offset + 4, checksum(active.buffer, offset + HEADER, bodySize));
+			buffer.putInt(offset, bodySize);
+			active.end += recordSize;
+
+			index(key, location(active.id, offset), recordSize);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The number of opinions in the store
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The fraction of the bytes in the segment files which are occupied by replaced records
+	 */
+	public double getGarbageRatio() {
+		lock.readLock().lock();
+		try {
+			return totalBytes == 0 ? 0 : 1 - ((double) liveBytes) / totalBytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Rewrites the live records into new segments, and deletes the old segments, reclaiming
+	 * the space occupied by replaced records. Records are copied byte for byte, without being
+	 * deserialized.
+	 * 
+	 * <p>The new segments are forced to disk before any old segment is deleted. They follow the old
+	 * segments, so if the process crashes partway through the deletes, the records in them replace the
+	 * old records once the store is reopened.
+	 * 
+	 * @throws IOException
+	 */
+	public void compact() throws IOException {
+		lock.writeLock().lock();
+		try {
+			List<Segment> old = new ArrayList<>(segments.values());
+			Map<ByteBuffer, Long> live = new HashMap<>(index);
+
+			index.clear();
+			liveBytes = 0;
+			totalBytes = 0;
+			active = newSegment();
+			List<Segment> rewritten = new ArrayList<>();
+			rewritten.add(active);
+
+			for (Map.Entry<ByteBuffer, Long> entry : live.entrySet()) {
+				ByteBuffer source = segments.get(segmentOf(entry.getValue())).buffer.duplicate();
+				int offset = offsetOf(entry.getValue());
+				int recordSize = HEADER + source.getInt(offset);
+
+				if (active.end + recordSize > segmentSize) {
+					active = newSegment();
+					rewritten.add(active);
+				}
+
+				source.position(offset);
+				source.limit(offset + recordSize);
+
+				ByteBuffer target = active.buffer.duplicate();
+				target.position(active.end);
+				target.put(source);
+
+				index(entry.getKey(), location(active.id, active.end), recordSize);
+				active.end += recordSize;
+			}
+
+			for (Segment segment : rewritten)
+				segment.buffer.force();
+
+			// Mapped files can't be deleted on every platform, so the old segments are unmapped first
+			for (Segment segment : old) {
+				segments.remove(segment.id);
+				segment.close();
+				Files.delete(segment.path);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Forces any changes to be written to disk
+	 */
+	public void flush() {
+		lock.writeLock().lock();
+		try {
+			active.buffer.force();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Flushes and closes every segment. The store cannot be used once it is closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			for (Segment segment : segments.values()) {
+				segment.buffer.force();
+				segment.close();
+			}
+
+			segments.clear();
+			index.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Serializes the key for a source and input into a heap buffer
+	 */
+	private ByteBuffer key(String source, I args) {
+		byte[] name = source.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer key = ByteBuffer.allocate(4 + name.length + inputs.sizeOf(args));
+		key.putInt(name.length);
+		key.put(name);
+		inputs.write(args, key);
+		key.flip();
+		return key;
+	}
+
+	/**
+	 * Points the index at a new record, accounting for the record it replaces
+	 */
+	private void index(ByteBuffer key, long location, int recordSize) {
+		Long previous = index.put(key, location);
+		if (previous != null) {
+			ByteBuffer buffer = segments.get(segmentOf(previous)).buffer;
+			liveBytes -= HEADER + buffer.getInt(offsetOf(previous));
+		}
+
+		liveBytes += recordSize;
+		totalBytes += recordSize;
+	}
+
+	/**
+	 * Rebuilds the index from an existing segment, stopping at the first incomplete record
+	 */
+	private void recover(Segment segment) {
+		segments.put(segment.id, segment);
+
+		ByteBuffer buffer = segment.buffer;
+		int offset = 0;
+
+		while (offset + HEADER <= buffer.capacity()) {
+			int bodySize = buffer.getInt(offset);
+			if (bodySize <= 0 || offset + HEADER + bodySize > buffer.capacity())
+				break;
+
+			if (buffer.getInt(offset + 4) != checksum(buffer, offset + HEADER, bodySize))
+				break;
+
+			int keySize = buffer.getInt(offset + HEADER);
+			byte[] key = new byte[keySize];
+			ByteBuffer view = buffer.duplicate();
+			view.position(offset + HEADER + 4);
+			view.get(key);
+
+			index(ByteBuffer.wrap(key), location(segment.id, offset), HEADER + bodySize);
+			offset += HEADER + bodySize;
+		}
+
+		segment.end = offset;
+	}
+
+	private Segment newSegment() throws IOException {
+		int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+		Segment segment = new Segment(id, directory.resolve(String.format("segment-%08d.dat", id)), segmentSize);
+		segments.put(id, segment);
+		return segment;
+	}
+
+	private static int checksum(ByteBuffer buffer, int offset, int length) {
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		view.limit(offset + length);
+
+		CRC32 crc = new CRC32();
+		crc.update(view);
+		return (int) crc.getValue();
+	}
+
+	private static long location(int segment, int offset) {
+		return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+	}
+
+	private static int segmentOf(long location) {
+		return (int) (location >>> 32);
+	}
+
+	private static int offsetOf(long location) {
+		return (int) location;
+	}
+
+	/**
+	 * A memory-mapped segment file
+	 */
+	private static final class Segment {
+
+		private final int id;
+		private final Path path;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private int end = 0;
+
+		public Segment(int id, Path path, int size) throws IOException {
+			this.id = id;
+			this.path = path;
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+
+		/**
+		 * Closes the file and releases the mapping. The buffer mustn't be read afterwards.
+		 */
+		public void close() throws IOException {
+			channel.close();
+			UNMAPPER.accept(buffer);
+		}
+
+	}
+
+	/**
+	 * Finds a way to release a mapping without waiting for its buffer to be garbage collected. There is
+	 * no public API for this, so the JDK's internal cleaner is looked up reflectively: through
+	 * {@code Unsafe.invokeCleaner} on Java 9 and later, or the buffer's own cleaner on Java 8. If neither
+	 * can be found, mappings are released once their buffers are collected.
+	 */
+	private static Consumer<MappedByteBuffer> findUnmapper() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			final Object unsafe = field.get(null);
+
+			return buffer -> {
+				try {
+					invokeCleaner.invoke(unsafe, buffer);
+				} catch (ReflectiveOperationException e) {
+					// The mapping is released once the buffer is collected
+				}
+			};
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Not Java 9 or later
+		}
+
+		return buffer -> {
+			try {
+				Method getCleaner = buffer.getClass().getMethod("cleaner");
+				getCleaner.setAccessible(true);
+				Object cleaner = getCleaner.invoke(buffer);
+				if (cleaner != null)
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// The mapping is released once the buffer is collected
+			}
+		};
+	}
+
+}
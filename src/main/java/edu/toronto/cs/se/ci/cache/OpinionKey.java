@@ -0,0 +1,57 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.util.Objects;
+
+/**
+ * Identifies a cached opinion. Opinions are keyed by the name of the source which
+ * produced them (see {@link edu.toronto.cs.se.ci.Source#getName()}), and the input
+ * which the source was queried with.
+ */
+public final class OpinionKey {
+	
+	private final String source;
+	private final Object args;
+	
+	/**
+	 * @param source The name of the source
+	 * @param args The input the source was queried with
+	 */
+	public OpinionKey(String source, Object args) {
+		this.source = source;
+		this.args = args;
+	}
+	
+	/**
+	 * @return The name of the source
+	 */
+	public String getSource() {
+		return source;
+	}
+	
+	/**
+	 * @return The input the source was queried with
+	 */
+	public Object getArgs() {
+		return args;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (! (obj instanceof OpinionKey))
+			return false;
+		
+		OpinionKey other = (OpinionKey) obj;
+		return source.equals(other.source) && Objects.equals(args, other.args);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * source.hashCode() + Objects.hashCode(args);
+	}
+	
+	@Override
+	public String toString() {
+		return source + "(" + args + ")";
+	}
+
+}
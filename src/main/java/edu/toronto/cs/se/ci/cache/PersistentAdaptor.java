@@ -0,0 +1,142 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import edu.toronto.cs.se.ci.Adaptor;
+import edu.toronto.cs.se.ci.Contract;
+import edu.toronto.cs.se.ci.Deadline;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+
+/**
+ * An {@link Adaptor} which persists the opinions of the sources it wraps in a {@link DiskOpinionStore},
+ * such that they survive restarts. Once a source has given an opinion for an input, the source is never
+ * queried for that input again, and the adapted source reports {@code hitCost} as its cost.
+ * 
+ * <p>If an opinion cannot be written to the store, whether the store fails to write it, or it is too large
+ * for the store, it is still returned, but will not be persisted. The failure is logged at
+ * {@link Level#WARNING}, to the logger named after this class.
+ * 
+ * @param <I> Input type
+ * @param <O> Output type
+ * @param <T> Trust type
+ */
+public class PersistentAdaptor<I, O, T> extends Adaptor<I, O, T, I, O, T> {
+
+	private static final Logger LOGGER = Logger.getLogger(PersistentAdaptor.class.getName());
+
+	private final DiskOpinionStore<I, O, T> store;
+	private final Expenditure[] hitCost;
+
+	/**
+	 * Persist the opinions of a single source. Stored opinions are free.
+	 * 
+	 * @param around The source to wrap
+	 * @param store The store to persist opinions in
+	 */
+	public PersistentAdaptor(Source<I, O, T> around, DiskOpinionStore<I, O, T> store) {
+		this(around, store, new Expenditure[0]);
+	}
+
+	/**
+	 * Persist the opinions of a single source
+	 * 
+	 * @param around The source to wrap
+	 * @param store The store to persist opinions in
+	 * @param hitCost The cost of a query which is answered from the store
+	 */
+	public PersistentAdaptor(Source<I, O, T> around, DiskOpinionStore<I, O, T> store, Expenditure[] hitCost) {
+		super(around);
+		this.store = store;
+		this.hitCost = hitCost;
+	}
+
+	/**
+	 * Persist the opinions of every source implementing a contract. The sources share a single store.
+	 * 
+	 * @param around The contract to wrap
+	 * @param store The store to persist opinions in
+	 * @param hitCost The cost of a query which is answered from the store
+	 */
+	public PersistentAdaptor(Class<? extends Contract<I, O, T>> around, DiskOpinionStore<I, O, T> store, Expenditure[] hitCost) {
+		super(around);
+		this.store = store;
+		this.hitCost = hitCost;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getCost(java.lang.Object, edu.toronto.cs.se.ci.Source)
+	 */
+	@Override
+	public Expenditure[] getCost(I args, Source<I, O, T> around) throws Exception {
+		if (store.contains(around.getName(), args))
+			return hitCost;
+		else
+			return around.getCost(args);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getOpinion(java.lang.Object, edu.toronto.cs.se.ci.Source)
+	 */
+	@Override
+	public Opinion<O, T> getOpinion(I args, Source<I, O, T> around) throws UnknownException {
+		Optional<Opinion<O, T>> stored = store.get(around.getName(), args);
+		if (stored.isPresent())
+			return stored.get();
+
+		return persist(args, around, around.getOpinion(args));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getOpinionAsync(java.lang.Object, edu.toronto.cs.se.ci.Source, com.google.common.util.concurrent.ListeningExecutorService)
+	 */
+	@Override
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(final I args, final Source<I, O, T> around, ListeningExecutorService pool) {
+		Optional<Opinion<O, T>> stored = store.get(around.getName(), args);
+		if (stored.isPresent())
+			return Futures.immediateFuture(stored.get());
+
+		return Futures.transform(around.getOpinionAsync(args, pool, Deadline.current()), new Function<Opinion<O, T>, Opinion<O, T>>() {
+
+			@Override
+			public Opinion<O, T> apply(Opinion<O, T> opinion) {
+				return persist(args, around, opinion);
+			}
+
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getTrust(java.lang.Object, com.google.common.base.Optional, edu.toronto.cs.se.ci.Source)
+	 */
+	@Override
+	public T getTrust(I args, Optional<O> value, Source<I, O, T> around) {
+		return around.getTrust(args, value);
+	}
+
+	private Opinion<O, T> persist(I args, Source<I, O, T> around, Opinion<O, T> opinion) {
+		try {
+			store.put(around.getName(), args, opinion);
+		} catch (IOException | RuntimeException e) {
+			// The opinion is still valid, it just won't survive a restart
+			LOGGER.log(Level.WARNING, "Couldn't persist the opinion of " + around.getName() + " on " + args, e);
+		}
+
+		return opinion;
+	}
+
+}
@@ -0,0 +1,37 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values to and from their binary representation, for storage in a
+ * {@link DiskOpinionStore}. Serializers read and write directly to and from the store's
+ * memory-mapped segments, so a value is never copied into an intermediate byte array.
+ * 
+ * @param <X> The type of value being serialized
+ */
+public interface Serializer<X> {
+
+	/**
+	 * @param value The value to serialize
+	 * @return The number of bytes which {@code write} will write for {@code value}
+	 */
+	public int sizeOf(X value);
+
+	/**
+	 * Writes the value at the buffer's position, advancing the position by exactly
+	 * {@code sizeOf(value)} bytes.
+	 * 
+	 * @param value The value to serialize
+	 * @param buffer The buffer to write to
+	 */
+	public void write(X value, ByteBuffer buffer);
+
+	/**
+	 * Reads a value from the buffer's position, advancing the position past it.
+	 * 
+	 * @param buffer The buffer to read from
+	 * @return The deserialized value
+	 */
+	public X read(ByteBuffer buffer);
+
+}
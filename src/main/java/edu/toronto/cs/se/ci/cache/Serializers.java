@@ -0,0 +1,152 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import edu.toronto.cs.se.ci.data.Trust;
+
+/**
+ * {@link Serializer}s for common input, output and trust types.
+ */
+public final class Serializers {
+
+	private Serializers() {}
+
+	/**
+	 * Serializes strings as UTF-8, prefixed by their length in bytes
+	 */
+	public static final Serializer<String> STRING = new Serializer<String>() {
+
+		@Override
+		public int sizeOf(String value) {
+			return 4 + value.getBytes(StandardCharsets.UTF_8).length;
+		}
+
+		@Override
+		public void write(String value, ByteBuffer buffer) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+
+		@Override
+		public String read(ByteBuffer buffer) {
+			int length = buffer.getInt();
+
+			String value;
+			if (buffer.hasArray()) {
+				value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			} else {
+				byte[] bytes = new byte[length];
+				buffer.duplicate().get(bytes);
+				value = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			buffer.position(buffer.position() + length);
+			return value;
+		}
+
+	};
+
+	public static final Serializer<Boolean> BOOLEAN = new Serializer<Boolean>() {
+
+		@Override
+		public int sizeOf(Boolean value) {
+			return 1;
+		}
+
+		@Override
+		public void write(Boolean value, ByteBuffer buffer) {
+			buffer.put(value ? (byte) 1 : (byte) 0);
+		}
+
+		@Override
+		public Boolean read(ByteBuffer buffer) {
+			return buffer.get() != 0;
+		}
+
+	};
+
+	public static final Serializer<Integer> INTEGER = new Serializer<Integer>() {
+
+		@Override
+		public int sizeOf(Integer value) {
+			return 4;
+		}
+
+		@Override
+		public void write(Integer value, ByteBuffer buffer) {
+			buffer.putInt(value);
+		}
+
+		@Override
+		public Integer read(ByteBuffer buffer) {
+			return buffer.getInt();
+		}
+
+	};
+
+	public static final Serializer<Long> LONG = new Serializer<Long>() {
+
+		@Override
+		public int sizeOf(Long value) {
+			return 8;
+		}
+
+		@Override
+		public void write(Long value, ByteBuffer buffer) {
+			buffer.putLong(value);
+		}
+
+		@Override
+		public Long read(ByteBuffer buffer) {
+			return buffer.getLong();
+		}
+
+	};
+
+	public static final Serializer<Double> DOUBLE = new Serializer<Double>() {
+
+		@Override
+		public int sizeOf(Double value) {
+			return 8;
+		}
+
+		@Override
+		public void write(Double value, ByteBuffer buffer) {
+			buffer.putDouble(value);
+		}
+
+		@Override
+		public Double read(ByteBuffer buffer) {
+			return buffer.getDouble();
+		}
+
+	};
+
+	/**
+	 * Serializes a {@link Trust} as its belief and disbelief
+	 */
+	public static final Serializer<Trust> TRUST = new Serializer<Trust>() {
+
+		@Override
+		public int sizeOf(Trust value) {
+			return 16;
+		}
+
+		@Override
+		public void write(Trust value, ByteBuffer buffer) {
+			buffer.putDouble(value.getBelief());
+			buffer.putDouble(value.getDisbelief());
+		}
+
+		@Override
+		public Trust read(ByteBuffer buffer) {
+			double belief = buffer.getDouble();
+			double disbelief = buffer.getDouble();
+			return new Trust(belief, disbelief);
+		}
+
+	};
+
+}
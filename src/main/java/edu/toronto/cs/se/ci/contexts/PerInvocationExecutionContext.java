@@ -0,0 +1,28 @@
+package edu.toronto.cs.se.ci.contexts;
+
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.toronto.cs.se.ci.ExecutionContext;
+
+/**
+ * An {@link ExecutionContext} which creates a new cached thread pool for every invocation.
+ * The pool is torn down when the invocation completes.
+ * 
+ * <p>This isolates invocations from one another completely, but pays for thread creation
+ * on every call. Prefer {@link SharedExecutionContext} for high invocation rates.
+ */
+public class PerInvocationExecutionContext implements ExecutionContext {
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.ExecutionContext#newInvocationExecutor()
+	 */
+	@Override
+	public ListeningExecutorService newInvocationExecutor() {
+		return MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+	}
+
+}
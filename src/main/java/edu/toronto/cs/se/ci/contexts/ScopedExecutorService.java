@@ -0,0 +1,144 @@
+package edu.toronto.cs.se.ci.contexts;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AbstractListeningExecutorService;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * An executor which runs its tasks on a shared delegate executor, but keeps track of them
+ * so that they can be cancelled as a group. Shutting down a ScopedExecutorService never
+ * shuts down the delegate.
+ */
+public class ScopedExecutorService extends AbstractListeningExecutorService {
+
+	private final Executor delegate;
+	private final Set<ListenableFutureTask<?>> tasks = Sets.newConcurrentHashSet();
+	private volatile boolean shutdown = false;
+
+	/**
+	 * @param delegate The executor which will actually run the submitted tasks
+	 */
+	public ScopedExecutorService(Executor delegate) {
+		this.delegate = delegate;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable command) {
+		if (shutdown)
+			throw new RejectedExecutionException("Executor has been shut down");
+
+		// Tasks created by submit() are already ListenableFutureTasks, anything else
+		// is wrapped so that it can still be cancelled by shutdownNow()
+		final ListenableFutureTask<?> task;
+		if (command instanceof ListenableFutureTask<?>)
+			task = (ListenableFutureTask<?>) command;
+		else
+			task = ListenableFutureTask.create(command, null);
+
+		tasks.add(task);
+		task.addListener(new Runnable() {
+			@Override
+			public void run() {
+				tasks.remove(task);
+
+				if (shutdown) {
+					synchronized (ScopedExecutorService.this) {
+						ScopedExecutorService.this.notifyAll();
+					}
+				}
+			}
+		}, MoreExecutors.sameThreadExecutor());
+
+		// We may have been shut down while registering the task
+		if (shutdown)
+			task.cancel(true);
+
+		try {
+			delegate.execute(task);
+		} catch (RejectedExecutionException e) {
+			tasks.remove(task);
+			throw e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		shutdown = true;
+
+		// There may be no task left to wake those awaiting termination
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Stops accepting new tasks, and cancels every task which was submitted through this
+	 * executor and is still pending or running. Running tasks are interrupted.
+	 * 
+	 * <p>As the cancelled tasks can no longer be run, the returned list is always empty.
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		shutdown();
+
+		for (ListenableFutureTask<?> task : tasks) {
+			task.cancel(true);
+		}
+
+		return Collections.emptyList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#isShutdown()
+	 */
+	@Override
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#isTerminated()
+	 */
+	@Override
+	public boolean isTerminated() {
+		return shutdown && tasks.isEmpty();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.ExecutorService#awaitTermination(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		while (! isTerminated()) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				return false;
+
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+
+		return true;
+	}
+
+}
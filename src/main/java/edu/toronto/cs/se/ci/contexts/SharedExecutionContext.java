@@ -0,0 +1,151 @@
+package edu.toronto.cs.se.ci.contexts;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.toronto.cs.se.ci.ExecutionContext;
+
+/**
+ * An {@link ExecutionContext} where every invocation shares a single long-lived pool.
+ * Each invocation is given a {@link ScopedExecutorService}, so cancelling an invocation
+ * only cancels its own tasks.
+ * 
+ * <p>Selector loops block while they wait for sources, so they shouldn't share a bounded pool with the
+ * sources: a fixed pool of {@code n} threads could otherwise be taken by {@code n} loops, each waiting for a
+ * source which can't be run. Contexts created with a number of threads run selector loops on a separate,
+ * bounded pool of daemon threads. Selector loops beyond its bound wait in a queue until a thread is free, as do
+ * the timeouts of invocations (see {@link ExecutionContext#getSelectorExecutor}). The built-in selectors never
+ * block, so their loops only hold a thread briefly; a selector which blocks until its sources respond holds one
+ * for as long as they take, so the bound should exceed the number of such invocations which run at once.
+ * 
+ * <p>Idle threads of the pools created by this context exit after {@value #KEEP_ALIVE_SECONDS} seconds.
+ */
+public class SharedExecutionContext implements ExecutionContext {
+
+	/**
+	 * The number of threads which run selector loops, unless another bound is given
+	 */
+	public static final int DEFAULT_SELECTOR_THREADS = 64;
+
+	/**
+	 * The number of seconds after which an idle thread of a pool created by the context exits
+	 */
+	public static final long KEEP_ALIVE_SECONDS = 60;
+
+	private final ExecutorService pool;
+	private final Executor selectors;
+
+	// The pool of selector loops, if it was created by this context
+	private final ExecutorService ownSelectors;
+
+	/**
+	 * Create a context backed by a fixed-size pool of daemon threads, which run the sources of every
+	 * invocation. Selector loops run on a separate pool of {@link #DEFAULT_SELECTOR_THREADS} threads.
+	 * 
+	 * @param nThreads The maximum number of threads shared by the sources of all invocations
+	 */
+	public SharedExecutionContext(int nThreads) {
+		this(nThreads, DEFAULT_SELECTOR_THREADS);
+	}
+
+	/**
+	 * Create a context backed by fixed-size pools of daemon threads, one which runs the sources of every
+	 * invocation, and one which runs their selector loops.
+	 * 
+	 * @param nThreads The maximum number of threads shared by the sources of all invocations
+	 * @param nSelectors The maximum number of threads shared by the selector loops of all invocations
+	 */
+	public SharedExecutionContext(int nThreads, int nSelectors) {
+		this.pool = bounded(nThreads, "ci-shared-%d");
+		this.ownSelectors = bounded(nSelectors, "ci-select-%d");
+		this.selectors = ownSelectors;
+	}
+
+	/**
+	 * @return A pool of at most {@code nThreads} daemon threads, which queues tasks while every thread is busy
+	 */
+	private static ExecutorService bounded(int nThreads, String nameFormat) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(nThreads, nThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Create a context backed by an existing pool, which runs both the sources and the selector loops of
+	 * every invocation. The pool is owned by the caller. If it is bounded, use
+	 * {@link #SharedExecutionContext(ExecutorService, Executor)}, so that selector loops can't take every
+	 * thread.
+	 * 
+	 * @param pool The pool shared by all invocations
+	 */
+	public SharedExecutionContext(ExecutorService pool) {
+		this(pool, null);
+	}
+
+	/**
+	 * Create a context backed by existing executors. Both are owned by the caller.
+	 * 
+	 * @param pool The pool which runs the sources of all invocations
+	 * @param selectors The executor which runs the selector loops of all invocations, or {@code null}
+	 * to run them on {@code pool}
+	 */
+	public SharedExecutionContext(ExecutorService pool, Executor selectors) {
+		this.pool = pool;
+		this.selectors = selectors;
+		this.ownSelectors = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.ExecutionContext#newInvocationExecutor()
+	 */
+	@Override
+	public ListeningExecutorService newInvocationExecutor() {
+		return new ScopedExecutorService(pool);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.ExecutionContext#getSelectorExecutor(com.google.common.util.concurrent.ListeningExecutorService)
+	 */
+	@Override
+	public Executor getSelectorExecutor(ListeningExecutorService invocationExecutor) {
+		return selectors == null ? invocationExecutor : selectors;
+	}
+
+	/**
+	 * Shut down the shared pool, and the pool of selector loops if this context created it. Invocations
+	 * which are still running will be interrupted.
+	 * 
+	 * @param timeout The maximum time to wait for running tasks to finish
+	 * @param unit The unit of {@code timeout}
+	 * @return Whether the pool terminated before the timeout elapsed
+	 * @throws InterruptedException
+	 */
+	public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		pool.shutdown();
+		if (ownSelectors != null)
+			ownSelectors.shutdown();
+
+		boolean terminated = pool.awaitTermination(timeout, unit);
+		if (ownSelectors != null)
+			terminated &= ownSelectors.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		if (terminated)
+			return true;
+
+		pool.shutdownNow();
+		if (ownSelectors != null)
+			ownSelectors.shutdownNow();
+		return false;
+	}
+
+}
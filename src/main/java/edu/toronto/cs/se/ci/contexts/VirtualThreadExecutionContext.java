@@ -0,0 +1,79 @@
+package edu.toronto.cs.se.ci.contexts;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.toronto.cs.se.ci.ExecutionContext;
+
+/**
+ * An {@link ExecutionContext} which runs every task of an invocation - the selector loop,
+ * the completion of timed out estimates and each source call - on its own virtual thread.
+ * As virtual threads are cheap to create and to block, this allows very large numbers of
+ * concurrent invocations of CIs whose sources perform blocking I/O, without sizing a thread pool.
+ * 
+ * <p>Virtual threads require a Java 21 or later runtime. The library itself targets Java 8,
+ * so the virtual thread executor is looked up reflectively. Use {@link #isSupported()} to check
+ * whether the running JVM provides them.
+ * 
+ * <p>Before Java 24, a virtual thread which blocks while it holds a monitor pins its carrier thread,
+ * as does a virtual thread waiting to enter a monitor. The estimate of each invocation is guarded by its
+ * monitor, which is held while sources are submitted, while opinions are recorded, and while
+ * {@link edu.toronto.cs.se.ci.InvocationListener}s, partial listeners and
+ * {@link edu.toronto.cs.se.ci.ReactiveSelector}s are called. Sources which block on I/O run outside of it,
+ * so they don't pin carriers. Listeners and selectors which block do, as do sources whose
+ * {@code getOpinionAsync} blocks before it returns, and contention for an estimate which many sources
+ * answer at once. Keep such callbacks short, or run them on another executor.
+ */
+public class VirtualThreadExecutionContext implements ExecutionContext {
+
+	private static final Method NEW_EXECUTOR = findFactory();
+
+	/**
+	 * Create a virtual thread execution context. On runtimes before Java 24, listeners, partial listeners and
+	 * reactive selectors which block pin their carrier thread, as they are called while the estimate's monitor
+	 * is held (see the class documentation).
+	 * 
+	 * @throws UnsupportedOperationException If the running JVM doesn't support virtual threads
+	 */
+	public VirtualThreadExecutionContext() {
+		if (! isSupported())
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later (running "
+					+ System.getProperty("java.version") + ")");
+	}
+
+	/**
+	 * @return Whether the running JVM supports virtual threads
+	 */
+	public static boolean isSupported() {
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * Creates a new virtual-thread-per-task executor for the invocation. Shutting it down
+	 * interrupts only the virtual threads belonging to the invocation.
+	 */
+	@Override
+	public ListeningExecutorService newInvocationExecutor() {
+		try {
+			ExecutorService executor = (ExecutorService) NEW_EXECUTOR.invoke(null);
+			return MoreExecutors.listeningDecorator(executor);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			// This shouldn't happen, as we found the method in the static initializer
+			throw new Error(e);
+		}
+	}
+
+	private static Method findFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
@@ -1,9 +1,7 @@
 package edu.toronto.cs.se.ci.data;
 
-import org.apache.commons.math.FunctionEvaluationException;
-import org.apache.commons.math.MaxIterationsExceededException;
-import org.apache.commons.math.analysis.UnivariateRealFunction;
-import org.apache.commons.math.analysis.integration.TrapezoidIntegrator;
+import org.apache.commons.math.MathException;
+import org.apache.commons.math.special.Beta;
 
 /**
  * A representation of the Evidence triple <r, s, t> from [Wang and Singh, 2010].
@@ -22,6 +20,9 @@ public final class Evidence {
 	 * Default value for {@code tMax} when converting from the Trust space into the Evidence space.
 	 */
 	public static final double T_MAX = 1000;
+
+	// Precision of the points at which the density of the evidence crosses the uniform density
+	private static final double ROOT_TOLERANCE = 1e-14;
 	
 	private final double r, s;
 	
@@ -38,12 +39,18 @@ public final class Evidence {
 	
 	/**
 	 * Convert a value in the Trust space into the Evidence space. <br>
-	 * Uses the default values for {@code epsilon} and {@code tMax}
+	 * Uses the default values for {@code epsilon} and {@code tMax}. If an {@link EvidenceTable}
+	 * is installed, the conversion is looked up in it.
 	 * 
 	 * @param trust The value in the Trust space.
 	 */
 	public Evidence(Trust trust) {
-		this(trust, EPSILON, T_MAX);
+		double alpha = trust.getBelief() / (trust.getBelief() + trust.getDisbelief());
+		double conf = 1 - trust.getUncertainty();
+		double t = EvidenceTable.getTotal(alpha, conf);
+
+		this.r = alpha * t;
+		this.s = t - r;
 	}
 
 	/**
@@ -56,17 +63,33 @@ public final class Evidence {
 	public Evidence(Trust trust, double epsilon, double tMax) {
 		double alpha = trust.getBelief() / (trust.getBelief() + trust.getDisbelief());
 		double conf = 1 - trust.getUncertainty();
+		double t = getTotal(alpha, conf, epsilon, tMax);
+
+		this.r = alpha * t;
+		this.s = t - r;
+	}
+
+	/**
+	 * Searches for the total quantity of evidence, with a given ratio of consenting evidence,
+	 * which has a given confidence.
+	 * 
+	 * @param alpha The ratio of consenting evidence to total evidence
+	 * @param conf The confidence
+	 * @param epsilon Maximum error in estimated t
+	 * @param tMax The upper bound on t
+	 * @return The total evidence, t
+	 */
+	static double getTotal(double alpha, double conf, double epsilon, double tMax) {
 		double t1 = 0;
 		double t2 = tMax;
 		
-		// Current estimated r & s values
-		double r = 0;
-		double s = 0;
+		// Current estimated t value
+		double t = 0;
 
 		while (t2 - t1 >= epsilon) {
-			double t = (t1 + t2) /2;
-			r = alpha * t;
-			s = t - r;
+			t = (t1 + t2) /2;
+			double r = alpha * t;
+			double s = t - r;
 
 			if (new Evidence(r, s).getConfidence() < conf)
 				t1 = t;
@@ -74,10 +97,9 @@ public final class Evidence {
 				t2 = t;
 		}
 		
-		this.r = r;
-		this.s = s;
+		return t;
 	}
-
+	
 	/**
 	 * @return This value, in the Trust space.
 	 */
@@ -97,42 +119,90 @@ public final class Evidence {
 		return r + s;
 	}
 
+	/**
+	 * The confidence is half the total variation distance between the distribution Beta(r + 1, s + 1)
+	 * and the uniform distribution. The density of Beta(r + 1, s + 1) exceeds 1 on a single interval
+	 * [x1, x2] around its mode, so the confidence is the area between the two densities on that interval,
+	 * {@code I(x2) - I(x1) - (x2 - x1)}, where I is the regularized incomplete beta function.
+	 * 
+	 * <p>The density is only ever evaluated in log space, so it remains accurate for large r and s.
+	 * 
+	 * @return The confidence in this evidence, in [0, 1]
+	 */
 	public double getConfidence() {
+		if (r + s <= 0)
+			return 0;
+
+		double logBeta = Beta.logBeta(r + 1, s + 1);
+		double mode = Math.min(Math.max(r / (r + s), 0), 1);
+
+		// The density never exceeds the uniform density
+		if (logDensity(mode, logBeta) <= 0)
+			return 0;
+
+		// When r or s is 0, the density is greatest at that end of [0, 1]
+		double x1 = r > 0 ? root(0, mode, logBeta) : 0;
+		double x2 = s > 0 ? root(1, mode, logBeta) : 1;
+
 		try {
-			TrapezoidIntegrator integrator = new TrapezoidIntegrator();
-
-			UnivariateRealFunction p = new UnivariateRealFunction() {
-
-				@Override
-				public double value(double x) throws FunctionEvaluationException {
-					return Math.pow(x, r) * Math.pow(1 - x, s);
-				}
-				
-			};
-
-			final double intp = integrator.integrate(p, 0, 1);
-			
-			// If our initial integration returns a value of 0, we can't compute anything
-			// more. We assume that there is sufficient evidence that the answer is certain
-			if (intp == 0)
-				return 1;
-			
-			UnivariateRealFunction q = new UnivariateRealFunction() {
-
-				@Override
-				public double value(double x) throws FunctionEvaluationException {
-					return Math.abs((Math.pow(x, r) * Math.pow(1 - x, s)) / intp - 1);
-				}
-				
-			};
-			
-			return integrator.integrate(q, 0, 1) / 2;
-		} catch (MaxIterationsExceededException | FunctionEvaluationException
-				| IllegalArgumentException e) {
+			double c = Beta.regularizedBeta(x2, r + 1, s + 1) - Beta.regularizedBeta(x1, r + 1, s + 1) - (x2 - x1);
+			return Math.min(Math.max(c, 0), 1);
+		} catch (MathException e) {
 			// This shouldn't happen, and I don't feel like declaring the throws right now.
 			throw new Error(e);
 		}
 	}
 
+	/**
+	 * @param x A value in [0, 1]
+	 * @param logBeta The logarithm of B(r + 1, s + 1)
+	 * @return The logarithm of the density of Beta(r + 1, s + 1) at x
+	 */
+	private double logDensity(double x, double logBeta) {
+		double logp = -logBeta;
+		if (r != 0)
+			logp += r * Math.log(x);
+		if (s != 0)
+			logp += s * Math.log1p(-x);
+		return logp;
+	}
+
+	/**
+	 * Finds the point between {@code outside} and {@code mode} at which the density of Beta(r + 1, s + 1)
+	 * is 1, using Newton's method, falling back to bisection when a step leaves the bracket. The confidence
+	 * is stationary with respect to the location of the roots, so a small error in the root has a much
+	 * smaller effect on the confidence.
+	 * 
+	 * @param outside An end of [0, 1], at which the density is below 1
+	 * @param mode The mode of the distribution, at which the density is above 1
+	 * @param logBeta The logarithm of B(r + 1, s + 1)
+	 * @return The root
+	 */
+	private double root(double outside, double mode, double logBeta) {
+		double below = outside;
+		double above = mode;
+		double x = (below + above) / 2;
+
+		for (int i = 0; i < 200; i++) {
+			double logp = logDensity(x, logBeta);
+			if (logp == 0)
+				return x;
+			else if (logp < 0)
+				below = x;
+			else
+				above = x;
+
+			double next = x - logp / (r / x - s / (1 - x));
+			if (! (next > Math.min(below, above) && next < Math.max(below, above)))
+				next = (below + above) / 2;
+
+			if (Math.abs(next - x) <= ROOT_TOLERANCE)
+				return next;
+
+			x = next;
+		}
+
+		return x;
+	}
 
 }
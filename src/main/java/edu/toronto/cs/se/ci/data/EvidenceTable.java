@@ -0,0 +1,306 @@
+package edu.toronto.cs.se.ci.data;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Optional;
+
+/**
+ * A precomputed table of conversions between the Trust and Evidence spaces. Converting a {@link Trust}
+ * into {@link Evidence} searches for the quantity of evidence with the trust's confidence, and converting
+ * Evidence into Trust integrates its confidence, both of which are wasted work when the same few trust
+ * levels are converted again and again.
+ * 
+ * <p>The table holds two grids, which are interpolated bilinearly:
+ * <ul>
+ * <li>(alpha, confidence) to total evidence t, where alpha is {@code belief / (belief + disbelief)}</li>
+ * <li>(alpha, t) to confidence, where alpha is {@code r / t}</li>
+ * </ul>
+ * In both grids, t is scaled logarithmically into [0, 1], as the confidence changes much more
+ * quickly with t when there is little evidence. Confidence is scaled as {@code 1 - sqrt(1 - conf)},
+ * as t grows without bound as the confidence approaches 1.
+ * 
+ * <p>The interpolation error of each cell of a grid is estimated when the cell is built, by comparing the
+ * interpolated values at the center of the cell, and the middle of each of its edges, with the exact values. Lookups which fall in a cell whose
+ * estimated error exceeds the table's tolerance, or outside of the grid, are computed exactly. Columns of
+ * each grid are built lazily, the first time they are needed, or all at once by {@link #build()}.
+ * 
+ * <p>Tables are only used once installed with {@link #install(EvidenceTable)}, after which the {@link Evidence}
+ * and {@link Trust} constructors, and so the aggregators which use them, consult the table transparently.
+ */
+public final class EvidenceTable {
+
+	/**
+	 * Default number of steps along each axis of each grid
+	 */
+	public static final int DEFAULT_RESOLUTION = 64;
+
+	/**
+	 * Default maximum estimated error in looked up confidences
+	 */
+	public static final double DEFAULT_CONFIDENCE_ERROR = 1e-3;
+
+	// Precision with which the grid points for t are searched for
+	private static final double GRID_EPSILON = 1e-6;
+
+	private static volatile EvidenceTable installed = null;
+
+	private final double tMax;
+	private final Grid totals;
+	private final Grid confidences;
+
+	/**
+	 * Create a table with the default resolution. Looked up evidence is within {@link Evidence#EPSILON}
+	 * of the true value, as it would be if it were searched for.
+	 */
+	public EvidenceTable() {
+		this(DEFAULT_RESOLUTION, Evidence.EPSILON, DEFAULT_CONFIDENCE_ERROR);
+	}
+
+	/**
+	 * Create a table for converting with the default {@code tMax}. The table occupies roughly
+	 * {@code 2 * 12 * (resolution + 1)^2} bytes once built.
+	 * 
+	 * @param resolution The number of steps along each axis of each grid
+	 * @param totalError The maximum estimated error in looked up total evidence
+	 * @param confidenceError The maximum estimated error in looked up confidence
+	 */
+	public EvidenceTable(int resolution, double totalError, double confidenceError) {
+		if (resolution < 1)
+			throw new IllegalArgumentException("Resolution must be positive");
+
+		this.tMax = Evidence.T_MAX;
+
+		this.totals = new Grid(resolution, totalError) {
+
+			@Override
+			protected double exact(double alpha, double v) {
+				return Evidence.getTotal(alpha, 1 - (1 - v) * (1 - v), GRID_EPSILON, tMax);
+			}
+
+			@Override
+			protected double encode(double t) {
+				return scale(t);
+			}
+
+			@Override
+			protected double decode(double y) {
+				return unscale(y);
+			}
+
+		};
+
+		this.confidences = new Grid(resolution, confidenceError) {
+
+			@Override
+			protected double exact(double alpha, double y) {
+				double t = unscale(y);
+				return new Evidence(alpha * t, t - alpha * t).getConfidence();
+			}
+
+		};
+	}
+
+	/**
+	 * Use a table for every conversion between the Trust and Evidence spaces
+	 * 
+	 * @param table The table to use, or {@code null} to always convert exactly
+	 */
+	public static void install(EvidenceTable table) {
+		installed = table;
+	}
+
+	/**
+	 * @return The table used for conversions between the Trust and Evidence spaces, if there is one
+	 */
+	public static Optional<EvidenceTable> getInstalled() {
+		return Optional.fromNullable(installed);
+	}
+
+	/**
+	 * @param alpha The ratio of belief to belief and disbelief
+	 * @param conf The confidence
+	 * @return The total evidence, from the installed table, or searched for with the default parameters
+	 */
+	static double getTotal(double alpha, double conf) {
+		EvidenceTable table = installed;
+		if (table != null) {
+			double t = table.totals.lookup(alpha, 1 - Math.sqrt(1 - conf));
+			if (! Double.isNaN(t))
+				return t;
+		}
+
+		return Evidence.getTotal(alpha, conf, Evidence.EPSILON, Evidence.T_MAX);
+	}
+
+	/**
+	 * @param evidence The evidence
+	 * @return Its confidence, from the installed table, or computed exactly
+	 */
+	static double getConfidence(Evidence evidence) {
+		EvidenceTable table = installed;
+		if (table != null) {
+			double t = evidence.getTotal();
+			double c = table.confidences.lookup(evidence.getConsenting() / t, table.scale(t));
+			if (! Double.isNaN(c))
+				return c;
+		}
+
+		return evidence.getConfidence();
+	}
+
+	/**
+	 * @param t A total evidence in [0, tMax]
+	 * @return t, scaled logarithmically into [0, 1]
+	 */
+	private double scale(double t) {
+		return Math.log1p(t) / Math.log1p(tMax);
+	}
+
+	/**
+	 * @param y A value in [0, 1]
+	 * @return The total evidence which scales to y
+	 */
+	private double unscale(double y) {
+		return Math.expm1(y * Math.log1p(tMax));
+	}
+
+	/**
+	 * Builds every cell of the table now, rather than lazily.
+	 */
+	public void build() {
+		totals.build();
+		confidences.build();
+	}
+
+	/**
+	 * @return The number of bytes occupied by the cells which have been built
+	 */
+	public long getMemoryFootprint() {
+		return totals.getMemoryFootprint() + confidences.getMemoryFootprint();
+	}
+
+	/**
+	 * A grid over [0, 1] x [0, 1], which is built lazily one column at a time. Values may be
+	 * stored encoded, in a space in which they are closer to linear.
+	 */
+	private static abstract class Grid {
+
+		private static final double[][] SAMPLES = { { 0.5, 0.5 }, { 0.5, 0 }, { 0.5, 1 }, { 0, 0.5 }, { 1, 0.5 } };
+
+		private final int steps;
+		private final double tolerance;
+
+		// Values at each grid point, by column
+		private final AtomicReferenceArray<double[]> columns;
+
+		// Estimated interpolation error of each cell, by column
+		private final AtomicReferenceArray<float[]> errors;
+
+		public Grid(int steps, double tolerance) {
+			this.steps = steps;
+			this.tolerance = tolerance;
+			this.columns = new AtomicReferenceArray<>(steps + 1);
+			this.errors = new AtomicReferenceArray<>(steps);
+		}
+
+		/**
+		 * @return The exact value at (x, y)
+		 */
+		protected abstract double exact(double x, double y);
+
+		/**
+		 * @return The value, as stored in the grid
+		 */
+		protected double encode(double value) {
+			return value;
+		}
+
+		/**
+		 * @return The value, decoded from how it is stored in the grid
+		 */
+		protected double decode(double value) {
+			return value;
+		}
+
+		/**
+		 * @return The interpolated value at (x, y), or NaN if it can't be interpolated accurately
+		 */
+		public double lookup(double x, double y) {
+			if (! (x >= 0 && x <= 1 && y >= 0 && y <= 1))
+				return Double.NaN;
+
+			int i = Math.min((int) (x * steps), steps - 1);
+			int j = Math.min((int) (y * steps), steps - 1);
+
+			if (errors(i)[j] > tolerance)
+				return Double.NaN;
+
+			double dx = x * steps - i;
+			double dy = y * steps - j;
+			return decode(interpolate(column(i), column(i + 1), j, dx, dy));
+		}
+
+		public void build() {
+			for (int i = 0; i < steps; i++)
+				errors(i);
+		}
+
+		public long getMemoryFootprint() {
+			long bytes = 0;
+			for (int i = 0; i <= steps; i++) {
+				if (columns.get(i) != null)
+					bytes += 8 * (steps + 1);
+				if (i < steps && errors.get(i) != null)
+					bytes += 4 * steps;
+			}
+
+			return bytes;
+		}
+
+		private double interpolate(double[] left, double[] right, int j, double dx, double dy) {
+			double bottom = left[j] + (right[j] - left[j]) * dx;
+			double top = left[j + 1] + (right[j + 1] - left[j + 1]) * dx;
+			return bottom + (top - bottom) * dy;
+		}
+
+		private double[] column(int i) {
+			double[] column = columns.get(i);
+			if (column != null)
+				return column;
+
+			column = new double[steps + 1];
+			for (int j = 0; j <= steps; j++)
+				column[j] = encode(exact(((double) i) / steps, ((double) j) / steps));
+
+			// Another thread may have built the same column, in which case theirs is used
+			columns.compareAndSet(i, null, column);
+			return columns.get(i);
+		}
+
+		private float[] errors(int i) {
+			float[] error = errors.get(i);
+			if (error != null)
+				return error;
+
+			double[] left = column(i);
+			double[] right = column(i + 1);
+
+			// The error is sampled at the center of the cell, and the middle of each of its edges
+			error = new float[steps];
+			for (int j = 0; j < steps; j++) {
+				double estimate = 0;
+				for (double[] sample : SAMPLES) {
+					double interpolated = decode(interpolate(left, right, j, sample[0], sample[1]));
+					estimate = Math.max(estimate, Math.abs(interpolated - exact((i + sample[0]) / steps, (j + sample[1]) / steps)));
+				}
+
+				error[j] = Double.isNaN(estimate) ? Float.POSITIVE_INFINITY : (float) estimate;
+			}
+
+			errors.compareAndSet(i, null, error);
+			return errors.get(i);
+		}
+
+	}
+
+}
@@ -32,12 +32,13 @@ public final class Trust {
 	}
 	
 	/**
-	 * Get a value in the Trust space which is approximately equivalent to the passed Evidence
+	 * Get a value in the Trust space which is approximately equivalent to the passed Evidence.
+	 * If an {@link EvidenceTable} is installed, the confidence is looked up in it.
 	 * 
 	 * @param evidence
 	 */
 	public Trust(Evidence evidence) {
-		double c = evidence.getConfidence();
+		double c = EvidenceTable.getConfidence(evidence);
 		double alpha = evidence.getConsenting() / evidence.getTotal();
 
 		this.belief = alpha * c;
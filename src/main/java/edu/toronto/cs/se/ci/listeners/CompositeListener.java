@@ -0,0 +1,99 @@
+package edu.toronto.cs.se.ci.listeners;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.InvocationListener;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+
+/**
+ * An {@link InvocationListener} which delivers every event to each of several listeners, in order.
+ */
+public class CompositeListener implements InvocationListener {
+
+	private final InvocationListener[] listeners;
+
+	/**
+	 * @param listeners The listeners to deliver events to
+	 */
+	public CompositeListener(InvocationListener... listeners) {
+		this.listeners = listeners.clone();
+	}
+
+	@Override
+	public void sourceSelected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		for (InvocationListener listener : listeners)
+			listener.sourceSelected(invocation, source);
+	}
+
+	@Override
+	public void sourceRejected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		for (InvocationListener listener : listeners)
+			listener.sourceRejected(invocation, source);
+	}
+
+	@Override
+	public void sourceUnavailable(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		for (InvocationListener listener : listeners)
+			listener.sourceUnavailable(invocation, source);
+	}
+
+	@Override
+	public void budgetExpended(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Expenditure[] cost, Allowance[] remaining) {
+		for (InvocationListener listener : listeners)
+			listener.budgetExpended(invocation, source, cost, remaining);
+	}
+
+	@Override
+	public void opinionReceived(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Opinion<?, ?> opinion, long elapsedNanos) {
+		for (InvocationListener listener : listeners)
+			listener.opinionReceived(invocation, source, opinion, elapsedNanos);
+	}
+
+	@Override
+	public void sourceFailed(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Throwable cause, long elapsedNanos) {
+		for (InvocationListener listener : listeners)
+			listener.sourceFailed(invocation, source, cause, elapsedNanos);
+	}
+
+	@Override
+	public void aggregated(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+		for (InvocationListener listener : listeners)
+			listener.aggregated(invocation, result);
+	}
+
+	@Override
+	public void aggregationFailed(CI<?, ?, ?, ?>.Invocation invocation, Throwable cause) {
+		for (InvocationListener listener : listeners)
+			listener.aggregationFailed(invocation, cause);
+	}
+
+	@Override
+	public void listenerFailed(CI<?, ?, ?, ?>.Invocation invocation, Throwable cause) {
+		for (InvocationListener listener : listeners)
+			listener.listenerFailed(invocation, cause);
+	}
+
+	@Override
+	public void accepted(CI<?, ?, ?, ?>.Invocation invocation, Result<?, ?> result) {
+		for (InvocationListener listener : listeners)
+			listener.accepted(invocation, result);
+	}
+
+	@Override
+	public void sealed(CI<?, ?, ?, ?>.Invocation invocation) {
+		for (InvocationListener listener : listeners)
+			listener.sealed(invocation);
+	}
+
+	@Override
+	public void done(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+		for (InvocationListener listener : listeners)
+			listener.done(invocation, result);
+	}
+
+}
@@ -0,0 +1,126 @@
+package edu.toronto.cs.se.ci.listeners;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.InvocationListener;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+
+/**
+ * An {@link InvocationListener} which logs events with {@code java.util.logging}. Problems, such
+ * as sources throwing unexpected exceptions, are logged at {@code WARNING}. The progress of
+ * invocations is logged at {@code FINE}, and everything else at {@code FINEST}.
+ * 
+ * <p>Messages are only formatted if the logger will log them, but logging happens on the threads
+ * of the invocation. Wrap the listener in a {@link RingBufferListener} to log from a separate thread.
+ */
+public class LoggingListener implements InvocationListener {
+
+	private final Logger logger;
+
+	/**
+	 * Log to the {@code edu.toronto.cs.se.ci} logger
+	 */
+	public LoggingListener() {
+		this(Logger.getLogger("edu.toronto.cs.se.ci"));
+	}
+
+	/**
+	 * @param logger The logger to log to
+	 */
+	public LoggingListener(Logger logger) {
+		this.logger = logger;
+	}
+
+	private static String describe(CI<?, ?, ?, ?>.Invocation invocation) {
+		return invocation == null ? "[?]" : "[" + invocation.getArgs() + "]";
+	}
+
+	private static String describe(Source<?, ?, ?> source) {
+		return source == null ? "unknown source" : source.getName();
+	}
+
+	@Override
+	public void sourceSelected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		if (logger.isLoggable(Level.FINE))
+			logger.fine(describe(invocation) + " Calling " + describe(source));
+	}
+
+	@Override
+	public void sourceRejected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		if (logger.isLoggable(Level.WARNING))
+			logger.warning(describe(invocation) + " Selection function chose source out of budget: " + describe(source));
+	}
+
+	@Override
+	public void sourceUnavailable(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		if (logger.isLoggable(Level.FINE))
+			logger.fine(describe(invocation) + " Skipping unavailable source: " + describe(source));
+	}
+
+	@Override
+	public void budgetExpended(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Expenditure[] cost, Allowance[] remaining) {
+		if (logger.isLoggable(Level.FINEST))
+			logger.finest(describe(invocation) + " Spent " + cost.length + " expenditures on " + describe(source));
+	}
+
+	@Override
+	public void opinionReceived(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Opinion<?, ?> opinion, long elapsedNanos) {
+		if (logger.isLoggable(Level.FINE))
+			logger.fine(describe(invocation) + " " + describe(source) + " answered " + opinion.getValue()
+					+ " after " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms");
+	}
+
+	@Override
+	public void sourceFailed(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Throwable cause, long elapsedNanos) {
+		// Sources which don't know the answer are expected, anything else is a problem
+		Level level = cause instanceof UnknownException ? Level.FINE : Level.WARNING;
+		if (logger.isLoggable(level))
+			logger.log(level, describe(invocation) + " " + describe(source) + " failed after "
+					+ TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms", cause);
+	}
+
+	@Override
+	public void aggregated(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+		if (logger.isLoggable(Level.FINEST))
+			logger.finest(describe(invocation) + " Aggregated " + (result.isPresent() ? result.get() : "no result"));
+	}
+
+	@Override
+	public void aggregationFailed(CI<?, ?, ?, ?>.Invocation invocation, Throwable cause) {
+		logger.log(Level.WARNING, describe(invocation) + " Exception while aggregating", cause);
+	}
+
+	@Override
+	public void listenerFailed(CI<?, ?, ?, ?>.Invocation invocation, Throwable cause) {
+		logger.log(Level.WARNING, describe(invocation) + " Exception while executing listener", cause);
+	}
+
+	@Override
+	public void accepted(CI<?, ?, ?, ?>.Invocation invocation, Result<?, ?> result) {
+		if (logger.isLoggable(Level.FINE))
+			logger.fine(describe(invocation) + " Accepted " + result);
+	}
+
+	@Override
+	public void sealed(CI<?, ?, ?, ?>.Invocation invocation) {
+		if (logger.isLoggable(Level.FINEST))
+			logger.finest(describe(invocation) + " Sealed");
+	}
+
+	@Override
+	public void done(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+		if (logger.isLoggable(Level.FINE))
+			logger.fine(describe(invocation) + " Done " + (result.isPresent() ? result.get() : "without a result"));
+	}
+
+}
@@ -0,0 +1,295 @@
+package edu.toronto.cs.se.ci.listeners;
+
+import java.io.Closeable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.InvocationListener;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+
+/**
+ * An {@link InvocationListener} which delivers events to another listener asynchronously, on its own
+ * thread. Events are written into a fixed ring of preallocated slots, so recording an event never
+ * allocates, locks, or blocks the invocation. If the ring is full, because the delegate can't keep up,
+ * the event is dropped, and counted by {@link #getDropped()}.
+ * 
+ * <p>The delegate receives events in the order in which they were recorded, on a single thread. The
+ * thread parks while the ring is empty, and is woken by the next event recorded.
+ */
+public class RingBufferListener implements InvocationListener, Closeable {
+
+	private static final ThreadFactory THREADS = new ThreadFactoryBuilder()
+			.setDaemon(true)
+			.setNameFormat("ci-events-%d")
+			.build();
+
+	private static final int SELECTED = 0;
+	private static final int REJECTED = 1;
+	private static final int EXPENDED = 2;
+	private static final int RECEIVED = 3;
+	private static final int FAILED = 4;
+	private static final int AGGREGATED = 5;
+	private static final int AGGREGATION_FAILED = 6;
+	private static final int LISTENER_FAILED = 7;
+	private static final int ACCEPTED = 8;
+	private static final int SEALED = 9;
+	private static final int DONE = 10;
+	private static final int UNAVAILABLE = 11;
+
+	private final InvocationListener delegate;
+	private final Slot[] slots;
+	private final int mask;
+
+	// The next sequence number to claim, and the next to deliver
+	private final AtomicLong head = new AtomicLong();
+	private volatile long tail = 0;
+
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean running = true;
+	private final Thread consumer;
+
+	// Whether the consumer has found the ring empty, and is parked (or about to park) until a producer wakes it
+	private volatile boolean idle = false;
+
+	/**
+	 * @param delegate The listener to deliver events to
+	 * @param capacity The number of events which can be waiting for delivery. Rounded up to a power of two.
+	 */
+	public RingBufferListener(InvocationListener delegate, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive");
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+
+		this.delegate = delegate;
+		this.slots = new Slot[size];
+		this.mask = size - 1;
+
+		for (int i = 0; i < size; i++)
+			slots[i] = new Slot();
+
+		consumer = THREADS.newThread(new Runnable() {
+
+			@Override
+			public void run() {
+				consume();
+			}
+
+		});
+		consumer.start();
+	}
+
+	/**
+	 * @return The number of events which were dropped because the ring was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Stops the delivery thread, once it has delivered every event which has been recorded.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		LockSupport.unpark(consumer);
+
+		try {
+			consumer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Records an event in the next free slot
+	 */
+	private void publish(int type, CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Object first, Object second, long nanos) {
+		long sequence;
+		do {
+			sequence = head.get();
+			if (sequence - tail >= slots.length) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (! head.compareAndSet(sequence, sequence + 1));
+
+		Slot slot = slots[(int) sequence & mask];
+		slot.type = type;
+		slot.invocation = invocation;
+		slot.source = source;
+		slot.first = first;
+		slot.second = second;
+		slot.nanos = nanos;
+
+		// Publish the slot to the consumer, and wake it if it found the ring empty. The consumer sets idle
+		// before checking the slot again, so either it sees the slot, or this sees idle.
+		slot.sequence = sequence;
+		if (idle)
+			LockSupport.unpark(consumer);
+	}
+
+	private void consume() {
+		long next = 0;
+
+		for (;;) {
+			Slot slot = slots[(int) next & mask];
+
+			if (slot.sequence != next) {
+				// Once stopped, only stop when every claimed slot has been delivered
+				if (! running && head.get() == next)
+					return;
+
+				idle = true;
+				if (slot.sequence != next && running)
+					LockSupport.park(this);
+				idle = false;
+				continue;
+			}
+
+			try {
+				deliver(slot);
+			} catch (Throwable t) {
+				// The delegate is misbehaving, but that mustn't stop delivery of later events
+			}
+
+			slot.invocation = null;
+			slot.source = null;
+			slot.first = null;
+			slot.second = null;
+
+			tail = ++next;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void deliver(Slot slot) {
+		switch (slot.type) {
+		case SELECTED:
+			delegate.sourceSelected(slot.invocation, slot.source);
+			break;
+		case REJECTED:
+			delegate.sourceRejected(slot.invocation, slot.source);
+			break;
+		case UNAVAILABLE:
+			delegate.sourceUnavailable(slot.invocation, slot.source);
+			break;
+		case EXPENDED:
+			delegate.budgetExpended(slot.invocation, slot.source, (Expenditure[]) slot.first, (Allowance[]) slot.second);
+			break;
+		case RECEIVED:
+			delegate.opinionReceived(slot.invocation, slot.source, (Opinion<?, ?>) slot.first, slot.nanos);
+			break;
+		case FAILED:
+			delegate.sourceFailed(slot.invocation, slot.source, (Throwable) slot.first, slot.nanos);
+			break;
+		case AGGREGATED:
+			delegate.aggregated(slot.invocation, (Optional<? extends Result<?, ?>>) slot.first);
+			break;
+		case AGGREGATION_FAILED:
+			delegate.aggregationFailed(slot.invocation, (Throwable) slot.first);
+			break;
+		case LISTENER_FAILED:
+			delegate.listenerFailed(slot.invocation, (Throwable) slot.first);
+			break;
+		case ACCEPTED:
+			delegate.accepted(slot.invocation, (Result<?, ?>) slot.first);
+			break;
+		case SEALED:
+			delegate.sealed(slot.invocation);
+			break;
+		case DONE:
+			delegate.done(slot.invocation, (Optional<? extends Result<?, ?>>) slot.first);
+			break;
+		}
+	}
+
+	@Override
+	public void sourceSelected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		publish(SELECTED, invocation, source, null, null, 0);
+	}
+
+	@Override
+	public void sourceRejected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		publish(REJECTED, invocation, source, null, null, 0);
+	}
+
+	@Override
+	public void sourceUnavailable(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		publish(UNAVAILABLE, invocation, source, null, null, 0);
+	}
+
+	@Override
+	public void budgetExpended(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Expenditure[] cost, Allowance[] remaining) {
+		publish(EXPENDED, invocation, source, cost, remaining, 0);
+	}
+
+	@Override
+	public void opinionReceived(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Opinion<?, ?> opinion, long elapsedNanos) {
+		publish(RECEIVED, invocation, source, opinion, null, elapsedNanos);
+	}
+
+	@Override
+	public void sourceFailed(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Throwable cause, long elapsedNanos) {
+		publish(FAILED, invocation, source, cause, null, elapsedNanos);
+	}
+
+	@Override
+	public void aggregated(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+		publish(AGGREGATED, invocation, null, result, null, 0);
+	}
+
+	@Override
+	public void aggregationFailed(CI<?, ?, ?, ?>.Invocation invocation, Throwable cause) {
+		publish(AGGREGATION_FAILED, invocation, null, cause, null, 0);
+	}
+
+	@Override
+	public void listenerFailed(CI<?, ?, ?, ?>.Invocation invocation, Throwable cause) {
+		publish(LISTENER_FAILED, invocation, null, cause, null, 0);
+	}
+
+	@Override
+	public void accepted(CI<?, ?, ?, ?>.Invocation invocation, Result<?, ?> result) {
+		publish(ACCEPTED, invocation, null, result, null, 0);
+	}
+
+	@Override
+	public void sealed(CI<?, ?, ?, ?>.Invocation invocation) {
+		publish(SEALED, invocation, null, null, null, 0);
+	}
+
+	@Override
+	public void done(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+		publish(DONE, invocation, null, result, null, 0);
+	}
+
+	/**
+	 * A preallocated event. The fields are written by the producer which claimed the slot, and are
+	 * published to the consumer by the write to {@code sequence}.
+	 */
+	private static final class Slot {
+
+		private volatile long sequence = -1;
+
+		private int type;
+		private CI<?, ?, ?, ?>.Invocation invocation;
+		private Source<?, ?, ?> source;
+		private Object first;
+		private Object second;
+		private long nanos;
+
+	}
+
+}
@@ -0,0 +1,202 @@
+package edu.toronto.cs.se.ci.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.InvocationListener;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+
+/**
+ * Learns how long sources actually take, so that budgets reflect what sources cost, rather than what
+ * they declare. Attach a model to a CI with {@link CI#setCostModel(CostModel)}. Invocations then replace the
+ * {@link Time} each source declares with a percentile of the times it has been observed to take, once it
+ * has been observed often enough. One model may be shared by several CIs, in which case sources with the
+ * same name share their costs, keyed by {@link Source#getName()}.
+ * 
+ * <p>Sources which are cancelled, by the invocation's deadline or because it finished without them, are
+ * recorded as having taken as long as they ran, if that is longer than they are known to take.
+ * 
+ * <p>Selectors may query the model directly, with {@link #get(String)} and {@link #estimate(Source, Expenditure[])}.
+ */
+public class CostModel implements InvocationListener {
+
+	private final double percentile;
+	private final long minimumSamples;
+
+	private final ConcurrentMap<String, SourceCost> sources = new ConcurrentHashMap<>();
+
+	// The time declared by each source planned by a running invocation, in nanoseconds, or -1 if it declared none
+	private final ConcurrentMap<CI<?, ?, ?, ?>.Invocation, ConcurrentMap<Source<?, ?, ?>, Long>> declared = CacheBuilder.newBuilder()
+			.weakKeys()
+			.<CI<?, ?, ?, ?>.Invocation, ConcurrentMap<Source<?, ?, ?>, Long>>build()
+			.asMap();
+
+	/**
+	 * Create a model which estimates the time of a source by the 95th percentile of its observed times,
+	 * once it has been observed 20 times
+	 */
+	public CostModel() {
+		this(95, 20);
+	}
+
+	/**
+	 * @param percentile The percentile of the observed times used as a source's time, in [0, 100]
+	 * @param minimumSamples The number of times a source must be observed before its declared time is replaced
+	 */
+	public CostModel(double percentile, long minimumSamples) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("Percentile must be in [0, 100]");
+
+		this.percentile = percentile;
+		this.minimumSamples = Math.max(1, minimumSamples);
+	}
+
+	/**
+	 * @param name The name of a source
+	 * @return The cost observed for the source, if it has responded
+	 */
+	public Optional<SourceCost> get(String name) {
+		return Optional.fromNullable(sources.get(name));
+	}
+
+	/**
+	 * @return The cost observed for every source which has responded, by name
+	 */
+	public Map<String, SourceCost> getSources() {
+		return Collections.unmodifiableMap(sources);
+	}
+
+	/**
+	 * Estimate the cost of a source from its declared cost. If the source has been observed often
+	 * enough, its {@link Time} is replaced by the model's percentile of its observed times, or added,
+	 * if it declared none. Other expenditures are kept as declared.
+	 * 
+	 * @param source The source
+	 * @param cost The cost declared by the source
+	 * @return The estimated cost
+	 */
+	public Expenditure[] estimate(Source<?, ?, ?> source, Expenditure[] cost) {
+		SourceCost observed = sources.get(source.getName());
+		if (observed == null || observed.getObserved().getCount() < minimumSamples)
+			return cost;
+
+		Time time = new Time(observed.getObserved().getPercentile(percentile, TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+
+		for (int i = 0; i < cost.length; i++) {
+			if (cost[i] instanceof Time) {
+				Expenditure[] estimate = cost.clone();
+				estimate[i] = time;
+				return estimate;
+			}
+		}
+
+		Expenditure[] estimate = Arrays.copyOf(cost, cost.length + 1);
+		estimate[cost.length] = time;
+		return estimate;
+	}
+
+	/**
+	 * Estimate the cost of a source queried by an invocation, remembering the time the source declared,
+	 * so that it can be compared with the time the source takes. Called by invocations of CIs with this
+	 * cost model.
+	 * 
+	 * @param invocation The invocation
+	 * @param source The source
+	 * @param cost The cost declared by the source
+	 * @return The estimated cost
+	 */
+	public Expenditure[] estimate(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Expenditure[] cost) {
+		long time = -1;
+		for (Expenditure expenditure : cost) {
+			if (expenditure instanceof Time)
+				time = Math.max(time, ((Time) expenditure).getDuration(TimeUnit.NANOSECONDS));
+		}
+
+		ConcurrentMap<Source<?, ?, ?>, Long> times = declared.get(invocation);
+		if (times == null) {
+			declared.putIfAbsent(invocation, new ConcurrentHashMap<Source<?, ?, ?>, Long>());
+			times = declared.get(invocation);
+		}
+		times.put(source, time);
+
+		return estimate(source, cost);
+	}
+
+	private void record(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, long elapsedNanos) {
+		Long time = null;
+		if (invocation != null) {
+			ConcurrentMap<Source<?, ?, ?>, Long> times = declared.get(invocation);
+			if (times != null)
+				time = times.remove(source);
+		}
+
+		String name = source.getName();
+		SourceCost cost = sources.get(name);
+		if (cost == null) {
+			sources.putIfAbsent(name, new SourceCost(name));
+			cost = sources.get(name);
+		}
+
+		cost.record(elapsedNanos, time == null ? -1 : time);
+	}
+
+	@Override
+	public void opinionReceived(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Opinion<?, ?> opinion, long elapsedNanos) {
+		if (source != null)
+			record(invocation, source, elapsedNanos);
+	}
+
+	@Override
+	public void sourceFailed(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Throwable cause, long elapsedNanos) {
+		if (source == null)
+			return;
+
+		// Sources which were cancelled, such as at the invocation's deadline, would have taken at least as long
+		// as they ran. Their time is only recorded when it is longer than the source is known to take, so that
+		// sources which keep running past their deadline come to cost more than it allows.
+		if (cause instanceof CancellationException && elapsedNanos <= getKnownTime(invocation, source))
+			return;
+
+		record(invocation, source, elapsedNanos);
+	}
+
+	/**
+	 * @return The longer of the time a source declared to an invocation, and the model's percentile of its
+	 * observed times, in nanoseconds, or -1 if neither is known
+	 */
+	private long getKnownTime(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		long time = -1;
+		if (invocation != null) {
+			ConcurrentMap<Source<?, ?, ?>, Long> times = declared.get(invocation);
+			Long declaredTime = times == null ? null : times.get(source);
+			if (declaredTime != null)
+				time = declaredTime;
+		}
+
+		SourceCost cost = sources.get(source.getName());
+		if (cost != null && cost.getObserved().getCount() > 0)
+			time = Math.max(time, cost.getObserved().getPercentile(percentile, TimeUnit.NANOSECONDS));
+
+		return time;
+	}
+
+	@Override
+	public void done(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+		if (invocation != null)
+			declared.remove(invocation);
+	}
+
+}
@@ -0,0 +1,138 @@
+package edu.toronto.cs.se.ci.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations, in nanoseconds. Buckets are log-linear, in the style
+ * of HdrHistogram: each power of two is divided into {@code 2^SUB_BUCKET_BITS} equal buckets,
+ * so every recorded value is known to within about 3%, using a fixed 15KiB of counters
+ * regardless of the range of values.
+ * 
+ * <p>Recording a value is a handful of atomic increments, and never allocates. Reads are not
+ * atomic with respect to concurrent recording, so a percentile computed while values are being
+ * recorded may not include the most recent ones.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// Enough buckets for every non-negative long
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record a duration
+	 * 
+	 * @param nanos The duration, in nanoseconds. Negative durations are recorded as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+
+		counts.incrementAndGet(indexOf(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+
+		long current;
+		while (nanos > (current = max.get()) && ! max.compareAndSet(current, nanos));
+	}
+
+	/**
+	 * @return The number of durations recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @param unit The unit of the result
+	 * @return The mean of the recorded durations, or 0 if there are none
+	 */
+	public double getMean(TimeUnit unit) {
+		long n = count.get();
+		if (n == 0)
+			return 0;
+
+		return ((double) total.get()) / n / unit.toNanos(1);
+	}
+
+	/**
+	 * @param unit The unit of the result
+	 * @return The longest recorded duration
+	 */
+	public long getMax(TimeUnit unit) {
+		return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Get the duration which {@code percentile} percent of the recorded durations don't exceed.
+	 * The result is the upper bound of the bucket containing that duration, so it is never an
+	 * underestimate.
+	 * 
+	 * @param percentile The percentile, in [0, 100]
+	 * @param unit The unit of the result
+	 * @return The duration, or 0 if no durations have been recorded
+	 */
+	public long getPercentile(double percentile, TimeUnit unit) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("Percentile must be in [0, 100]");
+
+		long n = count.get();
+		if (n == 0)
+			return 0;
+
+		// The rank of the duration, counting from 1
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return unit.convert(Math.min(upperBoundOf(i), max.get()), TimeUnit.NANOSECONDS);
+		}
+
+		// Values were recorded after the count was read
+		return getMax(unit);
+	}
+
+	/**
+	 * Forget every recorded duration
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		// Values in [2^e, 2^(e + 1)) are divided into SUB_BUCKETS buckets of width 2^shift
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	private static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = SUB_BUCKETS + index % SUB_BUCKETS;
+		long upper = ((sub + 1) << shift) - 1;
+
+		// The last bucket ends at Long.MAX_VALUE, which the shift overflows
+		return upper < 0 ? Long.MAX_VALUE : upper;
+	}
+
+}
@@ -0,0 +1,224 @@
+package edu.toronto.cs.se.ci.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.InvocationListener;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+
+/**
+ * Collects {@link SourceMetrics} for every source queried by the CIs it listens to, keyed by
+ * {@link Source#getName()}. Attach the registry to a CI with {@link CI#setListener(InvocationListener)};
+ * one registry may listen to several CIs, in which case sources with the same name share their metrics.
+ * 
+ * <p>Metrics can be read directly, with {@link #get(String)} and {@link #getSources()}, or over JMX, once
+ * {@link #registerMBeans()} has been called.
+ */
+public class MetricsRegistry implements InvocationListener {
+
+	/**
+	 * The JMX domain of the registered MBeans
+	 */
+	public static final String DOMAIN = "edu.toronto.cs.se.ci";
+
+	private final ConcurrentMap<String, SourceMetrics> sources = new ConcurrentHashMap<>();
+
+	// Opinions which can't be compared with the final result until the invocation is done
+	private final ConcurrentMap<CI<?, ?, ?, ?>.Invocation, Queue<Pending>> pending = CacheBuilder.newBuilder()
+			.weakKeys()
+			.<CI<?, ?, ?, ?>.Invocation, Queue<Pending>>build()
+			.asMap();
+
+	private volatile MBeanServer server = null;
+
+	/**
+	 * @param name The name of a source
+	 * @return The metrics collected for the source, if it has been queried
+	 */
+	public Optional<SourceMetrics> get(String name) {
+		return Optional.fromNullable(sources.get(name));
+	}
+
+	/**
+	 * @return The metrics collected for every source which has been queried, by name
+	 */
+	public Map<String, SourceMetrics> getSources() {
+		return Collections.unmodifiableMap(sources);
+	}
+
+	/**
+	 * Register the metrics of every source with the platform MBean server. Metrics for sources which
+	 * are queried for the first time afterwards are registered as they are created.
+	 * 
+	 * @throws JMException If the MBeans could not be registered
+	 */
+	public void registerMBeans() throws JMException {
+		registerMBeans(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Register the metrics of every source with an MBean server. Metrics for sources which are queried
+	 * for the first time afterwards are registered as they are created.
+	 * 
+	 * @param server The MBean server
+	 * @throws JMException If the MBeans could not be registered
+	 */
+	public synchronized void registerMBeans(MBeanServer server) throws JMException {
+		if (this.server != null)
+			throw new IllegalStateException("MBeans are already registered");
+
+		this.server = server;
+		for (SourceMetrics metrics : sources.values())
+			server.registerMBean(metrics, nameOf(metrics));
+	}
+
+	/**
+	 * Unregister the MBeans registered by {@link #registerMBeans(MBeanServer)}
+	 * 
+	 * @throws JMException If the MBeans could not be unregistered
+	 */
+	public synchronized void unregisterMBeans() throws JMException {
+		MBeanServer server = this.server;
+		if (server == null)
+			return;
+
+		this.server = null;
+		for (SourceMetrics metrics : sources.values()) {
+			ObjectName name = nameOf(metrics);
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+		}
+	}
+
+	/**
+	 * @param metrics The metrics of a source
+	 * @return The name of the metrics' MBean
+	 * @throws JMException If the name is invalid
+	 */
+	public static ObjectName nameOf(SourceMetrics metrics) throws JMException {
+		return new ObjectName(DOMAIN + ":type=SourceMetrics,name=" + ObjectName.quote(metrics.getName()));
+	}
+
+	private SourceMetrics metricsFor(Source<?, ?, ?> source) {
+		String name = source.getName();
+
+		SourceMetrics metrics = sources.get(name);
+		if (metrics != null)
+			return metrics;
+
+		metrics = new SourceMetrics(name);
+		SourceMetrics existing = sources.putIfAbsent(name, metrics);
+		if (existing != null)
+			return existing;
+
+		synchronized (this) {
+			if (server != null) {
+				try {
+					server.registerMBean(metrics, nameOf(metrics));
+				} catch (JMException e) {
+					// The metrics can still be read directly, so the invocation carries on
+				}
+			}
+		}
+
+		return metrics;
+	}
+
+	@Override
+	public void sourceRejected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		metricsFor(source).recordRejection();
+	}
+
+	@Override
+	public void sourceUnavailable(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+		metricsFor(source).recordUnavailable();
+	}
+
+	@Override
+	public void budgetExpended(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Expenditure[] cost, Allowance[] remaining) {
+		metricsFor(source).recordQuery(cost);
+	}
+
+	@Override
+	public void opinionReceived(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Opinion<?, ?> opinion, long elapsedNanos) {
+		if (source == null)
+			return;
+
+		SourceMetrics metrics = metricsFor(source);
+		metrics.recordSuccess(elapsedNanos);
+
+		if (invocation == null)
+			return;
+
+		Queue<Pending> opinions = pending.get(invocation);
+		if (opinions == null) {
+			pending.putIfAbsent(invocation, new ConcurrentLinkedQueue<Pending>());
+			opinions = pending.get(invocation);
+		}
+
+		opinions.add(new Pending(metrics, opinion.getValue()));
+	}
+
+	@Override
+	public void sourceFailed(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Throwable cause, long elapsedNanos) {
+		if (source == null)
+			return;
+
+		if (cause instanceof UnknownException)
+			metricsFor(source).recordUnknown(elapsedNanos);
+		else if (cause instanceof CancellationException)
+			metricsFor(source).recordCancellation();
+		else
+			metricsFor(source).recordError(elapsedNanos);
+	}
+
+	@Override
+	public void done(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+		if (invocation == null)
+			return;
+
+		Queue<Pending> opinions = pending.remove(invocation);
+		if (opinions == null || ! result.isPresent())
+			return;
+
+		Object value = result.get().getValue();
+		for (Pending opinion : opinions)
+			opinion.metrics.recordAgreement(Objects.equal(opinion.value, value));
+	}
+
+	/**
+	 * An opinion, waiting for the final result of its invocation
+	 */
+	private static final class Pending {
+
+		private final SourceMetrics metrics;
+		private final Object value;
+
+		public Pending(SourceMetrics metrics, Object value) {
+			this.metrics = metrics;
+			this.value = value;
+		}
+
+	}
+
+}
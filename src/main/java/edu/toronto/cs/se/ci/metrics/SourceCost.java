@@ -0,0 +1,76 @@
+package edu.toronto.cs.se.ci.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The cost of a single source, as declared by the source and as observed by a {@link CostModel}.
+ * Only time is observed, so the declared cost is the {@link edu.toronto.cs.se.ci.budget.basic.Time}
+ * expenditure of the source. Every counter may be updated concurrently, without locking.
+ */
+public class SourceCost {
+
+	private final String name;
+	private final LatencyHistogram observed = new LatencyHistogram();
+
+	private final AtomicLong declared = new AtomicLong();
+	private final AtomicLong declaredNanos = new AtomicLong();
+	private final AtomicLong overruns = new AtomicLong();
+
+	/**
+	 * @param name The name of the source
+	 */
+	public SourceCost(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return The name of the source
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The time taken by the source to respond
+	 */
+	public LatencyHistogram getObserved() {
+		return observed;
+	}
+
+	/**
+	 * @param unit The unit of the result
+	 * @return The mean time declared by the source, over the responses which declared one, or 0 if none did
+	 */
+	public double getMeanDeclared(TimeUnit unit) {
+		long n = declared.get();
+		if (n == 0)
+			return 0;
+
+		return (double) declaredNanos.get() / n / unit.toNanos(1);
+	}
+
+	/**
+	 * @return The fraction of the responses which declared a time, which took longer than they declared
+	 */
+	public double getOverrunRate() {
+		long n = declared.get();
+		return n == 0 ? 0 : (double) overruns.get() / n;
+	}
+
+	/**
+	 * @param nanos The time taken by the source to respond
+	 * @param declaredNanos The time the source declared, or -1 if it didn't declare one
+	 */
+	void record(long nanos, long declaredNanos) {
+		observed.record(nanos);
+		if (declaredNanos < 0)
+			return;
+
+		declared.incrementAndGet();
+		this.declaredNanos.addAndGet(declaredNanos);
+		if (nanos > declaredNanos)
+			overruns.incrementAndGet();
+	}
+
+}
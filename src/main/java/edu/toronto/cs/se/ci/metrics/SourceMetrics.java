@@ -0,0 +1,269 @@
+package edu.toronto.cs.se.ci.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import edu.toronto.cs.se.ci.budget.BasicDepletable;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.FixedPointDepletable;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+
+/**
+ * The metrics collected for a single source by a {@link MetricsRegistry}. Every counter may be
+ * updated concurrently, without locking.
+ */
+public class SourceMetrics implements SourceMetricsMXBean {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final AtomicLong queries = new AtomicLong();
+	private final AtomicLong rejections = new AtomicLong();
+	private final AtomicLong unavailable = new AtomicLong();
+	private final AtomicLong successes = new AtomicLong();
+	private final AtomicLong unknowns = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong cancellations = new AtomicLong();
+	private final AtomicLong agreements = new AtomicLong();
+	private final AtomicLong disagreements = new AtomicLong();
+	private final ConcurrentMap<Class<?>, DoubleAdder> spent = new ConcurrentHashMap<>();
+
+	/**
+	 * @param name The name of the source
+	 */
+	public SourceMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return The time taken by the source to give an opinion, or fail
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	void recordQuery(Expenditure[] cost) {
+		queries.incrementAndGet();
+
+		for (Expenditure expenditure : cost) {
+			DoubleAdder adder = spent.get(expenditure.getClass());
+			if (adder == null) {
+				spent.putIfAbsent(expenditure.getClass(), new DoubleAdder());
+				adder = spent.get(expenditure.getClass());
+			}
+
+			adder.add(amountOf(expenditure));
+		}
+	}
+
+	void recordRejection() {
+		rejections.incrementAndGet();
+	}
+
+	void recordUnavailable() {
+		unavailable.incrementAndGet();
+	}
+
+	void recordSuccess(long nanos) {
+		successes.incrementAndGet();
+		latency.record(nanos);
+	}
+
+	void recordUnknown(long nanos) {
+		unknowns.incrementAndGet();
+		latency.record(nanos);
+	}
+
+	void recordError(long nanos) {
+		errors.incrementAndGet();
+		latency.record(nanos);
+	}
+
+	void recordCancellation() {
+		// The source was cut off before it responded, so the time it ran for isn't a latency
+		cancellations.incrementAndGet();
+	}
+
+	void recordAgreement(boolean agreed) {
+		if (agreed)
+			agreements.incrementAndGet();
+		else
+			disagreements.incrementAndGet();
+	}
+
+	/**
+	 * The amount of an expenditure. Numeric depletables, such as Dollars, are measured by their
+	 * quantity, {@link Time} in seconds, and every other expenditure, such as a flag, counts once.
+	 */
+	private static double amountOf(Expenditure expenditure) {
+		if (expenditure instanceof Time)
+			return ((Time) expenditure).getDuration(TimeUnit.NANOSECONDS) / 1e9;
+
+		if (expenditure instanceof FixedPointDepletable)
+			return ((FixedPointDepletable) expenditure).getQuantity().doubleValue();
+
+		if (expenditure instanceof BasicDepletable) {
+			Object quantity = ((BasicDepletable<?>) expenditure).getQuantity();
+			if (quantity instanceof Number)
+				return ((Number) quantity).doubleValue();
+		}
+
+		return 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getName()
+	 */
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getQueries()
+	 */
+	@Override
+	public long getQueries() {
+		return queries.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getRejections()
+	 */
+	@Override
+	public long getRejections() {
+		return rejections.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getUnavailable()
+	 */
+	@Override
+	public long getUnavailable() {
+		return unavailable.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getSuccesses()
+	 */
+	@Override
+	public long getSuccesses() {
+		return successes.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getUnknowns()
+	 */
+	@Override
+	public long getUnknowns() {
+		return unknowns.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getErrors()
+	 */
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getCancellations()
+	 */
+	@Override
+	public long getCancellations() {
+		return cancellations.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getAgreements()
+	 */
+	@Override
+	public long getAgreements() {
+		return agreements.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getDisagreements()
+	 */
+	@Override
+	public long getDisagreements() {
+		return disagreements.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getSpent()
+	 */
+	@Override
+	public Map<String, Double> getSpent() {
+		Map<String, Double> result = new TreeMap<>();
+		for (Map.Entry<Class<?>, DoubleAdder> entry : spent.entrySet())
+			result.put(entry.getKey().getSimpleName(), entry.getValue().sum());
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getMeanLatency()
+	 */
+	@Override
+	public double getMeanLatency() {
+		return latency.getMean(TimeUnit.NANOSECONDS) / NANOS_PER_MILLI;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getMedianLatency()
+	 */
+	@Override
+	public double getMedianLatency() {
+		return latency.getPercentile(50, TimeUnit.NANOSECONDS) / NANOS_PER_MILLI;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#get95thPercentileLatency()
+	 */
+	@Override
+	public double get95thPercentileLatency() {
+		return latency.getPercentile(95, TimeUnit.NANOSECONDS) / NANOS_PER_MILLI;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#get99thPercentileLatency()
+	 */
+	@Override
+	public double get99thPercentileLatency() {
+		return latency.getPercentile(99, TimeUnit.NANOSECONDS) / NANOS_PER_MILLI;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.metrics.SourceMetricsMXBean#getMaxLatency()
+	 */
+	@Override
+	public double getMaxLatency() {
+		return latency.getMax(TimeUnit.NANOSECONDS) / NANOS_PER_MILLI;
+	}
+
+}
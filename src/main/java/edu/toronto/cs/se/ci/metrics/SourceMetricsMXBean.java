@@ -0,0 +1,92 @@
+package edu.toronto.cs.se.ci.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link SourceMetrics}, through which they are exposed over JMX.
+ * Durations are in milliseconds.
+ */
+public interface SourceMetricsMXBean {
+
+	/**
+	 * @return The name of the source
+	 */
+	public String getName();
+
+	/**
+	 * @return The number of times the source was selected, and its cost fit within the budget
+	 */
+	public long getQueries();
+
+	/**
+	 * @return The number of times the source was selected, but its cost didn't fit within the budget
+	 */
+	public long getRejections();
+
+	/**
+	 * @return The number of times the source was selected, but its bulkhead was full or its circuit was open
+	 */
+	public long getUnavailable();
+
+	/**
+	 * @return The number of opinions the source gave
+	 */
+	public long getSuccesses();
+
+	/**
+	 * @return The number of times the source failed with an {@link edu.toronto.cs.se.ci.UnknownException}
+	 */
+	public long getUnknowns();
+
+	/**
+	 * @return The number of times the source failed with any other exception, other than being cancelled
+	 */
+	public long getErrors();
+
+	/**
+	 * @return The number of times the source was cancelled before it responded, such as when its invocation
+	 * ran out of time, or completed early, or another source answered its hedged query first
+	 */
+	public long getCancellations();
+
+	/**
+	 * @return The number of opinions whose value was equal to the invocation's final result
+	 */
+	public long getAgreements();
+
+	/**
+	 * @return The number of opinions whose value differed from the invocation's final result
+	 */
+	public long getDisagreements();
+
+	/**
+	 * @return The amount of each type of expenditure spent querying the source, by the expenditure's class name
+	 */
+	public Map<String, Double> getSpent();
+
+	/**
+	 * @return The mean time the source took to give an opinion, or fail
+	 */
+	public double getMeanLatency();
+
+	/**
+	 * @return The median time the source took to give an opinion, or fail
+	 */
+	public double getMedianLatency();
+
+	/**
+	 * @return The 95th percentile of the time the source took to give an opinion, or fail
+	 */
+	public double get95thPercentileLatency();
+
+	/**
+	 * @return The 99th percentile of the time the source took to give an opinion, or fail
+	 */
+	public double get99thPercentileLatency();
+
+	/**
+	 * @return The longest time the source took to give an opinion, or fail
+	 */
+	public double getMaxLatency();
+
+}
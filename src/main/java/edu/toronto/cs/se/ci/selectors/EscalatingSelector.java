@@ -0,0 +1,109 @@
+package edu.toronto.cs.se.ci.selectors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.ReactiveSelector;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.data.Opinion;
+
+/**
+ * A {@link ReactiveSelector} which queries a few sources, and only queries more if they don't
+ * agree. Once every source queried so far has responded, the selector stops if all of the opinions
+ * have the same value, and otherwise escalates, by querying the next few sources.
+ * 
+ * @param <I>
+ * @param <O>
+ * @param <T>
+ */
+public class EscalatingSelector<I, O, T> implements ReactiveSelector<I, O, T> {
+
+	private final int initial;
+	private final int step;
+
+	/**
+	 * @param initial The number of sources to query at first
+	 * @param step The number of sources to query each time the opinions disagree
+	 */
+	public EscalatingSelector(int initial, int step) {
+		if (initial < 1 || step < 1)
+			throw new IllegalArgumentException("Must query at least one source at a time");
+
+		this.initial = initial;
+		this.step = step;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.ReactiveSelector#onStart(edu.toronto.cs.se.ci.CI.Invocation)
+	 */
+	@Override
+	public List<Source<I, O, T>> onStart(CI<I, O, T, ?>.Invocation invocation) throws Exception {
+		return next(invocation, initial);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.ReactiveSelector#onOpinion(edu.toronto.cs.se.ci.CI.Invocation, edu.toronto.cs.se.ci.Source, edu.toronto.cs.se.ci.data.Opinion)
+	 */
+	@Override
+	public List<Source<I, O, T>> onOpinion(CI<I, O, T, ?>.Invocation invocation, Source<I, O, T> source, Opinion<O, T> opinion) throws Exception {
+		return escalate(invocation);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.ReactiveSelector#onFailure(edu.toronto.cs.se.ci.CI.Invocation, edu.toronto.cs.se.ci.Source, java.lang.Throwable)
+	 */
+	@Override
+	public List<Source<I, O, T>> onFailure(CI<I, O, T, ?>.Invocation invocation, Source<I, O, T> source, Throwable cause) throws Exception {
+		return escalate(invocation);
+	}
+
+	/**
+	 * @return The next sources to query, once every source queried so far has responded
+	 */
+	private List<Source<I, O, T>> escalate(CI<I, O, T, ?>.Invocation invocation) throws Exception {
+		Set<O> values = new HashSet<>();
+
+		for (ListenableFuture<Opinion<O, T>> opinion : invocation.getOpinions()) {
+			// Wait for the rest of the round
+			if (! opinion.isDone())
+				return new ArrayList<>();
+
+			try {
+				values.add(opinion.get().getValue());
+			} catch (Exception e) {
+				// The source failed, and has no say
+			}
+		}
+
+		if (values.size() == 1)
+			return new ArrayList<>();
+
+		return next(invocation, step);
+	}
+
+	/**
+	 * @return Up to {@code count} of the remaining sources, which fit within the budget
+	 */
+	private List<Source<I, O, T>> next(CI<I, O, T, ?>.Invocation invocation, int count) throws Exception {
+		List<Source<I, O, T>> sources = new ArrayList<>(count);
+
+		for (Source<I, O, T> source : invocation.getRemaining()) {
+			if (sources.size() >= count)
+				break;
+
+			if (invocation.withinBudget(source))
+				sources.add(source);
+		}
+
+		return sources;
+	}
+
+}
@@ -1,19 +1,36 @@
 package edu.toronto.cs.se.ci.selectors;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import edu.toronto.cs.se.ci.CI;
 import edu.toronto.cs.se.ci.Selector;
 import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.cache.OpinionKey;
 import edu.toronto.cs.se.ci.data.Trust;
 
 /**
  * Select elements in order of decreasing trust. (Uses EBT {@link Trust} values)
  * 
+ * <p>Each source's prior trust, {@code getTrust(args, Optional.absent())}, is computed once per
+ * invocation, when the source is put into the invocation's priority queue. Sources are taken from
+ * the queue in order of increasing disbelief, and are only checked against the budget once they reach
+ * the front of it. Budgets only shrink, so sources which don't fit are dropped from the queue. Sources which
+ * are only unavailable for now, as their bulkhead is full or their circuit is open, are kept in the queue, and
+ * are checked again each time another source is selected. Once only unavailable sources are left, the selector
+ * doesn't wait for them to become available: it returns absent, and the invocation is sealed without them.
+ * 
+ * <p>Optionally, prior trusts are cached per source name and input, so that invocations with the same
+ * input don't compute them again.
+ * 
  * @author Michael Layzell
  *
  * @param <I>
@@ -21,30 +38,124 @@ import edu.toronto.cs.se.ci.data.Trust;
  */
 public class TrustSelector<I, O> implements Selector<I, O, Trust> {
 
+	// The queue of each running invocation, which is dropped once the invocation is garbage collected
+	private final ConcurrentMap<CI<?, ?, ?, ?>.Invocation, PriorityQueue<Candidate<I, O>>> queues = CacheBuilder.newBuilder()
+			.weakKeys()
+			.<CI<?, ?, ?, ?>.Invocation, PriorityQueue<Candidate<I, O>>>build()
+			.asMap();
+
+	private final Optional<Cache<OpinionKey, Trust>> trusts;
+
+	/**
+	 * Create a TrustSelector which doesn't cache trust between invocations
+	 */
+	public TrustSelector() {
+		this.trusts = Optional.absent();
+	}
+
+	/**
+	 * Create a TrustSelector which caches prior trusts between invocations
+	 * 
+	 * @param ttl The time after which a cached trust expires
+	 * @param unit The unit of {@code ttl}
+	 * @param maximumSize The maximum number of cached trusts
+	 */
+	public TrustSelector(long ttl, TimeUnit unit, long maximumSize) {
+		this(CacheBuilder.newBuilder().expireAfterWrite(ttl, unit).maximumSize(maximumSize));
+	}
+
+	/**
+	 * Create a TrustSelector which caches prior trusts between invocations
+	 * 
+	 * @param spec The configuration of the cache
+	 */
+	public TrustSelector(CacheBuilder<? super OpinionKey, ? super Trust> spec) {
+		this.trusts = Optional.of(spec.<OpinionKey, Trust>build());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see edu.toronto.cs.se.ci.Selector#getNextSource(edu.toronto.cs.se.ci.CI.Invocation)
 	 */
 	@Override
 	public Optional<Source<I, O, Trust>> getNextSource(CI<I, O, Trust, ?>.Invocation invocation) {
-		List<Source<I, O, Trust>> sources = new ArrayList<>(invocation.getRemaining());
-		sources.sort(new TrustComparator<I>(invocation.getArgs()));
-		
+		PriorityQueue<Candidate<I, O>> queue = queues.get(invocation);
+		if (queue == null) {
+			queue = new PriorityQueue<>();
+			for (Source<I, O, Trust> source : invocation.getRemaining())
+				queue.add(new Candidate<I, O>(source, getTrust(source, invocation.getArgs())));
+
+			queues.put(invocation, queue);
+		}
+
+		List<Candidate<I, O>> unavailable = new ArrayList<>();
 		try {
-			for (Source<I, O, Trust> source : sources) {
-				if (invocation.withinBudget(source)) {
-					return Optional.of(source);
+			while (! queue.isEmpty()) {
+				Candidate<I, O> candidate = queue.poll();
+				Source<I, O, Trust> source = candidate.source;
+
+				if (! invocation.isRemaining(source))
+					continue;
+
+				if (! invocation.isAvailable(source)) {
+					unavailable.add(candidate);
+					continue;
 				}
+
+				if (invocation.withinBudget(source))
+					return Optional.of(source);
 			}
 		} catch (Exception e) {
 			return Optional.absent();
+		} finally {
+			queue.addAll(unavailable);
 		}
-		
+
+		// Nothing left is available right now. The CI stops polling once this returns, so the invocation ends
+		// without the unavailable sources, rather than holding a thread until one of them frees up.
+		queues.remove(invocation);
 		return Optional.absent();
 	}
-	
+
+	/**
+	 * @return The prior trust in a source, from the cache if there is one
+	 */
+	private Trust getTrust(Source<I, O, Trust> source, I args) {
+		if (! trusts.isPresent())
+			return source.getTrust(args, Optional.<O>absent());
+
+		OpinionKey key = new OpinionKey(source.getName(), args);
+		Trust trust = trusts.get().getIfPresent(key);
+		if (trust == null) {
+			trust = source.getTrust(args, Optional.<O>absent());
+			trusts.get().put(key, trust);
+		}
+
+		return trust;
+	}
+
+	/**
+	 * A source in an invocation's queue, with its prior trust
+	 */
+	private static final class Candidate<I, O> implements Comparable<Candidate<I, O>> {
+
+		private final Source<I, O, Trust> source;
+		private final Trust trust;
+
+		public Candidate(Source<I, O, Trust> source, Trust trust) {
+			this.source = source;
+			this.trust = trust;
+		}
+
+		@Override
+		public int compareTo(Candidate<I, O> other) {
+			return Double.compare(trust.getDisbelief(), other.trust.getDisbelief());
+		}
+
+	}
+
 	/**
-	 * A comparator, used for the implementation of the selection function
+	 * A comparator which orders sources by increasing disbelief in their prior trust
 	 * 
 	 * @author Michael Layzell
 	 *
@@ -60,10 +171,10 @@ public class TrustSelector<I, O> implements Selector<I, O, Trust> {
 
 		@Override
 		public int compare(Source<I, ?, Trust> o1, Source<I, ?, Trust> o2) {
-			return (int) (o1.getTrust(args, Optional.absent()).getDisbelief()
-					    - o2.getTrust(args, Optional.absent()).getDisbelief());
+			return Double.compare(o1.getTrust(args, Optional.absent()).getDisbelief(),
+					o2.getTrust(args, Optional.absent()).getDisbelief());
 		}
-		
+
 	}
 
 }
@@ -0,0 +1,60 @@
+package edu.toronto.cs.se.ci.utils;
+
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.data.Opinion;
+
+/**
+ * A source which is backed by an asynchronous client. The opinion is produced by a future,
+ * and no thread is held by the CI while waiting for it to complete.
+ * 
+ * @param <I> Input type
+ * @param <O> Output type
+ * @param <T> Trust type
+ */
+public abstract class AsyncSource<I, O, T> extends Source<I, O, T> {
+
+	/**
+	 * Query the source. If the source has no opinion, the returned future should fail
+	 * with an {@link UnknownException}.
+	 * 
+	 * @param args The arguments passed to the CI
+	 * @return A future for the source's opinion
+	 */
+	public abstract ListenableFuture<Opinion<O, T>> getOpinionAsync(I args);
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Source#getOpinionAsync(java.lang.Object, com.google.common.util.concurrent.ListeningExecutorService)
+	 */
+	@Override
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(I args, ListeningExecutorService pool) {
+		return getOpinionAsync(args);
+	}
+
+	/**
+	 * Blocks until the asynchronous opinion is available. This is only used when the source
+	 * is called synchronously, for example by an {@link edu.toronto.cs.se.ci.Adaptor} which
+	 * doesn't support asynchronous sources.
+	 */
+	@Override
+	public Opinion<O, T> getOpinion(I args) throws UnknownException {
+		try {
+			return getOpinionAsync(args).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UnknownException)
+				throw (UnknownException) e.getCause();
+
+			throw new UnknownException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnknownException(e);
+		}
+	}
+
+}
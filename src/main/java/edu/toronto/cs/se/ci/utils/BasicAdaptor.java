@@ -1,9 +1,14 @@
 package edu.toronto.cs.se.ci.utils;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 
 import edu.toronto.cs.se.ci.Adaptor;
 import edu.toronto.cs.se.ci.Contract;
+import edu.toronto.cs.se.ci.Deadline;
 import edu.toronto.cs.se.ci.Source;
 import edu.toronto.cs.se.ci.UnknownException;
 import edu.toronto.cs.se.ci.budget.Expenditure;
@@ -87,6 +92,21 @@ public abstract class BasicAdaptor<I, O, T, OI, OO, OT> extends Adaptor<I, O, T,
 	public Opinion<O, T> getOpinion(I args, Source<OI, OO, OT> adaptee) throws UnknownException {
 		return transformOpinion(adaptee.getOpinion(transformArgs(args)));
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Adaptor#getOpinionAsync(java.lang.Object, edu.toronto.cs.se.ci.Source, com.google.common.util.concurrent.ListeningExecutorService)
+	 */
+	@Override
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(I args, Source<OI, OO, OT> adaptee, ListeningExecutorService pool) {
+		// Transform the adaptee's future, so that adapted sources don't block if the adaptee doesn't
+		return Futures.transform(adaptee.getOpinionAsync(transformArgs(args), pool, Deadline.current()), new Function<Opinion<OO, OT>, Opinion<O, T>>() {
+			@Override
+			public Opinion<O, T> apply(Opinion<OO, OT> opinion) {
+				return transformOpinion(opinion);
+			}
+		});
+	}
 	
 	/*
 	 * (non-Javadoc)
@@ -1,7 +1,12 @@
 package edu.toronto.cs.se.ci.utils;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 
+import edu.toronto.cs.se.ci.Deadline;
 import edu.toronto.cs.se.ci.Source;
 import edu.toronto.cs.se.ci.UnknownException;
 import edu.toronto.cs.se.ci.data.Opinion;
@@ -25,6 +30,19 @@ public abstract class BasicSource<I, O, T> extends Source<I, O, T> {
 	 */
 	public abstract O getResponse(I input) throws UnknownException;
 	
+	/**
+	 * Queries the source asynchronously, getting its response. By default, this runs
+	 * {@link #getResponse(Object)} on {@code pool}, with the invocation's {@link Deadline}. Sources
+	 * backed by an asynchronous client should override this method.
+	 * 
+	 * @param input The arguments passed to the source
+	 * @param pool The invocation's executor, which may be used to run blocking work
+	 * @return A future for the value of the source's opinion
+	 */
+	public ListenableFuture<O> getResponseAsync(final I input, ListeningExecutorService pool) {
+		return pool.submit(Deadline.propagate(() -> getResponse(input)));
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see edu.toronto.cs.se.ci.Source#getOpinion(java.lang.Object)
@@ -36,5 +54,19 @@ public abstract class BasicSource<I, O, T> extends Source<I, O, T> {
 		
 		return new Opinion<O, T>(response, trust);
 	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Source#getOpinionAsync(java.lang.Object, com.google.common.util.concurrent.ListeningExecutorService)
+	 */
+	@Override
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(final I input, ListeningExecutorService pool) {
+		return Futures.transform(getResponseAsync(input, pool), new Function<O, Opinion<O, T>>() {
+			@Override
+			public Opinion<O, T> apply(O response) {
+				return new Opinion<O, T>(response, getTrust(input, Optional.of(response)));
+			}
+		});
+	}
 
 }
@@ -0,0 +1,63 @@
+package edu.toronto.cs.se.ci.utils;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+
+/**
+ * A source which can answer many queries in a single bulk request. Wrap it in a
+ * {@link BatchingSource} to combine concurrent queries from different invocations
+ * into bulk requests.
+ * 
+ * @param <I> Input type
+ * @param <O> Output type
+ * @param <T> Trust type
+ */
+public abstract class BatchSource<I, O, T> extends Source<I, O, T> {
+
+	/**
+	 * Get the cost of a single bulk request for all of the given inputs
+	 * 
+	 * @param args The inputs which would be passed to {@code getOpinions}
+	 * @return The cost of the bulk request
+	 */
+	public abstract Expenditure[] getCost(List<I> args) throws Exception;
+
+	/**
+	 * Get the source's opinions on many inputs with a single bulk request
+	 * 
+	 * @param args The inputs to query the source with
+	 * @return A list with one element per input, in the same order as {@code args}. An element
+	 * is absent if the source has no opinion on the corresponding input.
+	 * @throws UnknownException The source wasn't avaliable, so no answers could be obtained
+	 */
+	public abstract List<Optional<Opinion<O, T>>> getOpinions(List<I> args) throws UnknownException;
+
+	/**
+	 * The cost of a bulk request containing only {@code args}
+	 */
+	@Override
+	public Expenditure[] getCost(I args) throws Exception {
+		return getCost(Collections.singletonList(args));
+	}
+
+	/**
+	 * Makes a bulk request containing only {@code args}
+	 */
+	@Override
+	public Opinion<O, T> getOpinion(I args) throws UnknownException {
+		Optional<Opinion<O, T>> opinion = getOpinions(Collections.singletonList(args)).get(0);
+
+		if (opinion.isPresent())
+			return opinion.get();
+		else
+			throw new UnknownException("Source has no opinion");
+	}
+
+}
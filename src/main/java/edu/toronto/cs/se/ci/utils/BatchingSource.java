@@ -0,0 +1,253 @@
+package edu.toronto.cs.se.ci.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+
+import edu.toronto.cs.se.ci.ExecutionContext;
+import edu.toronto.cs.se.ci.ExecutionContexts;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Budgets;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+
+/**
+ * Wraps a {@link BatchSource}, combining concurrent queries into bulk requests. Queries made
+ * by different invocations (or even different CIs) are collected until either {@code maxBatchSize}
+ * distinct inputs are waiting, or {@code window} has elapsed since the first query of the batch.
+ * A single bulk request is then made, and its results are split back out to the waiting queries.
+ * 
+ * <p>The cost of a query is an equal share of the cost of a bulk request for the inputs which have
+ * joined the current batch, and the query's input (see {@link Budgets#split}). Quoting the cost has no
+ * side effects: a query only takes its place in a batch when it is made. The quote is therefore an
+ * estimate. A batch only grows until it is sent, so the share usually shrinks, but if the batch is sent
+ * before the query is made, the query joins a new batch and its share may be larger than quoted.
+ * 
+ * @param <I> Input type
+ * @param <O> Output type
+ * @param <T> Trust type
+ */
+public class BatchingSource<I, O, T> extends AsyncSource<I, O, T> {
+
+	private final BatchSource<I, O, T> source;
+	private final int maxBatchSize;
+	private final long windowNanos;
+	private final ListeningExecutorService executor;
+	private final ScheduledExecutorService timer;
+
+	// The batch which new queries join, guarded by this
+	private Batch pending = null;
+
+	/**
+	 * Create a batching source which runs bulk requests on the default {@link ExecutionContext}
+	 * 
+	 * @param source The source to make bulk requests to
+	 * @param maxBatchSize The maximum number of distinct inputs in a bulk request
+	 * @param window The maximum time to wait for a batch to fill up
+	 * @param unit The unit of {@code window}
+	 */
+	public BatchingSource(BatchSource<I, O, T> source, int maxBatchSize, long window, TimeUnit unit) {
+		this(source, maxBatchSize, window, unit, ExecutionContexts.getDefault());
+	}
+
+	/**
+	 * @param source The source to make bulk requests to
+	 * @param maxBatchSize The maximum number of distinct inputs in a bulk request
+	 * @param window The maximum time to wait for a batch to fill up
+	 * @param unit The unit of {@code window}
+	 * @param context The context providing the threads which make bulk requests
+	 */
+	public BatchingSource(BatchSource<I, O, T> source, int maxBatchSize, long window, TimeUnit unit, ExecutionContext context) {
+		if (maxBatchSize < 1)
+			throw new IllegalArgumentException("maxBatchSize must be at least 1");
+
+		this.source = source;
+		this.maxBatchSize = maxBatchSize;
+		this.windowNanos = unit.toNanos(window);
+		this.executor = context.newInvocationExecutor();
+		this.timer = ExecutionContexts.getTimer();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Source#getName()
+	 */
+	@Override
+	public String getName() {
+		return source.getName();
+	}
+
+	/**
+	 * Get the share of the cost of the bulk request which {@code args} would currently join. The
+	 * quote doesn't reserve a place for {@code args} in that request.
+	 */
+	@Override
+	public Expenditure[] getCost(I args) throws Exception {
+		List<I> inputs;
+
+		synchronized (this) {
+			// A full batch is sent as soon as it fills up, so a batch which is still pending has room for args
+			inputs = pending == null ? new ArrayList<I>() : new ArrayList<>(pending.joined.keySet());
+		}
+
+		if (! inputs.contains(args))
+			inputs.add(args);
+
+		return Budgets.split(source.getCost(inputs), inputs.size());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see edu.toronto.cs.se.ci.Source#getTrust(java.lang.Object, com.google.common.base.Optional)
+	 */
+	@Override
+	public T getTrust(I args, Optional<O> value) {
+		return source.getTrust(args, value);
+	}
+
+	/**
+	 * Adds {@code args} to the current batch. The returned future completes once the bulk request
+	 * containing {@code args} returns.
+	 */
+	@Override
+	public ListenableFuture<Opinion<O, T>> getOpinionAsync(I args) {
+		SettableFuture<Opinion<O, T>> future = SettableFuture.create();
+		Batch full = null;
+
+		synchronized (this) {
+			if (pending == null) {
+				final Batch batch = new Batch();
+				batch.flushTask = timer.schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+				pending = batch;
+			}
+
+			// Every caller gets its own future, so that one invocation cancelling its
+			// query doesn't cancel the query for other invocations with the same input
+			List<SettableFuture<Opinion<O, T>>> waiting = pending.joined.get(args);
+			if (waiting == null) {
+				waiting = new ArrayList<>();
+				pending.joined.put(args, waiting);
+			}
+			waiting.add(future);
+
+			if (pending.joined.size() >= maxBatchSize) {
+				full = pending;
+				pending = null;
+				take(full);
+			}
+		}
+
+		if (full != null)
+			dispatch(full);
+
+		return future;
+	}
+
+	/**
+	 * Marks a batch as sent, so that its window doesn't send it again. Must be called while holding this
+	 * source's lock.
+	 * 
+	 * @param batch The batch
+	 */
+	private void take(Batch batch) {
+		batch.sent = true;
+		batch.flushTask.cancel(false);
+	}
+
+	/**
+	 * Sends the given batch when its window elapses, unless it has already been sent
+	 * 
+	 * @param batch The batch
+	 */
+	private void flush(Batch batch) {
+		synchronized (this) {
+			if (batch.sent)
+				return;
+
+			if (pending == batch)
+				pending = null;
+
+			take(batch);
+		}
+
+		dispatch(batch);
+	}
+
+	/**
+	 * Makes the bulk request for a batch on the executor. The timer thread must never block,
+	 * so requests are never made directly from it.
+	 * 
+	 * @param batch The batch to send
+	 */
+	private void dispatch(Batch batch) {
+		final Map<I, List<SettableFuture<Opinion<O, T>>>> joined = batch.joined;
+		if (joined.isEmpty())
+			return;
+
+		try {
+			executor.execute(() -> send(joined));
+		} catch (RejectedExecutionException e) {
+			fail(joined, e);
+		}
+	}
+
+	/**
+	 * Makes the bulk request for a batch, and completes the futures waiting on it
+	 * 
+	 * @param batch The batch to send
+	 */
+	private void send(Map<I, List<SettableFuture<Opinion<O, T>>>> batch) {
+		List<I> inputs = new ArrayList<>(batch.keySet());
+
+		try {
+			List<Optional<Opinion<O, T>>> opinions = source.getOpinions(inputs);
+			if (opinions.size() != inputs.size())
+				throw new UnknownException("Bulk request returned " + opinions.size() + " opinions for " + inputs.size() + " inputs");
+
+			for (int i = 0; i < inputs.size(); i++) {
+				Optional<Opinion<O, T>> opinion = opinions.get(i);
+
+				for (SettableFuture<Opinion<O, T>> future : batch.get(inputs.get(i))) {
+					if (opinion.isPresent())
+						future.set(opinion.get());
+					else
+						future.setException(new UnknownException("Source has no opinion"));
+				}
+			}
+		} catch (Exception e) {
+			fail(batch, e);
+		}
+	}
+
+	private void fail(Map<I, List<SettableFuture<Opinion<O, T>>>> batch, Throwable t) {
+		for (List<SettableFuture<Opinion<O, T>>> waiting : batch.values()) {
+			for (SettableFuture<Opinion<O, T>> future : waiting) {
+				future.setException(t);
+			}
+		}
+	}
+
+	/**
+	 * A bulk request which is being collected. Guarded by the source's lock.
+	 */
+	private final class Batch {
+
+		// The futures waiting on each input which has joined the batch
+		final Map<I, List<SettableFuture<Opinion<O, T>>>> joined = new LinkedHashMap<>();
+
+		boolean sent = false;
+		ScheduledFuture<?> flushTask;
+
+	}
+
+}
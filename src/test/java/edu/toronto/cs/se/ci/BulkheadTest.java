@@ -0,0 +1,146 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.contexts.SharedExecutionContext;
+import edu.toronto.cs.se.ci.selectors.AllSelector;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class BulkheadTest extends TestCase {
+
+	public BulkheadTest() {
+		super("BulkheadTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( BulkheadTest.class );
+	}
+
+	/**
+	 * A source which answers with its input, once it is let through
+	 */
+	private static class GatedSource extends BasicSource<Integer, Integer, Double> {
+
+		private final String name;
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch entered = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+
+		public GatedSource(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			calls.incrementAndGet();
+			entered.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new UnknownException(e);
+			}
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	public void testRejectsSaturatedSources() {
+		Bulkhead bulkhead = new Bulkhead(2, 1, 4, 0.5, 2);
+		GatedSource a = new GatedSource("a");
+		GatedSource b = new GatedSource("b");
+		bulkhead.group(b, "a");
+
+		Optional<Bulkhead.Permit> first = bulkhead.acquire(a);
+		assertTrue(first.isPresent());
+		assertTrue(bulkhead.acquire(b).isPresent());
+
+		// b shares a's limit
+		assertFalse(bulkhead.isAvailable(a));
+		assertFalse(bulkhead.acquire(a).isPresent());
+		assertEquals(2, bulkhead.getInFlight(b));
+
+		SettableFuture<Integer> opinion = SettableFuture.create();
+		first.get().release(opinion);
+		assertFalse(bulkhead.isAvailable(a));
+
+		opinion.cancel(false);
+		assertTrue(bulkhead.isAvailable(a));
+		assertEquals(2, bulkhead.getLimit(a));
+	}
+
+	public void testAdaptsLimit() {
+		// Latencies are never considered slow, so only failures reduce the limit
+		Bulkhead bulkhead = new Bulkhead(4, 1, 8, 0.5, 1e12);
+		GatedSource source = new GatedSource("source");
+
+		for (int round = 0; round < 20; round++) {
+			List<Bulkhead.Permit> permits = new ArrayList<>();
+			for (Optional<Bulkhead.Permit> permit = bulkhead.acquire(source); permit.isPresent(); permit = bulkhead.acquire(source))
+				permits.add(permit.get());
+
+			for (Bulkhead.Permit permit : permits)
+				permit.release(Futures.immediateFuture(1));
+		}
+		assertEquals(8, bulkhead.getLimit(source));
+
+		bulkhead.acquire(source).get().release(Futures.immediateFailedFuture(new UnknownException()));
+		assertEquals(4, bulkhead.getLimit(source));
+
+		// Sources which aren't busy don't have their limit raised
+		for (int i = 0; i < 10; i++)
+			bulkhead.acquire(source).get().release(Futures.immediateFuture(1));
+		assertEquals(4, bulkhead.getLimit(source));
+		assertEquals(0, bulkhead.getInFlight(source));
+	}
+
+	public void testSaturatedSourcesAreUnavailable() throws Exception {
+		GatedSource source = new GatedSource("source");
+		List<Source<Integer, Integer, Double>> sources = new ArrayList<>();
+		sources.add(source);
+
+		CI<Integer, Integer, Double, Double> ci = new CI<>(sources, new VoteAggregator<Integer>(), new AllSelector<Integer, Integer, Double>());
+		ci.setExecutionContext(new SharedExecutionContext(4));
+		Bulkhead bulkhead = new Bulkhead(1, 1, 1, 0.5, 2);
+		ci.setBulkhead(bulkhead);
+
+		Estimate<Integer, Double> blocked = ci.apply(1, new Allowance[0]);
+		source.entered.await();
+
+		// The source isn't queued behind the first invocation, so the second gets no opinion
+		assertNull(ci.apply(2, new Allowance[0]).get().getValue());
+		assertEquals(1, source.calls.get());
+
+		source.gate.countDown();
+		assertEquals(Integer.valueOf(1), blocked.get().getValue());
+		assertEquals(Integer.valueOf(3), ci.apply(3, new Allowance[0]).get().getValue());
+	}
+
+}
@@ -0,0 +1,594 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.basic.Calls;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+import edu.toronto.cs.se.ci.contexts.SharedExecutionContext;
+import edu.toronto.cs.se.ci.metrics.CostModel;
+import edu.toronto.cs.se.ci.selectors.AllSelector;
+import edu.toronto.cs.se.ci.selectors.EscalatingSelector;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class CITest extends TestCase {
+
+	public CITest() {
+		super("CITest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( CITest.class );
+	}
+
+	/**
+	 * A source which answers with its input, after sleeping for a time which depends on the input, and
+	 * once its gate is open
+	 */
+	private static class EchoSource extends BasicSource<Integer, Integer, Double> {
+
+		private final String name;
+		final CountDownLatch gate;
+		final AtomicInteger calls = new AtomicInteger();
+
+		public EchoSource(String name) {
+			this(name, new CountDownLatch(0));
+		}
+
+		public EchoSource(String name, CountDownLatch gate) {
+			this.name = name;
+			this.gate = gate;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			calls.incrementAndGet();
+			try {
+				gate.await();
+				Thread.sleep((7 - input % 7) * 2);
+			} catch (InterruptedException e) {
+				throw new UnknownException(e);
+			}
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	/**
+	 * A source which costs a call, and answers with its input at once, until it has been queried
+	 * {@code fast} times. Later queries wait until its gate opens. Each query releases a permit, as
+	 * does each time it is priced.
+	 */
+	private static class PricedSource extends EchoSource {
+
+		private final int fast;
+		final Semaphore queried = new Semaphore(0);
+		final Semaphore priced = new Semaphore(0);
+
+		public PricedSource(String name, int fast) {
+			super(name, new CountDownLatch(1));
+			this.fast = fast;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			priced.release();
+			return new Expenditure[] { new Calls(1) };
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			int n = calls.incrementAndGet();
+			queried.release();
+			try {
+				if (n > fast)
+					gate.await();
+			} catch (InterruptedException e) {
+				throw new UnknownException(e);
+			}
+			return input;
+		}
+
+	}
+
+	/**
+	 * A priced source with a fixed hash code. Sets of sources with small hash codes are iterated in order
+	 * of them, so this fixes the order in which an {@link AllSelector} considers its sources.
+	 */
+	private static class HashedSource extends PricedSource {
+
+		private final int hash;
+
+		public HashedSource(String name, int fast, int hash) {
+			super(name, fast);
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+	/**
+	 * A selector which selects the first of its sources which remains. Once {@code before} is set, it
+	 * waits for a permit from it before selecting any source but the first.
+	 */
+	private static class OrderedSelector implements Selector<Integer, Integer, Double> {
+
+		private final List<EchoSource> order;
+		volatile Semaphore before = null;
+
+		public OrderedSelector(EchoSource... order) {
+			this.order = Arrays.asList(order);
+		}
+
+		@Override
+		public Optional<Source<Integer, Integer, Double>> getNextSource(CI<Integer, Integer, Double, ?>.Invocation invocation) {
+			if (! invocation.getRemaining().contains(order.get(0))) {
+				try {
+					Semaphore wait = before;
+					before = null;
+					if (wait != null)
+						wait.acquire();
+				} catch (InterruptedException e) {
+					return Optional.absent();
+				}
+			}
+
+			for (EchoSource source : order) {
+				if (invocation.getRemaining().contains(source))
+					return Optional.<Source<Integer, Integer, Double>>of(source);
+			}
+			return Optional.absent();
+		}
+
+	}
+
+	private CI<Integer, Integer, Double, Double> createCI(EchoSource... sources) {
+		return createCI(new AllSelector<Integer, Integer, Double>(), sources);
+	}
+
+	private CI<Integer, Integer, Double, Double> createCI(Selector<Integer, Integer, Double> selector, EchoSource... sources) {
+		if (sources.length == 0)
+			sources = new EchoSource[] { new EchoSource("a"), new EchoSource("b") };
+
+		List<Source<Integer, Integer, Double>> list = new ArrayList<>();
+		for (EchoSource source : sources)
+			list.add(source);
+
+		CI<Integer, Integer, Double, Double> ci = new CI<>(list, new VoteAggregator<Integer>(), selector);
+		ci.setExecutionContext(new SharedExecutionContext(4));
+		return ci;
+	}
+
+	/**
+	 * Hedges a source once it has been observed five times, with half of each invocation's budget
+	 */
+	private static void hedge(CI<Integer, Integer, Double, Double> ci, EchoSource source, EchoSource alternative) {
+		ci.setCostModel(new CostModel());
+		HedgingPolicy<Integer, Integer, Double> policy = new HedgingPolicy<>(95, 0.5, 5);
+		policy.hedge(source, Collections.<Source<Integer, Integer, Double>>singletonList(alternative));
+		ci.setHedgingPolicy(policy);
+	}
+
+	private List<Integer> inputs(int n) {
+		List<Integer> inputs = new ArrayList<>();
+		for (int i = 0; i < n; i++)
+			inputs.add(i);
+		return inputs;
+	}
+
+	public void testApplyAllOrdered() throws Exception {
+		CI<Integer, Integer, Double, Double> ci = createCI();
+
+		int expected = 0;
+		for (CI<Integer, Integer, Double, Double>.Invocation invocation : ci.applyAll(inputs(50), new Allowance[0], 8, true)) {
+			assertEquals(Integer.valueOf(expected), invocation.getArgs());
+			assertTrue(invocation.getEstimate().isDone());
+			assertEquals(Integer.valueOf(expected), invocation.getEstimate().get().getValue());
+			expected++;
+		}
+
+		assertEquals(50, expected);
+	}
+
+	public void testApplyAllUnordered() throws Exception {
+		CI<Integer, Integer, Double, Double> ci = createCI();
+
+		Set<Integer> seen = new TreeSet<>();
+		Iterator<CI<Integer, Integer, Double, Double>.Invocation> it = ci.applyAll(inputs(50).iterator(), new Allowance[0], 8, false);
+		while (it.hasNext()) {
+			CI<Integer, Integer, Double, Double>.Invocation invocation = it.next();
+			assertEquals(invocation.getArgs(), invocation.getEstimate().get().getValue());
+			assertTrue(seen.add(invocation.getArgs()));
+		}
+
+		assertEquals(new TreeSet<>(inputs(50)), seen);
+	}
+
+	public void testApplyAllStream() {
+		CI<Integer, Integer, Double, Double> ci = createCI();
+
+		assertEquals(20, ci.applyAll(inputs(20).stream(), new Allowance[0], 3, false).count());
+	}
+
+	public void testApplyAllReadsInputsOffEstimateLock() throws Exception {
+		CI<Integer, Integer, Double, Double> ci = createCI();
+
+		final List<Object> estimates = new CopyOnWriteArrayList<>();
+		ci.setListener(new InvocationListener() {
+
+			@Override
+			public void sealed(CI<?, ?, ?, ?>.Invocation invocation) {
+				estimates.add(invocation.getEstimate());
+			}
+
+		});
+
+		// Inputs are read as invocations complete, but never while an estimate's lock is held
+		final AtomicInteger locked = new AtomicInteger();
+		final Iterator<Integer> inputs = inputs(50).iterator();
+		Iterator<Integer> checked = new Iterator<Integer>() {
+
+			@Override
+			public boolean hasNext() {
+				for (Object estimate : estimates) {
+					if (Thread.holdsLock(estimate))
+						locked.incrementAndGet();
+				}
+				return inputs.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				return inputs.next();
+			}
+
+		};
+
+		Iterator<CI<Integer, Integer, Double, Double>.Invocation> it = ci.applyAll(checked, new Allowance[0], 4, false);
+		int count = 0;
+		while (it.hasNext()) {
+			it.next();
+			count++;
+		}
+
+		assertEquals(50, count);
+		assertEquals(0, locked.get());
+	}
+
+	public void testCoalescing() throws Exception {
+		EchoSource source = new EchoSource("a", new CountDownLatch(1));
+		CI<Integer, Integer, Double, Double> ci = createCI(source);
+		ci.setCoalescing(true);
+
+		// No invocation can complete until the gate opens, so every identical call attaches to the first
+		List<Estimate<Integer, Double>> estimates = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			estimates.add(ci.apply(0, new Allowance[] { new Time(1, TimeUnit.MINUTES) }));
+		Estimate<Integer, Double> other = ci.apply(1, new Allowance[] { new Time(1, TimeUnit.MINUTES) });
+		source.gate.countDown();
+
+		for (Estimate<Integer, Double> estimate : estimates) {
+			assertSame(estimates.get(0), estimate);
+			assertEquals(Integer.valueOf(0), estimate.get().getValue());
+		}
+		assertEquals(Integer.valueOf(1), other.get().getValue());
+		assertEquals(2, source.calls.get());
+	}
+
+	public void testReactiveSelector() throws Exception {
+		EchoSource[] sources = { new EchoSource("a"), new EchoSource("b"), new EchoSource("c"), new EchoSource("d") };
+
+		List<Source<Integer, Integer, Double>> list = new ArrayList<>();
+		for (EchoSource source : sources)
+			list.add(source);
+
+		CI<Integer, Integer, Double, Double> ci = new CI<>(list, new VoteAggregator<Integer>(), new EscalatingSelector<Integer, Integer, Double>(2, 1));
+		ci.setExecutionContext(new SharedExecutionContext(4));
+
+		for (int i = 0; i < 10; i++)
+			assertEquals(Integer.valueOf(i), ci.apply(i, new Allowance[0]).get().getValue());
+
+		// Every source agrees, so only the first two are ever queried
+		int calls = 0;
+		for (EchoSource source : sources)
+			calls += source.calls.get();
+		assertEquals(20, calls);
+	}
+
+	public void testCostModel() throws Exception {
+		EchoSource source = new EchoSource("a");
+		CI<Integer, Integer, Double, Double> ci = createCI(source);
+		CostModel model = new CostModel(100, 5);
+		ci.setCostModel(model);
+
+		// Each input takes at least 6ms to answer, although the source declares no time
+		for (int i = 0; i < 5; i++)
+			assertEquals(Integer.valueOf(i), ci.apply(i, new Allowance[0]).get().getValue());
+		assertEquals(5, model.get("a").get().getObserved().getCount());
+
+		Allowance[] budget = { new Time(5, TimeUnit.MILLISECONDS) };
+		CI<Integer, Integer, Double, Double>.Invocation invocation = ci.applyAll(inputs(1), budget, 1, true).iterator().next();
+
+		Expenditure[] cost = invocation.getCost(source);
+		assertEquals(1, cost.length);
+		assertTrue(((Time) cost[0]).getDuration(TimeUnit.MILLISECONDS) >= 6);
+		assertFalse(invocation.withinBudget(source));
+		assertEquals(5, source.calls.get());
+	}
+
+	public void testDeadlineCutsCost() throws Exception {
+		// The slow source never answers, and declares no time
+		EchoSource slow = new EchoSource("slow", new CountDownLatch(1));
+		CI<Integer, Integer, Double, Double> ci = createCI(new EchoSource("a"), slow);
+		CostModel model = new CostModel(95, 3);
+		ci.setCostModel(model);
+
+		// Each invocation cuts the slow source off at its deadline, which is longer each time
+		for (int i = 0; i < 3; i++) {
+			Allowance[] budget = { new Time(60 + 20 * i, TimeUnit.MILLISECONDS) };
+			assertEquals(Integer.valueOf(i), ci.apply(i, budget).get().getValue());
+		}
+		assertEquals(3, slow.calls.get());
+		assertEquals(3, model.get("slow").get().getObserved().getCount());
+		assertTrue(model.get("slow").get().getObserved().getMax(TimeUnit.MILLISECONDS) >= 80);
+
+		// It has run for longer than the next invocation allows, so it is no longer queried
+		Allowance[] budget = { new Time(80, TimeUnit.MILLISECONDS) };
+		assertEquals(Integer.valueOf(3), ci.apply(3, budget).get().getValue());
+		assertEquals(3, slow.calls.get());
+	}
+
+	public void testDeadline() throws Exception {
+		final List<Deadline> deadlines = new ArrayList<>();
+		EchoSource source = new EchoSource("a") {
+
+			@Override
+			public Integer getResponse(Integer input) throws UnknownException {
+				synchronized (deadlines) {
+					deadlines.add(Deadline.current());
+				}
+				return input;
+			}
+
+		};
+		CI<Integer, Integer, Double, Double> ci = createCI(source);
+
+		assertEquals(Integer.valueOf(1), ci.apply(1, new Allowance[] { new Time(1, TimeUnit.SECONDS) }).get().getValue());
+		assertEquals(Integer.valueOf(2), ci.apply(2, new Allowance[0]).get().getValue());
+
+		assertTrue(deadlines.get(0).isBounded());
+		long remaining = deadlines.get(0).getRemaining(TimeUnit.MILLISECONDS);
+		assertTrue(remaining > 0 && remaining <= 1000);
+		assertFalse(deadlines.get(1).isBounded());
+
+		// The deadline is only set while the source is queried
+		assertFalse(Deadline.current().isBounded());
+	}
+
+	public void testTimeout() throws Exception {
+		EchoSource slow = new EchoSource("slow", new CountDownLatch(1));
+		CI<Integer, Integer, Double, Double> ci = createCI(new EchoSource("a"), slow);
+		Allowance[] budget = { new Time(100, TimeUnit.MILLISECONDS) };
+
+		// The invocation is done once its time runs out, although the slow source never answers
+		assertEquals(Integer.valueOf(1), ci.apply(1, budget).get().getValue());
+		assertEquals(1, slow.calls.get());
+		slow.gate.countDown();
+
+		// Synchronous invocations which finish early don't wait for their time to run out
+		final CI<Integer, Integer, Double, Double> fast = createCI();
+		ExecutorService caller = Executors.newSingleThreadExecutor();
+		Future<Result<Integer, Double>> result = caller.submit(() -> fast.applySync(1, new Allowance[] { new Time(1, TimeUnit.HOURS) }));
+		assertEquals(Integer.valueOf(1), result.get(1, TimeUnit.MINUTES).getValue());
+		caller.shutdown();
+	}
+
+	public void testTimeoutOffTimer() throws Exception {
+		EchoSource slow = new EchoSource("slow", new CountDownLatch(1));
+		CI<Integer, Integer, Double, Double> ci = createCI(new EchoSource("a"), slow);
+
+		final AtomicReference<String> thread = new AtomicReference<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		ci.setListener(new InvocationListener() {
+
+			@Override
+			public void done(CI<?, ?, ?, ?>.Invocation invocation, Optional<? extends Result<?, ?>> result) {
+				thread.set(Thread.currentThread().getName());
+				done.countDown();
+			}
+
+		});
+
+		// The selector loop has finished long before the deadline, but the estimate isn't completed on the timer
+		assertEquals(Integer.valueOf(1), ci.apply(1, new Allowance[] { new Time(50, TimeUnit.MILLISECONDS) }).get().getValue());
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertFalse(thread.get(), thread.get().startsWith("ci-timer-"));
+		slow.gate.countDown();
+	}
+
+	public void testTimeoutWithFullPool() throws Exception {
+		EchoSource stuck = new EchoSource("stuck", new CountDownLatch(1));
+		CI<Integer, Integer, Double, Double> ci = createCI(stuck);
+		ci.setExecutionContext(new SharedExecutionContext(1));
+
+		// The source holds the only thread of the pool, but the estimate is still done once its time runs out
+		Estimate<Integer, Double> estimate = ci.apply(1, new Allowance[] { new Time(50, TimeUnit.MILLISECONDS) });
+		try {
+			estimate.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			// The source gave no opinion, so there may be no answer
+		}
+		assertTrue(estimate.isDone());
+		assertEquals(1, stuck.calls.get());
+		stuck.gate.countDown();
+	}
+
+	public void testHedging() throws Exception {
+		PricedSource primary = new PricedSource("primary", 5);
+		PricedSource replica = new PricedSource("replica", Integer.MAX_VALUE);
+		CI<Integer, Integer, Double, Double> ci = createCI(primary);
+		hedge(ci, primary, replica);
+
+		for (int i = 0; i < 5; i++)
+			ci.apply(i, new Allowance[] { new Calls(10) }).get();
+		assertEquals(0, replica.calls.get());
+
+		// The primary stalls from its sixth call, so it is hedged, and the replica answers instead
+		assertEquals(Integer.valueOf(5), ci.apply(5, new Allowance[] { new Calls(10) }).get().getValue());
+		assertEquals(1, replica.calls.get());
+
+		// Hedges may only spend half of the budget, which can't pay for another call, so the primary must answer
+		replica.priced.drainPermits();
+		Estimate<Integer, Double> estimate = ci.apply(6, new Allowance[] { new Calls(2) });
+		replica.priced.acquire();
+		primary.gate.countDown();
+		assertEquals(Integer.valueOf(6), estimate.get().getValue());
+		assertEquals(1, replica.calls.get());
+	}
+
+	public void testHedgeDuringSelection() throws Exception {
+		PricedSource primary = new PricedSource("primary", 5);
+		PricedSource replica = new PricedSource("replica", Integer.MAX_VALUE);
+		PricedSource other = new PricedSource("other", Integer.MAX_VALUE);
+		OrderedSelector selector = new OrderedSelector(primary, other);
+		CI<Integer, Integer, Double, Double> ci = createCI(selector, primary, other);
+		hedge(ci, primary, replica);
+
+		for (int i = 0; i < 5; i++)
+			ci.apply(i, new Allowance[] { new Calls(10) }).get();
+		assertEquals(0, replica.calls.get());
+
+		// The primary stalls, and is hedged while the selector loop is still running. Neither charge is lost.
+		selector.before = replica.queried;
+		Allowance[] budget = { new Calls(10) };
+		CI<Integer, Integer, Double, Double>.Invocation invocation = ci.applyAll(Collections.singletonList(5), budget, 1, true).iterator().next();
+		assertEquals(Integer.valueOf(5), invocation.getEstimate().get().getValue());
+		assertEquals(1, replica.calls.get());
+		assertEquals(6, other.calls.get());
+		assertEquals(new Calls(7), invocation.getBudget()[0]);
+		primary.gate.countDown();
+	}
+
+	public void testPeerHedging() throws Exception {
+		PricedSource primary = new PricedSource("primary", 5);
+		PricedSource peer = new PricedSource("peer", Integer.MAX_VALUE);
+		OrderedSelector selector = new OrderedSelector(primary, peer);
+		CI<Integer, Integer, Double, Double> ci = createCI(selector, primary, peer);
+		hedge(ci, primary, peer);
+
+		final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		ci.setListener(new InvocationListener() {
+
+			@Override
+			public void opinionReceived(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Opinion<?, ?> opinion, long elapsedNanos) {
+				if (invocation.getArgs().equals(5))
+					events.add(source.getName() + " answered");
+			}
+
+			@Override
+			public void sourceFailed(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Throwable cause, long elapsedNanos) {
+				if (invocation.getArgs().equals(5))
+					events.add(source.getName() + (cause instanceof CancellationException ? " cancelled" : " failed"));
+			}
+
+		});
+
+		for (int i = 0; i < 5; i++)
+			ci.apply(i, new Allowance[] { new Calls(10) }).get();
+		assertEquals(5, peer.calls.get());
+
+		// The peer answers the hedge, so the selector doesn't query it again
+		peer.queried.drainPermits();
+		selector.before = peer.queried;
+		Allowance[] budget = { new Calls(10) };
+		CI<Integer, Integer, Double, Double>.Invocation invocation = ci.applyAll(Collections.singletonList(5), budget, 1, true).iterator().next();
+		assertEquals(Integer.valueOf(5), invocation.getEstimate().get().getValue());
+		assertEquals(6, peer.calls.get());
+		assertEquals(new Calls(8), invocation.getBudget()[0]);
+		assertTrue(invocation.getRemaining().isEmpty());
+
+		// The opinion is the peer's, and the primary lost
+		assertEquals(Arrays.asList("primary cancelled", "peer answered"), events);
+		primary.gate.countDown();
+	}
+
+	public void testHedgeDuringAllSelector() throws Exception {
+		HashedSource primary = new HashedSource("primary", 5, 1);
+		final HashedSource peer = new HashedSource("peer", Integer.MAX_VALUE, 3);
+		HashedSource last = new HashedSource("last", Integer.MAX_VALUE, 4);
+
+		// Considered after the primary and before the peer, and never fits within the budget. Once the primary
+		// stalls, it is only priced once the peer has been queried by the hedge.
+		HashedSource pricey = new HashedSource("pricey", Integer.MAX_VALUE, 2) {
+
+			@Override
+			public Expenditure[] getCost(Integer args) throws Exception {
+				if (args == 5)
+					peer.queried.acquire();
+				return new Expenditure[] { new Calls(100) };
+			}
+
+		};
+		CI<Integer, Integer, Double, Double> ci = createCI(primary, pricey, peer, last);
+		hedge(ci, primary, peer);
+
+		for (int i = 0; i < 5; i++)
+			ci.apply(i, new Allowance[] { new Calls(10) }).get();
+		assertEquals(5, peer.calls.get());
+		assertEquals(5, last.calls.get());
+
+		// The hedge takes the peer while the selector is iterating, and the selector carries on to the last source
+		peer.queried.drainPermits();
+		assertEquals(Integer.valueOf(5), ci.apply(5, new Allowance[] { new Calls(10) }).get().getValue());
+		assertEquals(6, peer.calls.get());
+		assertEquals(6, last.calls.get());
+		assertEquals(0, pricey.calls.get());
+		primary.gate.countDown();
+	}
+
+}
@@ -0,0 +1,189 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+import edu.toronto.cs.se.ci.CircuitBreaker.State;
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.contexts.SharedExecutionContext;
+import edu.toronto.cs.se.ci.selectors.AllSelector;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class CircuitBreakerTest extends TestCase {
+
+	public CircuitBreakerTest() {
+		super("CircuitBreakerTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( CircuitBreakerTest.class );
+	}
+
+	/**
+	 * A source which answers with its input, unless it is down, when it throws
+	 */
+	private static class FlakySource extends BasicSource<Integer, Integer, Double> {
+
+		private final String name;
+		private final boolean down;
+		final AtomicInteger calls = new AtomicInteger();
+
+		public FlakySource(String name, boolean down) {
+			this.name = name;
+			this.down = down;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			calls.incrementAndGet();
+			if (down)
+				throw new IllegalStateException("Down");
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	private static void succeed(CircuitBreaker breaker, Source<?, ?, ?> source) {
+		breaker.acquire(source).get().release(Futures.immediateFuture(1));
+	}
+
+	private static void fail(CircuitBreaker breaker, Source<?, ?, ?> source) {
+		breaker.acquire(source).get().release(Futures.immediateFailedFuture(new IllegalStateException("Down")));
+	}
+
+	private static void unknown(CircuitBreaker breaker, Source<?, ?, ?> source) {
+		breaker.acquire(source).get().release(Futures.immediateFailedFuture(new UnknownException()));
+	}
+
+	/**
+	 * Waits for a source's circuit to stop being open
+	 */
+	private static void awaitAvailable(CircuitBreaker breaker, Source<?, ?, ?> source) throws InterruptedException {
+		while (! breaker.isAvailable(source))
+			Thread.sleep(1);
+	}
+
+	public void testOpensAndProbes() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 10000, 100, TimeUnit.MILLISECONDS, 2);
+		FlakySource source = new FlakySource("source", false);
+
+		succeed(breaker, source);
+		succeed(breaker, source);
+		fail(breaker, source);
+		assertEquals(State.CLOSED, breaker.getState(source));
+
+		// Half of the last 4 queries failed
+		fail(breaker, source);
+		assertEquals(State.OPEN, breaker.getState(source));
+		assertFalse(breaker.isAvailable(source));
+		assertFalse(breaker.acquire(source).isPresent());
+
+		// Only 2 probes may run at once, and a bad one opens the circuit again
+		awaitAvailable(breaker, source);
+		assertTrue(breaker.isAvailable(source));
+		CircuitBreaker.Permit first = breaker.acquire(source).get();
+		CircuitBreaker.Permit second = breaker.acquire(source).get();
+		assertEquals(State.HALF_OPEN, breaker.getState(source));
+		assertFalse(breaker.isAvailable(source));
+		assertFalse(breaker.acquire(source).isPresent());
+
+		first.release(Futures.immediateFailedFuture(new IllegalStateException("Down")));
+		assertEquals(State.OPEN, breaker.getState(source));
+		second.release(Futures.immediateFuture(1));
+		assertEquals(State.OPEN, breaker.getState(source));
+
+		// Cancelled probes aren't counted, and 2 good probes close the circuit
+		awaitAvailable(breaker, source);
+		SettableFuture<Integer> cancelled = SettableFuture.create();
+		breaker.acquire(source).get().release(cancelled);
+		cancelled.cancel(false);
+		succeed(breaker, source);
+		assertEquals(State.HALF_OPEN, breaker.getState(source));
+		succeed(breaker, source);
+		assertEquals(State.CLOSED, breaker.getState(source));
+
+		// The window starts again once closed
+		fail(breaker, source);
+		assertEquals(State.CLOSED, breaker.getState(source));
+	}
+
+	public void testUnknownAnswers() {
+		CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 1, 1, TimeUnit.HOURS, 1);
+		FlakySource source = new FlakySource("source", false);
+
+		// A source with no opinion has still answered
+		for (int i = 0; i < 8; i++)
+			unknown(breaker, source);
+		assertEquals(State.CLOSED, breaker.getState(source));
+
+		// Unless unknown answers are counted as failures
+		CircuitBreaker counting = new CircuitBreaker(0.5, 4, 1, 1, TimeUnit.HOURS, 1, true);
+		for (int i = 0; i < 4; i++)
+			unknown(counting, source);
+		assertEquals(State.OPEN, counting.getState(source));
+
+		// Slow unknown answers are still bad
+		CircuitBreaker slow = new CircuitBreaker(1, 2, 0, 1, TimeUnit.HOURS, 1);
+		unknown(slow, source);
+		unknown(slow, source);
+		assertEquals(State.OPEN, slow.getState(source));
+	}
+
+	public void testSlowCalls() {
+		CircuitBreaker breaker = new CircuitBreaker(1, 2, 0, 1, TimeUnit.HOURS, 1);
+		FlakySource source = new FlakySource("source", false);
+
+		// Every query takes longer than no time at all
+		succeed(breaker, source);
+		succeed(breaker, source);
+		assertEquals(State.OPEN, breaker.getState(source));
+	}
+
+	public void testOpenSourcesAreUnavailable() throws Exception {
+		FlakySource up = new FlakySource("up", false);
+		FlakySource down = new FlakySource("down", true);
+		List<Source<Integer, Integer, Double>> sources = new ArrayList<>();
+		sources.add(up);
+		sources.add(down);
+
+		CI<Integer, Integer, Double, Double> ci = new CI<>(sources, new VoteAggregator<Integer>(), new AllSelector<Integer, Integer, Double>());
+		ci.setExecutionContext(new SharedExecutionContext(4));
+		CircuitBreaker breaker = new CircuitBreaker(1, 2, 10, 1, TimeUnit.HOURS, 1);
+		ci.setCircuitBreaker(breaker);
+
+		for (int i = 0; i < 5; i++)
+			assertEquals(Integer.valueOf(i), ci.apply(i, new Allowance[0]).get().getValue());
+
+		// The down source is only queried until its circuit opens
+		assertEquals(State.OPEN, breaker.getState(down));
+		assertEquals(2, down.calls.get());
+		assertEquals(5, up.calls.get());
+	}
+
+}
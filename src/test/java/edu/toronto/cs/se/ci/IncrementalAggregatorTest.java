@@ -0,0 +1,243 @@
+package edu.toronto.cs.se.ci;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import edu.toronto.cs.se.ci.IncrementalAggregator.Accumulator;
+import edu.toronto.cs.se.ci.aggregators.ProbabalisticAggregator;
+import edu.toronto.cs.se.ci.aggregators.SetVotingAggregator;
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.aggregators.WeightedMeanAggregator;
+import edu.toronto.cs.se.ci.data.Evidence;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.data.Result;
+import edu.toronto.cs.se.ci.data.Trust;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class IncrementalAggregatorTest extends TestCase {
+
+	private static final int OPINIONS = 60;
+
+	public IncrementalAggregatorTest() {
+		super("IncrementalAggregatorTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( IncrementalAggregatorTest.class );
+	}
+
+	private final Random random = new Random(42);
+
+	/**
+	 * Feeds the opinions to an accumulator one at a time, and checks that after every opinion its result
+	 * is the result of re-aggregating every opinion so far from scratch
+	 */
+	private static <O, T> void assertIncremental(IncrementalAggregator<O, T, Double> aggregator, List<Opinion<O, T>> opinions,
+			Function<List<Opinion<O, T>>, Result<O, Double>> reaggregate) {
+		Accumulator<O, T, Double> accumulator = aggregator.newAccumulator();
+
+		for (int i = 0; i < opinions.size(); i++) {
+			accumulator.add(opinions.get(i));
+
+			Result<O, Double> incremental = accumulator.getResult().orNull();
+			Result<O, Double> full = reaggregate.apply(opinions.subList(0, i + 1));
+			if (full == null) {
+				assertNull(incremental);
+				continue;
+			}
+
+			// Numeric values are computed in a different order, so are only approximately equal
+			if (full.getValue() instanceof Double)
+				assertEquals("After " + (i + 1) + " opinions", (Double) full.getValue(), (Double) incremental.getValue(), 1e-9);
+			else
+				assertEquals("After " + (i + 1) + " opinions", full.getValue(), incremental.getValue());
+			assertEquals("After " + (i + 1) + " opinions", full.getQuality(), incremental.getQuality(), 1e-9);
+		}
+	}
+
+	private <O, T> List<Opinion<O, T>> opinions(Supplier<O> values, Supplier<T> trusts) {
+		List<Opinion<O, T>> opinions = new ArrayList<>();
+		for (int i = 0; i < OPINIONS; i++)
+			opinions.add(new Opinion<O, T>(values.get(), trusts.get()));
+		return opinions;
+	}
+
+	public void testVote() {
+		// Negative votes take the lead away from the leading value
+		List<Opinion<Integer, Double>> opinions = opinions(() -> random.nextInt(4), () -> random.nextDouble() * 2 - 0.7);
+
+		assertIncremental(new VoteAggregator<Integer>(), opinions, prefix -> {
+			Map<Integer, Double> votes = new HashMap<>();
+			double total = 0;
+			for (Opinion<Integer, Double> opinion : prefix) {
+				votes.merge(opinion.getValue(), opinion.getTrust(), Double::sum);
+				total += opinion.getTrust();
+			}
+
+			Integer best = null;
+			double weight = 0;
+			for (Map.Entry<Integer, Double> vote : votes.entrySet()) {
+				if (vote.getValue() > weight) {
+					best = vote.getKey();
+					weight = vote.getValue();
+				}
+			}
+
+			return new Result<Integer, Double>(best, weight / (weight + 2 * (total - weight) + 1));
+		});
+	}
+
+	public void testVoteTies() {
+		VoteAggregator<Integer> aggregator = new VoteAggregator<>();
+
+		// A tie is kept by the value which reached the weight first, whatever the hash order
+		List<Opinion<Integer, Double>> opinions = new ArrayList<>();
+		opinions.add(new Opinion<Integer, Double>(2, 1.0));
+		opinions.add(new Opinion<Integer, Double>(1, 1.0));
+		assertEquals(Integer.valueOf(2), aggregator.aggregate(opinions).get().getValue());
+
+		// Once a negative vote takes the lead away, the tie goes to the value voted for first
+		opinions.add(new Opinion<Integer, Double>(3, 2.0));
+		assertEquals(Integer.valueOf(3), aggregator.aggregate(opinions).get().getValue());
+		opinions.add(new Opinion<Integer, Double>(3, -1.5));
+		assertEquals(Integer.valueOf(2), aggregator.aggregate(opinions).get().getValue());
+	}
+
+	public void testWeightedMean() {
+		List<Opinion<Double, Double>> opinions = opinions(() -> random.nextGaussian() * 10, () -> random.nextDouble() + 0.1);
+
+		assertIncremental(new WeightedMeanAggregator(), opinions, prefix -> {
+			double sum = 0;
+			double weight = 0;
+			for (Opinion<Double, Double> opinion : prefix) {
+				sum += opinion.getValue() * opinion.getTrust();
+				weight += opinion.getTrust();
+			}
+
+			double mean = sum / weight;
+			double squareDiffSum = 0;
+			for (Opinion<Double, Double> opinion : prefix)
+				squareDiffSum += Math.pow(opinion.getValue() - mean, 2) * opinion.getTrust();
+
+			return new Result<Double, Double>(mean, 1.0 / (Math.sqrt(squareDiffSum / weight) + 1));
+		});
+	}
+
+	public void testWeightedMeanSkipsWeightless() {
+		WeightedMeanAggregator aggregator = new WeightedMeanAggregator();
+
+		// An opinion without weight can't poison the mean, even if its value isn't finite
+		List<Opinion<Double, Double>> opinions = new ArrayList<>();
+		opinions.add(new Opinion<Double, Double>(Double.NaN, 0.0));
+		opinions.add(new Opinion<Double, Double>(Double.POSITIVE_INFINITY, 0.0));
+		Result<Double, Double> result = aggregator.aggregate(opinions).get();
+		assertTrue(result.getValue().isNaN());
+		assertTrue(result.getQuality().isNaN());
+
+		opinions.add(new Opinion<Double, Double>(2.0, 1.0));
+		opinions.add(new Opinion<Double, Double>(4.0, 1.0));
+		result = aggregator.aggregate(opinions).get();
+		assertEquals(3.0, result.getValue(), 1e-9);
+		assertEquals(0.5, result.getQuality(), 1e-9);
+	}
+
+	public void testSetVoting() {
+		final double threshold = 0.4;
+		List<Opinion<Set<Integer>, Double>> opinions = opinions(() -> {
+			Set<Integer> set = new HashSet<>();
+			for (int item = 0; item < 6; item++) {
+				if (random.nextBoolean())
+					set.add(item);
+			}
+			return set;
+		}, () -> random.nextDouble() + 0.1);
+
+		assertIncremental(new SetVotingAggregator<Integer>(threshold), opinions, prefix -> {
+			Set<Integer> result = new HashSet<>();
+			double agreementSum = 0;
+			for (int item = 0; item < 6; item++) {
+				double votes = 0;
+				double total = 0;
+				for (Opinion<Set<Integer>, Double> opinion : prefix) {
+					if (opinion.getValue().contains(item))
+						votes += opinion.getTrust();
+					total += opinion.getTrust();
+				}
+
+				if (votes / total > threshold) {
+					result.add(item);
+					agreementSum += votes / total;
+				}
+			}
+
+			return new Result<Set<Integer>, Double>(result, agreementSum / result.size());
+		});
+	}
+
+	public void testProbabalistic() {
+		final int nOptions = 3;
+		List<Opinion<Integer, Trust>> opinions = opinions(() -> random.nextInt(nOptions), () -> {
+			double belief = random.nextDouble() * 0.9;
+			return new Trust(belief, random.nextDouble() * (0.9 - belief));
+		});
+
+		assertIncremental(new ProbabalisticAggregator<Integer>(nOptions), opinions, prefix -> {
+			// Each option has the evidence for it, and the counter-evidence of every opinion for another option
+			Map<Integer, Evidence> options = new HashMap<>();
+			for (Opinion<Integer, Trust> opinion : prefix)
+				options.put(opinion.getValue(), new Evidence(0, 0));
+
+			for (Opinion<Integer, Trust> opinion : prefix) {
+				Evidence evidence = new Evidence(opinion.getTrust());
+				Evidence counter = new Evidence(evidence.getDissenting() / (nOptions + 1), evidence.getConsenting());
+
+				for (Map.Entry<Integer, Evidence> option : options.entrySet()) {
+					Evidence add = option.getKey().equals(opinion.getValue()) ? evidence : counter;
+					option.setValue(new Evidence(option.getValue().getConsenting() + add.getConsenting(),
+							option.getValue().getDissenting() + add.getDissenting()));
+				}
+			}
+
+			Integer best = null;
+			double belief = 0;
+			for (Map.Entry<Integer, Evidence> option : options.entrySet()) {
+				double optionBelief = new Trust(option.getValue()).getBelief();
+				if (optionBelief > belief) {
+					best = option.getKey();
+					belief = optionBelief;
+				}
+			}
+
+			return best == null ? null : new Result<Integer, Double>(best, belief);
+		});
+	}
+
+	public void testProbabalisticComparesByEquality() {
+		ProbabalisticAggregator<String> aggregator = new ProbabalisticAggregator<>(3);
+
+		// Equal values which are different instances are evidence for the same option
+		List<Opinion<String, Trust>> shared = new ArrayList<>();
+		List<Opinion<String, Trust>> copies = new ArrayList<>();
+		for (String value : new String[] { "a", "a", "b" }) {
+			Trust trust = new Trust(0.6, 0.2);
+			shared.add(new Opinion<String, Trust>(value, trust));
+			copies.add(new Opinion<String, Trust>(new String(value), trust));
+		}
+
+		Result<String, Double> expected = aggregator.aggregate(shared).get();
+		Result<String, Double> result = aggregator.aggregate(copies).get();
+		assertEquals("a", expected.getValue());
+		assertEquals(expected.getValue(), result.getValue());
+		assertEquals(expected.getQuality(), result.getQuality(), 1e-12);
+	}
+
+}
@@ -0,0 +1,108 @@
+package edu.toronto.cs.se.ci.budget;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.toronto.cs.se.ci.budget.basic.Dollars;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class BudgetLedgerTest extends TestCase {
+
+	public BudgetLedgerTest() {
+		super("BudgetLedgerTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( BudgetLedgerTest.class );
+	}
+
+	private static Expenditure[] dollars(String amount) {
+		return new Expenditure[] { new Dollars(new BigDecimal(amount)) };
+	}
+
+	private static BigDecimal remaining(BudgetLedger ledger) {
+		return ledger.getRemaining(Dollars.class).get().getQuantity();
+	}
+
+	public void testReserveAndRefund() {
+		BudgetLedger ledger = new BudgetLedger(4);
+		ledger.setLimit(new Dollars(new BigDecimal("1")));
+
+		BudgetLedger.Reservation first = ledger.reserve(dollars("0.6")).get();
+		assertFalse(ledger.reserve(dollars("0.5")).isPresent());
+
+		// Refunds are only made once, and not after a commit
+		first.refund();
+		first.refund();
+		assertEquals(0, remaining(ledger).compareTo(BigDecimal.ONE));
+
+		BudgetLedger.Reservation second = ledger.reserve(dollars("1")).get();
+		second.commit();
+		second.refund();
+		assertEquals(0, remaining(ledger).signum());
+	}
+
+	public void testRefundsAfterRefillAreDropped() throws Exception {
+		BudgetLedger ledger = new BudgetLedger(4);
+		ledger.setLimit(new Dollars(new BigDecimal("1")), 100, TimeUnit.MILLISECONDS);
+
+		try {
+			BudgetLedger.Reservation old = ledger.reserve(dollars("0.6")).get();
+
+			// Wait for the refill, which forgets the reservation
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (remaining(ledger).compareTo(BigDecimal.ONE) < 0 && System.nanoTime() < deadline)
+				Thread.sleep(10);
+
+			// Its refund belongs to the previous period, so it doesn't raise the new balance over the limit
+			old.refund();
+			assertEquals(0, remaining(ledger).compareTo(BigDecimal.ONE));
+		} finally {
+			ledger.close();
+		}
+	}
+
+	public void testUnlimitedTypesAreIgnored() {
+		BudgetLedger ledger = new BudgetLedger();
+		assertTrue(ledger.reserve(dollars("1000")).isPresent());
+	}
+
+	public void testConcurrentReservations() throws Exception {
+		final BudgetLedger ledger = new BudgetLedger(8);
+		ledger.setLimit(new Dollars(new BigDecimal("100")));
+
+		final AtomicInteger reserved = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread() {
+
+				@Override
+				public void run() {
+					// Reservations can fail while another thread is gathering, so only stop once the ledger is empty
+					for (;;) {
+						if (ledger.reserve(dollars("0.01")).isPresent())
+							reserved.incrementAndGet();
+						else if (remaining(ledger).compareTo(new BigDecimal("0.01")) < 0)
+							break;
+					}
+				}
+
+			};
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads)
+			thread.join();
+
+		// Every cent is spent, and never more
+		assertEquals(10000, reserved.get());
+		assertEquals(0, remaining(ledger).signum());
+	}
+
+}
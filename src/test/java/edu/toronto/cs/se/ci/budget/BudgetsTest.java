@@ -0,0 +1,76 @@
+package edu.toronto.cs.se.ci.budget;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import edu.toronto.cs.se.ci.budget.basic.Calls;
+import edu.toronto.cs.se.ci.budget.basic.Dollars;
+import edu.toronto.cs.se.ci.budget.basic.MicroDollars;
+import edu.toronto.cs.se.ci.budget.basic.RequiredFlag;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class BudgetsTest extends TestCase {
+
+	public BudgetsTest() {
+		super("BudgetsTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( BudgetsTest.class );
+	}
+
+	/**
+	 * A long depletable which isn't fixed-point
+	 */
+	private static class Requests extends LongDepletable {
+
+		public Requests(long quantity) {
+			super(quantity);
+		}
+
+	}
+
+	public void testSplitRoundsUp() {
+		Expenditure[] share = Budgets.split(new Expenditure[] {
+				new Dollars(BigDecimal.ONE), new Calls(10), new MicroDollars(10), new Requests(7) }, 3);
+
+		BigDecimal dollars = ((Dollars) share[0]).getQuantity();
+		assertTrue(dollars.multiply(BigDecimal.valueOf(3)).compareTo(BigDecimal.ONE) >= 0);
+		assertEquals(0, dollars.compareTo(new BigDecimal("0.3333333333333334")));
+		assertEquals(new Calls(4), share[1]);
+		assertEquals(new MicroDollars(4), share[2]);
+		assertEquals(Long.valueOf(3), ((Requests) share[3]).getQuantity());
+
+		// Costs which divide evenly aren't rounded
+		assertEquals(new MicroDollars(3), Budgets.split(new Expenditure[] { new MicroDollars(12) }, 4)[0]);
+	}
+
+	public void testSplitKeepsOtherExpenditures() {
+		Time time = new Time(1, TimeUnit.SECONDS);
+		RequiredFlag flag = new RequiredFlag("flag");
+
+		Expenditure[] share = Budgets.split(new Expenditure[] { time, flag }, 5);
+		assertSame(time, share[0]);
+		assertSame(flag, share[1]);
+	}
+
+	public void testSplitIntoOne() {
+		Expenditure[] cost = { new Dollars(BigDecimal.ONE), new Calls(3) };
+
+		Expenditure[] share = Budgets.split(cost, 1);
+		assertNotSame(cost, share);
+		assertSame(cost[0], share[0]);
+		assertSame(cost[1], share[1]);
+
+		try {
+			Budgets.split(cost, 0);
+			fail("A cost can't be split into no shares");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+}
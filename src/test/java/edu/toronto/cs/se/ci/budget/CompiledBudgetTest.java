@@ -0,0 +1,130 @@
+package edu.toronto.cs.se.ci.budget;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.budget.basic.Calls;
+import edu.toronto.cs.se.ci.budget.basic.Dollars;
+import edu.toronto.cs.se.ci.budget.basic.Flag;
+import edu.toronto.cs.se.ci.budget.basic.MicroDollars;
+import edu.toronto.cs.se.ci.budget.basic.RequiredFlag;
+import edu.toronto.cs.se.ci.budget.basic.RestrictedFlag;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class CompiledBudgetTest extends TestCase {
+
+	private static class Cents extends Dollars {
+
+		public Cents(BigDecimal quantity) {
+			super(quantity);
+		}
+
+	}
+
+	private static final Allowance[][] BUDGETS = {
+		{},
+		{ new Time(1, TimeUnit.SECONDS), new Dollars(new BigDecimal("2.50")), new Flag("network") },
+		{ new MicroDollars(1000), new Calls(2), new Flag("network"), new Flag("cached") },
+		{ new Dollars(new BigDecimal("1")), new Cents(new BigDecimal("1")) },
+		{ new Cents(new BigDecimal("0.5")) },
+	};
+
+	private static final Expenditure[][] COSTS = {
+		{},
+		{ new RequiredFlag("network") },
+		{ new RestrictedFlag("cached") },
+		{ new Time(500, TimeUnit.MILLISECONDS), new Dollars(new BigDecimal("1.25")) },
+		{ new Dollars(new BigDecimal("1.25")), new Dollars(new BigDecimal("1.25")) },
+		{ new Time(2, TimeUnit.SECONDS) },
+		{ new MicroDollars(999), new Calls(1) },
+		{ new MicroDollars(600), new MicroDollars(400) },
+		{ new Calls(1), new Calls(1) },
+		{ new Cents(new BigDecimal("0.25")) },
+	};
+
+	public CompiledBudgetTest() {
+		super("CompiledBudgetTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( CompiledBudgetTest.class );
+	}
+
+	public void testMatchesBudgets() {
+		for (Allowance[] budget : BUDGETS) {
+			CompiledBudget compiled = CompiledBudget.compile(budget);
+
+			for (Expenditure[] cost : COSTS) {
+				String message = Arrays.toString(budget) + " - " + Arrays.toString(cost);
+				CostPlan plan = compiled.plan(cost);
+
+				Optional<Allowance[]> expected = Budgets.expend(budget, cost);
+				Optional<CompiledBudget> actual = compiled.expend(plan, Optional.absent());
+
+				assertEquals(message, expected.isPresent(), compiled.withinBudget(plan, Optional.absent()));
+				assertEquals(message, expected.isPresent(), actual.isPresent());
+				if (expected.isPresent())
+					assertTrue(message, Arrays.equals(expected.get(), actual.get().getBudget()));
+			}
+		}
+	}
+
+	public void testPlansOutliveSpending() {
+		CompiledBudget budget = CompiledBudget.compile(new Allowance[] { new MicroDollars(1000), new Flag("network") });
+		CostPlan plan = budget.plan(new Expenditure[] { new MicroDollars(300), new RequiredFlag("network") });
+		assertFalse(plan.isGeneric());
+
+		for (int spent = 1; spent <= 3; spent++) {
+			budget = budget.expend(plan, Optional.absent()).get();
+			assertEquals(new MicroDollars(1000 - 300 * spent), budget.getBudget()[0]);
+		}
+
+		// 100 left, which doesn't exceed 300
+		assertFalse(budget.withinBudget(plan, Optional.absent()));
+		assertFalse(budget.expend(plan, Optional.absent()).isPresent());
+	}
+
+	public void testGenericFallback() {
+		// Dollars are spent from Cents as well, which the slots can't express
+		CompiledBudget budget = CompiledBudget.compile(BUDGETS[3]);
+		assertTrue(budget.plan(COSTS[3]).isGeneric());
+
+		// A cost whose class has no slot may still be spent from a subclass
+		CostPlan plan = CompiledBudget.compile(BUDGETS[4]).plan(new Expenditure[] { new Dollars(new BigDecimal("0.25")) });
+		assertTrue(plan.isGeneric());
+		assertTrue(CompiledBudget.compile(BUDGETS[4]).withinBudget(plan, Optional.absent()));
+	}
+
+	public void testMixedPlans() {
+		Allowance[] allowances = { new MicroDollars(1000), new Calls(5), new Cents(new BigDecimal("1")), new Flag("network") };
+		CompiledBudget budget = CompiledBudget.compile(allowances);
+
+		Expenditure[] compiledCost = { new MicroDollars(300), new Calls(1) };
+		Expenditure[] genericCost = { new Dollars(new BigDecimal("0.25")), new Calls(1) };
+		CostPlan compiled = budget.plan(compiledCost);
+		CostPlan generic = budget.plan(genericCost);
+		assertFalse(compiled.isGeneric());
+		assertTrue(generic.isGeneric());
+
+		// Spending generically keeps the layout, so the compiled plan is still checked by its slots
+		for (int spent = 0; spent < 2; spent++) {
+			budget = budget.expend(generic, Optional.absent()).get();
+			assertSame(compiled.layout, budget.plan(compiledCost).layout);
+
+			budget = budget.expend(compiled, Optional.absent()).get();
+			allowances = Budgets.expend(Budgets.expend(allowances, genericCost).get(), compiledCost).get();
+			assertTrue(Arrays.equals(allowances, budget.getBudget()));
+		}
+
+		// 400 MicroDollars and 1 Call are left, which don't exceed either cost
+		assertFalse(budget.withinBudget(compiled, Optional.absent()));
+		assertFalse(budget.withinBudget(generic, Optional.absent()));
+	}
+
+}
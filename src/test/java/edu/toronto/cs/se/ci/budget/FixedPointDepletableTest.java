@@ -0,0 +1,57 @@
+package edu.toronto.cs.se.ci.budget;
+
+import java.math.BigDecimal;
+
+import edu.toronto.cs.se.ci.budget.basic.Calls;
+import edu.toronto.cs.se.ci.budget.basic.Dollars;
+import edu.toronto.cs.se.ci.budget.basic.MicroDollars;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class FixedPointDepletableTest extends TestCase {
+
+	public FixedPointDepletableTest() {
+		super("FixedPointDepletableTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( FixedPointDepletableTest.class );
+	}
+
+	public void testDollarConversion() {
+		for (String amount : new String[] { "0", "0.000001", "12.5", "1234567.891011" }) {
+			Dollars dollars = new Dollars(new BigDecimal(amount));
+			assertEquals(dollars, MicroDollars.fromDollars(dollars).toDollars());
+		}
+
+		assertEquals(12500000, MicroDollars.fromDollars(new Dollars(new BigDecimal("12.5"))).getUnits());
+
+		try {
+			MicroDollars.fromDollars(new Dollars(new BigDecimal("0.0000001")));
+			fail("Sub-micro-dollar quantities can't be converted losslessly");
+		} catch (ArithmeticException e) {
+			// Expected
+		}
+	}
+
+	public void testExpend() {
+		Allowance[] budget = { new Calls(3), new MicroDollars(1000) };
+
+		Allowance[] spent = Budgets.expend(budget, new Expenditure[] { new MicroDollars(400), new Calls(1) }).get();
+		assertEquals(new MicroDollars(600), spent[1]);
+		assertEquals(new Calls(2), spent[0]);
+		assertEquals(new MicroDollars(1000), budget[1]);
+
+		// As with other depletables, the allowance must exceed the cost, and be present
+		assertFalse(Budgets.withinBudget(budget, new Expenditure[] { new MicroDollars(1000) }));
+		assertFalse(Budgets.withinBudget(new Allowance[] { new Calls(3) }, new Expenditure[] { new MicroDollars(1) }));
+	}
+
+	public void testSplit() {
+		Expenditure[] share = Budgets.split(new Expenditure[] { new MicroDollars(10), new Calls(3) }, 3);
+		assertEquals(new MicroDollars(4), share[0]);
+		assertEquals(new Calls(1), share[1]);
+	}
+
+}
@@ -0,0 +1,156 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.basic.Calls;
+import edu.toronto.cs.se.ci.contexts.SharedExecutionContext;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class CachingAdaptorTest extends TestCase {
+
+	public CachingAdaptorTest() {
+		super("CachingAdaptorTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( CachingAdaptorTest.class );
+	}
+
+	/**
+	 * A source which answers with its input, and has no opinion on negative inputs
+	 */
+	private static class EchoSource extends BasicSource<Integer, Integer, Double> {
+
+		final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[] { new Calls(1) };
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			calls.incrementAndGet();
+			if (input < 0)
+				throw new UnknownException("No opinion on " + input);
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	/**
+	 * A ticker which only moves when the test advances it
+	 */
+	private static class ManualTicker extends Ticker {
+
+		final AtomicLong nanos = new AtomicLong();
+
+		@Override
+		public long read() {
+			return nanos.get();
+		}
+
+	}
+
+	private final EchoSource around = new EchoSource();
+	private final ManualTicker ticker = new ManualTicker();
+	private final Expenditure[] hitCost = { new Calls(0) };
+	private CachingAdaptor<Integer, Integer, Double> adaptor;
+	private Source<Integer, Integer, Double> source;
+
+	@Override
+	protected void setUp() {
+		CacheBuilder<Object, Object> spec = CacheBuilder.newBuilder().ticker(ticker).expireAfterWrite(1, TimeUnit.MINUTES);
+		adaptor = new CachingAdaptor<>(around, spec, hitCost, new SharedExecutionContext(2));
+		source = adaptor.provide().get(0);
+	}
+
+	public void testHitCost() throws Exception {
+		assertEquals(new Calls(1), source.getCost(1)[0]);
+		assertEquals(Integer.valueOf(1), source.getOpinion(1).getValue());
+
+		// The opinion is cached, so it is answered at the hit cost without querying the source
+		assertSame(hitCost, source.getCost(1));
+		assertEquals(Integer.valueOf(1), source.getOpinionAsync(1, MoreExecutors.sameThreadExecutor()).get(5, TimeUnit.SECONDS).getValue());
+		assertEquals(1, around.calls.get());
+		assertEquals(1, adaptor.getStats().hitCount());
+
+		// Other inputs are charged in full
+		assertEquals(new Calls(1), source.getCost(2)[0]);
+	}
+
+	public void testExpiry() throws Exception {
+		source.getOpinion(1);
+		assertSame(hitCost, source.getCost(1));
+
+		// The opinion expires between the quote and the query, so the query isn't answered with it
+		ticker.nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		assertEquals(Integer.valueOf(1), source.getOpinion(1).getValue());
+		assertEquals(2, around.calls.get());
+		assertSame(hitCost, source.getCost(1));
+	}
+
+	public void testQuotesArePure() throws Exception {
+		source.getOpinion(1);
+
+		// Selectors may ask for the cost any number of times, without querying
+		for (int i = 0; i < 10; i++)
+			assertSame(hitCost, source.getCost(1));
+		assertEquals(0, adaptor.getStats().hitCount());
+
+		// None of those quotes keep the opinion once it expires
+		ticker.nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		assertEquals(new Calls(1), source.getCost(1)[0]);
+		assertEquals(Integer.valueOf(1), source.getOpinion(1).getValue());
+		assertEquals(2, around.calls.get());
+	}
+
+	public void testUnknownPassesThrough() throws Exception {
+		try {
+			source.getOpinion(-1);
+			fail("The source has no opinion");
+		} catch (UnknownException e) {
+			assertEquals("No opinion on -1", e.getMessage());
+		}
+
+		try {
+			source.getOpinionAsync(-1, MoreExecutors.sameThreadExecutor()).get(5, TimeUnit.SECONDS);
+			fail("The source has no opinion");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof UnknownException);
+		}
+
+		// Failures aren't cached
+		assertEquals(2, around.calls.get());
+		assertEquals(new Calls(1), source.getCost(-1)[0]);
+	}
+
+	public void testLoadsOutliveInvocations() throws Exception {
+		// Loads don't run on the invocation's pool, so it may already have been shut down
+		ListeningExecutorService pool = new SharedExecutionContext(1).newInvocationExecutor();
+		pool.shutdownNow();
+
+		assertEquals(Integer.valueOf(3), source.getOpinionAsync(3, pool).get(5, TimeUnit.SECONDS).getValue());
+	}
+
+}
@@ -0,0 +1,169 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import edu.toronto.cs.se.ci.data.Opinion;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class DiskOpinionStoreTest extends TestCase {
+
+	// Each record in these tests is a header, a 9 byte key, an integer value and a double trust
+	private static final int RECORD = 8 + 4 + 9 + 4 + 8;
+	private static final int SEGMENT = 1024;
+
+	public DiskOpinionStoreTest() {
+		super("DiskOpinionStoreTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( DiskOpinionStoreTest.class );
+	}
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("opinions").toFile();
+	}
+
+	@Override
+	protected void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		directory.delete();
+	}
+
+	private DiskOpinionStore<Integer, Integer, Double> open() throws IOException {
+		return new DiskOpinionStore<>(directory, Serializers.INTEGER, Serializers.INTEGER, Serializers.DOUBLE, SEGMENT);
+	}
+
+	private static void put(DiskOpinionStore<Integer, Integer, Double> store, int args, int value) throws IOException {
+		store.put("s", args, new Opinion<Integer, Double>(value, value / 10.0));
+	}
+
+	private static void assertStored(DiskOpinionStore<Integer, Integer, Double> store, int args, int value) {
+		Opinion<Integer, Double> opinion = store.get("s", args).get();
+		assertEquals(Integer.valueOf(value), opinion.getValue());
+		assertEquals(value / 10.0, opinion.getTrust());
+	}
+
+	private File[] segments() {
+		return directory.listFiles((dir, name) -> name.startsWith("segment-"));
+	}
+
+	public void testCrashRecovery() throws IOException {
+		DiskOpinionStore<Integer, Integer, Double> crashed = open();
+		for (int i = 0; i < 5; i++)
+			put(crashed, i, i);
+		put(crashed, 2, 20);
+
+		// The store is never closed, as if the process had died
+		DiskOpinionStore<Integer, Integer, Double> recovered = open();
+		assertEquals(5, recovered.size());
+		assertStored(recovered, 0, 0);
+		assertStored(recovered, 2, 20);
+		assertStored(recovered, 4, 4);
+		assertFalse(recovered.contains("s", 5));
+		assertFalse(recovered.contains("t", 0));
+
+		// New records are appended after the recovered ones
+		put(recovered, 5, 5);
+		recovered.close();
+		crashed.close();
+
+		DiskOpinionStore<Integer, Integer, Double> reopened = open();
+		assertEquals(6, reopened.size());
+		assertStored(reopened, 2, 20);
+		assertStored(reopened, 5, 5);
+		reopened.close();
+	}
+
+	public void testTornRecord() throws IOException {
+		DiskOpinionStore<Integer, Integer, Double> store = open();
+		for (int i = 0; i < 3; i++)
+			put(store, i, i);
+		store.close();
+
+		// Only part of the last record's body reached the disk: its trust is missing
+		try (RandomAccessFile file = new RandomAccessFile(segments()[0], "rw")) {
+			file.seek(3 * RECORD - 8);
+			file.writeLong(0);
+		}
+
+		DiskOpinionStore<Integer, Integer, Double> recovered = open();
+		assertEquals(2, recovered.size());
+		assertStored(recovered, 0, 0);
+		assertStored(recovered, 1, 1);
+		assertFalse(recovered.contains("s", 2));
+
+		// The torn record is overwritten by the next record
+		put(recovered, 3, 3);
+		recovered.close();
+
+		DiskOpinionStore<Integer, Integer, Double> reopened = open();
+		assertEquals(3, reopened.size());
+		assertStored(reopened, 1, 1);
+		assertStored(reopened, 3, 3);
+		reopened.close();
+	}
+
+	public void testCompaction() throws IOException {
+		DiskOpinionStore<Integer, Integer, Double> store = open();
+
+		// Enough records to fill several segments, most of which are replaced
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 10; i++)
+				put(store, i, round * 10 + i);
+		}
+		assertTrue(segments().length > 1);
+		assertEquals(0.9, store.getGarbageRatio(), 1e-9);
+
+		store.compact();
+		assertEquals(0.0, store.getGarbageRatio());
+		assertEquals(1, segments().length);
+		assertEquals(10, store.size());
+		for (int i = 0; i < 10; i++)
+			assertStored(store, i, 90 + i);
+
+		put(store, 10, 10);
+		store.close();
+
+		// The compacted segment is recovered like any other
+		DiskOpinionStore<Integer, Integer, Double> reopened = open();
+		assertEquals(11, reopened.size());
+		assertEquals(0.0, reopened.getGarbageRatio());
+		for (int i = 0; i < 10; i++)
+			assertStored(reopened, i, 90 + i);
+		assertStored(reopened, 10, 10);
+		reopened.close();
+	}
+
+	public void testReopenAfterCompaction() throws IOException {
+		DiskOpinionStore<Integer, Integer, Double> store = open();
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 10; i++)
+				put(store, i, round * 10 + i);
+		}
+
+		// The store is never closed or flushed after compacting, as if the process had died
+		store.compact();
+		assertEquals(1, segments().length);
+
+		DiskOpinionStore<Integer, Integer, Double> reopened = open();
+		assertEquals(10, reopened.size());
+		assertEquals(0.0, reopened.getGarbageRatio());
+		for (int i = 0; i < 10; i++)
+			assertStored(reopened, i, 90 + i);
+		reopened.close();
+		store.close();
+	}
+
+}
@@ -0,0 +1,161 @@
+package edu.toronto.cs.se.ci.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class PersistentAdaptorTest extends TestCase {
+
+	public PersistentAdaptorTest() {
+		super("PersistentAdaptorTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( PersistentAdaptorTest.class );
+	}
+
+	/**
+	 * A source which answers with its input
+	 */
+	private static class EchoSource extends BasicSource<Integer, Integer, Double> {
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	/**
+	 * A serializer which writes more bytes than it reports for negative values
+	 */
+	private static final Serializer<Integer> LYING = new Serializer<Integer>() {
+
+		@Override
+		public int sizeOf(Integer value) {
+			return 4;
+		}
+
+		@Override
+		public void write(Integer value, ByteBuffer buffer) {
+			buffer.putInt(value);
+			if (value < 0)
+				buffer.putInt(value);
+		}
+
+		@Override
+		public Integer read(ByteBuffer buffer) {
+			return buffer.getInt();
+		}
+
+	};
+
+	/**
+	 * A handler which records the log records it is given
+	 */
+	private static class RecordingHandler extends Handler {
+
+		final List<LogRecord> records = Collections.synchronizedList(new ArrayList<LogRecord>());
+
+		@Override
+		public void publish(LogRecord record) {
+			records.add(record);
+		}
+
+		@Override
+		public void flush() {}
+
+		@Override
+		public void close() {}
+
+	}
+
+	private File directory;
+	private Logger logger;
+	private RecordingHandler handler;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("opinions").toFile();
+		logger = Logger.getLogger(PersistentAdaptor.class.getName());
+		handler = new RecordingHandler();
+		logger.addHandler(handler);
+	}
+
+	@Override
+	protected void tearDown() {
+		logger.removeHandler(handler);
+
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		directory.delete();
+	}
+
+	public void testPersists() throws Exception {
+		DiskOpinionStore<Integer, Integer, Double> store = new DiskOpinionStore<>(directory, Serializers.INTEGER, LYING, Serializers.DOUBLE);
+		Source<Integer, Integer, Double> source = new EchoSource();
+		Source<Integer, Integer, Double> adapted = new PersistentAdaptor<>(source, store).provide().get(0);
+
+		assertEquals(Integer.valueOf(1), adapted.getOpinion(1).getValue());
+		assertTrue(store.contains(source.getName(), 1));
+		assertTrue(handler.records.isEmpty());
+		store.close();
+	}
+
+	public void testWriteFailuresAreLogged() throws Exception {
+		// Records are larger than the segments of this store
+		DiskOpinionStore<Integer, Integer, Double> tiny = new DiskOpinionStore<>(directory, Serializers.INTEGER, LYING, Serializers.DOUBLE, 16);
+		Source<Integer, Integer, Double> source = new EchoSource();
+		Source<Integer, Integer, Double> adapted = new PersistentAdaptor<>(source, tiny).provide().get(0);
+
+		// The opinion is still returned, but isn't persisted
+		assertEquals(Integer.valueOf(1), adapted.getOpinion(1).getValue());
+		assertFalse(tiny.contains(source.getName(), 1));
+		tiny.close();
+
+		// A serializer which misbehaves is handled the same way
+		DiskOpinionStore<Integer, Integer, Double> store = new DiskOpinionStore<>(directory, Serializers.INTEGER, LYING, Serializers.DOUBLE);
+		adapted = new PersistentAdaptor<>(source, store).provide().get(0);
+		assertEquals(Integer.valueOf(-1), adapted.getOpinion(-1).getValue());
+		assertFalse(store.contains(source.getName(), -1));
+		store.close();
+
+		assertEquals(2, handler.records.size());
+		for (LogRecord record : handler.records) {
+			assertEquals(Level.WARNING, record.getLevel());
+			assertNotNull(record.getThrown());
+		}
+	}
+
+}
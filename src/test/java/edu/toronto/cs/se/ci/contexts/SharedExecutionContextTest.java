@@ -0,0 +1,169 @@
+package edu.toronto.cs.se.ci.contexts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.Estimate;
+import edu.toronto.cs.se.ci.Selector;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class SharedExecutionContextTest extends TestCase {
+
+	public SharedExecutionContextTest() {
+		super("SharedExecutionContextTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( SharedExecutionContextTest.class );
+	}
+
+	private static class EchoSource extends BasicSource<Integer, Integer, Double> {
+
+		private final String name;
+
+		public EchoSource(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	/**
+	 * A selector which blocks until every source it has chosen has responded, before choosing the next
+	 */
+	private static class SequentialSelector implements Selector<Integer, Integer, Double> {
+
+		@Override
+		public Optional<Source<Integer, Integer, Double>> getNextSource(CI<Integer, Integer, Double, ?>.Invocation invocation) {
+			for (ListenableFuture<Opinion<Integer, Double>> opinion : invocation.getOpinions()) {
+				try {
+					opinion.get();
+				} catch (InterruptedException e) {
+					return Optional.absent();
+				} catch (ExecutionException e) {
+					// The source failed
+				}
+			}
+
+			for (Source<Integer, Integer, Double> source : invocation.getRemaining())
+				return Optional.of(source);
+
+			return Optional.absent();
+		}
+
+	}
+
+	public void testSelectorsDontStarveSources() throws Exception {
+		List<Source<Integer, Integer, Double>> sources = new ArrayList<>();
+		sources.add(new EchoSource("a"));
+		sources.add(new EchoSource("b"));
+
+		// A single thread would be taken by the first selector loop, if sources had to share it
+		CI<Integer, Integer, Double, Double> ci = new CI<>(sources, new VoteAggregator<Integer>(), new SequentialSelector());
+		SharedExecutionContext context = new SharedExecutionContext(1);
+		ci.setExecutionContext(context);
+
+		List<Estimate<Integer, Double>> estimates = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			estimates.add(ci.apply(i, new Allowance[0]));
+
+		for (int i = 0; i < 4; i++)
+			assertEquals(Integer.valueOf(i), estimates.get(i).get(5, TimeUnit.SECONDS).getValue());
+
+		assertTrue(context.shutdown(5, TimeUnit.SECONDS));
+	}
+
+	public void testSelectorPoolIsBounded() throws Exception {
+		List<Source<Integer, Integer, Double>> sources = new ArrayList<>();
+		sources.add(new EchoSource("a"));
+		sources.add(new EchoSource("b"));
+
+		// Records the threads which run selector loops
+		final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+		CI<Integer, Integer, Double, Double> ci = new CI<>(sources, new VoteAggregator<Integer>(), new SequentialSelector() {
+
+			@Override
+			public Optional<Source<Integer, Integer, Double>> getNextSource(CI<Integer, Integer, Double, ?>.Invocation invocation) {
+				threads.add(Thread.currentThread());
+				return super.getNextSource(invocation);
+			}
+
+		});
+		SharedExecutionContext context = new SharedExecutionContext(1, 2);
+		ci.setExecutionContext(context);
+
+		// Loops beyond the bound wait for a free thread, and still finish
+		List<Estimate<Integer, Double>> estimates = new ArrayList<>();
+		for (int i = 0; i < 8; i++)
+			estimates.add(ci.apply(i, new Allowance[0]));
+
+		for (int i = 0; i < 8; i++)
+			assertEquals(Integer.valueOf(i), estimates.get(i).get(5, TimeUnit.SECONDS).getValue());
+
+		assertTrue(threads.size() <= 2);
+		assertTrue(context.shutdown(5, TimeUnit.SECONDS));
+	}
+
+	public void testShutdownWakesWaiters() throws Exception {
+		final ScopedExecutorService executor = new ScopedExecutorService(Executors.newCachedThreadPool());
+		final AtomicBoolean terminated = new AtomicBoolean();
+
+		Thread waiter = new Thread(() -> {
+			try {
+				terminated.set(executor.awaitTermination(1, TimeUnit.MINUTES));
+			} catch (InterruptedException e) {
+				// Leave terminated unset
+			}
+		});
+		waiter.start();
+
+		// Wait for the waiter to block, then shut down an executor with no tasks
+		while (waiter.getState() != Thread.State.TIMED_WAITING)
+			Thread.sleep(1);
+		executor.shutdown();
+
+		waiter.join(TimeUnit.SECONDS.toMillis(5));
+		assertFalse(waiter.isAlive());
+		assertTrue(terminated.get());
+	}
+
+}
@@ -0,0 +1,91 @@
+package edu.toronto.cs.se.ci.contexts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.selectors.AllSelector;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class VirtualThreadExecutionContextTest extends TestCase {
+
+	public VirtualThreadExecutionContextTest() {
+		super("VirtualThreadExecutionContextTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( VirtualThreadExecutionContextTest.class );
+	}
+
+	/**
+	 * A source which answers with its input, after blocking for a moment
+	 */
+	private static class SleepySource extends BasicSource<Integer, Integer, Double> {
+
+		private final String name;
+
+		public SleepySource(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				throw new UnknownException(e);
+			}
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	public void testInvocation() throws Exception {
+		if (! VirtualThreadExecutionContext.isSupported()) {
+			// Older runtimes refuse to create the context, rather than failing invocations later
+			try {
+				new VirtualThreadExecutionContext();
+				fail("The context was created without virtual threads");
+			} catch (UnsupportedOperationException e) {
+				assertTrue(e.getMessage().contains(System.getProperty("java.version")));
+			}
+			return;
+		}
+
+		List<Source<Integer, Integer, Double>> sources = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+			sources.add(new SleepySource("s" + i));
+
+		CI<Integer, Integer, Double, Double> ci = new CI<>(sources, new VoteAggregator<Integer>(), new AllSelector<Integer, Integer, Double>());
+		ci.setExecutionContext(new VirtualThreadExecutionContext());
+
+		assertEquals(Integer.valueOf(7), ci.apply(7, new Allowance[0]).get(5, TimeUnit.SECONDS).getValue());
+	}
+
+}
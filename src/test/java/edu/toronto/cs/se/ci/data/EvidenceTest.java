@@ -0,0 +1,124 @@
+package edu.toronto.cs.se.ci.data;
+
+import org.apache.commons.math.analysis.UnivariateRealFunction;
+import org.apache.commons.math.analysis.integration.TrapezoidIntegrator;
+import org.apache.commons.math.special.Gamma;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class EvidenceTest extends TestCase {
+
+	public EvidenceTest() {
+		super("EvidenceTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( EvidenceTest.class );
+	}
+
+	/**
+	 * The confidence, computed by numerically integrating the density with a trapezoid integrator
+	 */
+	private static double integrated(final double r, final double s) throws Exception {
+		TrapezoidIntegrator integrator = new TrapezoidIntegrator();
+
+		final double intp = integrator.integrate(new UnivariateRealFunction() {
+
+			@Override
+			public double value(double x) {
+				return Math.pow(x, r) * Math.pow(1 - x, s);
+			}
+
+		}, 0, 1);
+
+		return integrator.integrate(new UnivariateRealFunction() {
+
+			@Override
+			public double value(double x) {
+				return Math.abs(Math.pow(x, r) * Math.pow(1 - x, s) / intp - 1);
+			}
+
+		}, 0, 1) / 2;
+	}
+
+	/**
+	 * The confidence, computed with a fine midpoint sum of the density in log space
+	 */
+	private static double summed(double r, double s) {
+		double logBeta = Gamma.logGamma(r + 1) + Gamma.logGamma(s + 1) - Gamma.logGamma(r + s + 2);
+		int n = 1000000;
+
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			double x = (i + 0.5) / n;
+			sum += Math.abs(Math.exp(r * Math.log(x) + s * Math.log1p(-x) - logBeta) - 1);
+		}
+
+		return sum / n / 2;
+	}
+
+	public void testMatchesIntegrator() throws Exception {
+		double[] values = { 0, 0.5, 1, 2, 3.7, 10, 20 };
+
+		for (double r : values) {
+			for (double s : values) {
+				double confidence = new Evidence(r, s).getConfidence();
+				assertEquals("r=" + r + ", s=" + s, integrated(r, s), confidence, 1e-5);
+			}
+		}
+	}
+
+	public void testMatchesSum() {
+		double[] values = { 0.01, 0.5, 3, 60, 400 };
+
+		for (double r : values) {
+			for (double s : values) {
+				double confidence = new Evidence(r, s).getConfidence();
+				assertEquals("r=" + r + ", s=" + s, summed(r, s), confidence, 1e-4);
+			}
+		}
+	}
+
+	public void testLargeEvidence() {
+		double previous = 0;
+
+		// Confidence keeps growing towards 1, where the density would underflow
+		for (double t = 1e3; t <= 1e12; t *= 10) {
+			double confidence = new Evidence(0.3 * t, 0.7 * t).getConfidence();
+			assertTrue("t=" + t, confidence > previous && confidence <= 1);
+			previous = confidence;
+		}
+	}
+
+	public void testTable() {
+		double[] levels = { 0.05, 0.2, 0.45, 0.6, 0.8 };
+		EvidenceTable table = new EvidenceTable(16, Evidence.EPSILON, 1e-3);
+
+		for (double belief : levels) {
+			for (double disbelief : levels) {
+				if (belief + disbelief >= 1)
+					continue;
+
+				Trust trust = new Trust(belief, disbelief);
+				Evidence exact = new Evidence(trust);
+				double confidence = new Trust(exact).getBelief();
+
+				EvidenceTable.install(table);
+				try {
+					// The exact search is itself only within EPSILON of the true total
+					assertEquals(exact.getTotal(), new Evidence(trust).getTotal(), 2 * Evidence.EPSILON);
+					assertEquals(confidence, new Trust(exact).getBelief(), 1e-3);
+				} finally {
+					EvidenceTable.install(null);
+				}
+			}
+		}
+	}
+
+	public void testNoEvidence() {
+		assertEquals(0.0, new Evidence(0, 0).getConfidence());
+	}
+
+}
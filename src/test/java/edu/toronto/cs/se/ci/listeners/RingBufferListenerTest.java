@@ -0,0 +1,192 @@
+package edu.toronto.cs.se.ci.listeners;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.InvocationListener;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.data.Opinion;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class RingBufferListenerTest extends TestCase {
+
+	public RingBufferListenerTest() {
+		super("RingBufferListenerTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( RingBufferListenerTest.class );
+	}
+
+	/**
+	 * A listener which records the elapsed time of each opinion it receives, as an event number. It only
+	 * handles events once its gate is open, and fails on the event numbered {@code failOn}.
+	 */
+	private static class RecordingListener implements InvocationListener {
+
+		final List<Long> received = new ArrayList<>();
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch gate;
+		final long failOn;
+
+		public RecordingListener(CountDownLatch gate, long failOn) {
+			this.gate = gate;
+			this.failOn = failOn;
+		}
+
+		@Override
+		public void opinionReceived(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Opinion<?, ?> opinion, long elapsedNanos) {
+			entered.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			received.add(elapsedNanos);
+			if (elapsedNanos == failOn)
+				throw new IllegalStateException("Listener failed");
+		}
+
+	}
+
+	private static void publish(RingBufferListener listener, long event) {
+		listener.opinionReceived(null, null, null, event);
+	}
+
+	private static List<Long> range(long from, long to) {
+		List<Long> range = new ArrayList<>();
+		for (long i = from; i < to; i++)
+			range.add(i);
+		return range;
+	}
+
+	public void testOrdering() {
+		RecordingListener delegate = new RecordingListener(new CountDownLatch(0), 3);
+		RingBufferListener listener = new RingBufferListener(delegate, 1000);
+
+		for (int i = 0; i < 500; i++)
+			publish(listener, i);
+		listener.close();
+
+		// A failing delegate doesn't stop later events from being delivered
+		assertEquals(range(0, 500), delegate.received);
+		assertEquals(0, listener.getDropped());
+	}
+
+	public void testDropsWhenFull() throws Exception {
+		CountDownLatch gate = new CountDownLatch(1);
+		RecordingListener delegate = new RecordingListener(gate, -1);
+		RingBufferListener listener = new RingBufferListener(delegate, 3);
+
+		// The first event holds its slot until it has been delivered, so the ring of 4 slots is full
+		// after 4 events, however quickly the consumer takes them
+		publish(listener, 0);
+		delegate.entered.await();
+		for (int i = 1; i < 10; i++)
+			publish(listener, i);
+		assertEquals(6, listener.getDropped());
+
+		gate.countDown();
+		listener.close();
+		assertEquals(range(0, 4), delegate.received);
+	}
+
+	public void testCloseDrains() throws Exception {
+		CountDownLatch gate = new CountDownLatch(1);
+		RecordingListener delegate = new RecordingListener(gate, -1);
+		RingBufferListener listener = new RingBufferListener(delegate, 8);
+
+		for (int i = 0; i < 8; i++)
+			publish(listener, i);
+
+		// Closing waits for the delegate to catch up
+		Thread closer = new Thread(listener::close);
+		closer.start();
+		while (closer.getState() != Thread.State.WAITING)
+			Thread.sleep(1);
+		assertTrue(delegate.received.isEmpty());
+
+		gate.countDown();
+		closer.join();
+		assertEquals(range(0, 8), delegate.received);
+		assertEquals(0, listener.getDropped());
+	}
+
+	public void testIdleConsumerParks() throws Exception {
+		Set<Thread> before = Thread.getAllStackTraces().keySet();
+		RecordingListener delegate = new RecordingListener(new CountDownLatch(0), -1);
+		RingBufferListener listener = new RingBufferListener(delegate, 8);
+
+		Thread consumer = null;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("ci-events-") && ! before.contains(thread))
+				consumer = thread;
+		}
+		assertNotNull(consumer);
+
+		// With nothing to deliver, the consumer waits without a timeout, rather than polling the ring
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (consumer.getState() != Thread.State.WAITING && System.nanoTime() < deadline)
+			Thread.sleep(1);
+		assertEquals(Thread.State.WAITING, consumer.getState());
+
+		// The next event wakes it
+		publish(listener, 0);
+		delegate.entered.await(5, TimeUnit.SECONDS);
+		assertEquals(0, delegate.entered.getCount());
+
+		listener.close();
+		assertEquals(range(0, 1), delegate.received);
+	}
+
+	public void testConcurrentProducers() throws Exception {
+		final int producers = 4;
+		final int events = 20000;
+		final RecordingListener delegate = new RecordingListener(new CountDownLatch(0), -1);
+		final RingBufferListener listener = new RingBufferListener(delegate, 1024);
+
+		// Each producer numbers its events from its own base
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			final long base = (long) p * events;
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				for (int i = 0; i < events; i++)
+					publish(listener, base + i);
+			});
+			thread.start();
+			threads.add(thread);
+		}
+
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+		listener.close();
+
+		// Every event is either delivered once, or dropped, and each producer's events arrive in order
+		assertEquals(producers * events, delegate.received.size() + listener.getDropped());
+
+		Map<Long, Long> last = new HashMap<>();
+		for (long event : delegate.received) {
+			long producer = event / events;
+			Long previous = last.put(producer, event);
+			assertTrue(previous == null || previous < event);
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package edu.toronto.cs.se.ci.metrics;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class LatencyHistogramTest extends TestCase {
+
+	public LatencyHistogramTest() {
+		super("LatencyHistogramTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( LatencyHistogramTest.class );
+	}
+
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+		assertEquals(0.0, histogram.getMean(TimeUnit.NANOSECONDS));
+	}
+
+	public void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 20; i++)
+			histogram.record(i);
+
+		assertEquals(10, histogram.getPercentile(50, TimeUnit.NANOSECONDS));
+		assertEquals(20, histogram.getPercentile(100, TimeUnit.NANOSECONDS));
+		assertEquals(1, histogram.getPercentile(0, TimeUnit.NANOSECONDS));
+	}
+
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random random = new Random(42);
+
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++) {
+			// Log-uniform between 1us and 10s
+			values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 7);
+			histogram.record(values[i]);
+		}
+
+		Arrays.sort(values);
+
+		for (double p : new double[] { 1, 50, 90, 95, 99, 99.9, 100 }) {
+			long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+			long estimate = histogram.getPercentile(p, TimeUnit.NANOSECONDS);
+
+			// Never an underestimate, and within the width of a bucket
+			assertTrue("p" + p, estimate >= exact);
+			assertTrue("p" + p, estimate <= exact * 1.04);
+		}
+
+		assertEquals(values[values.length - 1], histogram.getMax(TimeUnit.NANOSECONDS));
+		assertEquals(values.length, histogram.getCount());
+	}
+
+	public void testExtremes() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(0, histogram.getPercentile(50, TimeUnit.NANOSECONDS));
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100, TimeUnit.NANOSECONDS));
+	}
+
+}
@@ -0,0 +1,146 @@
+package edu.toronto.cs.se.ci.metrics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.Bulkhead;
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.Selector;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.basic.Calls;
+import edu.toronto.cs.se.ci.budget.basic.Time;
+import edu.toronto.cs.se.ci.contexts.SharedExecutionContext;
+import edu.toronto.cs.se.ci.selectors.AllSelector;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class MetricsRegistryTest extends TestCase {
+
+	public MetricsRegistryTest() {
+		super("MetricsRegistryTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( MetricsRegistryTest.class );
+	}
+
+	/**
+	 * A source which answers with its input once its gate is open
+	 */
+	private static class GatedSource extends BasicSource<Integer, Integer, Double> {
+
+		private final String name;
+		final CountDownLatch gate;
+
+		public GatedSource(String name, CountDownLatch gate) {
+			this.name = name;
+			this.gate = gate;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new UnknownException(e);
+			}
+			return input;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	public void testTimeoutIsNotAnError() throws Exception {
+		GatedSource fast = new GatedSource("fast", new CountDownLatch(0));
+		GatedSource slow = new GatedSource("slow", new CountDownLatch(1));
+
+		List<Source<Integer, Integer, Double>> sources = new ArrayList<>();
+		sources.add(fast);
+		sources.add(slow);
+
+		CI<Integer, Integer, Double, Double> ci = new CI<>(sources, new VoteAggregator<Integer>(), new AllSelector<Integer, Integer, Double>());
+		ci.setExecutionContext(new SharedExecutionContext(4));
+		MetricsRegistry registry = new MetricsRegistry();
+		ci.setListener(registry);
+
+		// The slow source is cut off at the deadline, which is reported before the estimate is done
+		assertEquals(Integer.valueOf(1), ci.apply(1, new Allowance[] { new Time(50, TimeUnit.MILLISECONDS) }).get().getValue());
+		slow.gate.countDown();
+
+		SourceMetrics metrics = registry.get("slow").get();
+		assertEquals(1, metrics.getQueries());
+		assertEquals(0, metrics.getErrors());
+		assertEquals(1, metrics.getCancellations());
+		assertEquals(0, metrics.getLatency().getCount());
+
+		assertEquals(1, registry.get("fast").get().getSuccesses());
+		assertEquals(0, registry.get("fast").get().getCancellations());
+	}
+
+	public void testUnavailableIsNotARejection() throws Exception {
+		GatedSource busy = new GatedSource("busy", new CountDownLatch(0));
+		GatedSource open = new GatedSource("open", new CountDownLatch(0));
+
+		List<Source<Integer, Integer, Double>> sources = new ArrayList<>();
+		sources.add(busy);
+		sources.add(open);
+
+		// A selector which doesn't check whether sources are available first
+		Selector<Integer, Integer, Double> selector = new Selector<Integer, Integer, Double>() {
+
+			@Override
+			public Optional<Source<Integer, Integer, Double>> getNextSource(CI<Integer, Integer, Double, ?>.Invocation invocation) {
+				Iterator<Source<Integer, Integer, Double>> remaining = invocation.getRemaining().iterator();
+				return remaining.hasNext() ? Optional.of(remaining.next()) : Optional.<Source<Integer, Integer, Double>>absent();
+			}
+
+		};
+
+		CI<Integer, Integer, Double, Double> ci = new CI<>(sources, new VoteAggregator<Integer>(), selector);
+		ci.setExecutionContext(new SharedExecutionContext(4));
+		MetricsRegistry registry = new MetricsRegistry();
+		ci.setListener(registry);
+
+		// The busy source's only place is taken for the whole invocation
+		Bulkhead bulkhead = new Bulkhead(1, 1, 1, 0.5, 2);
+		Bulkhead.Permit permit = bulkhead.acquire(busy).get();
+		ci.setBulkhead(bulkhead);
+
+		assertEquals(Integer.valueOf(1), ci.apply(1, new Allowance[] { new Calls(10) }).get().getValue());
+		permit.abandon();
+
+		SourceMetrics metrics = registry.get("busy").get();
+		assertEquals(1, metrics.getUnavailable());
+		assertEquals(0, metrics.getRejections());
+		assertEquals(0, metrics.getQueries());
+
+		assertEquals(0, registry.get("open").get().getUnavailable());
+		assertEquals(1, registry.get("open").get().getQueries());
+	}
+
+}
@@ -0,0 +1,223 @@
+package edu.toronto.cs.se.ci.selectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Optional;
+
+import edu.toronto.cs.se.ci.Bulkhead;
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.InvocationListener;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.aggregators.ProbabalisticAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.basic.Calls;
+import edu.toronto.cs.se.ci.data.Trust;
+import edu.toronto.cs.se.ci.utils.BasicSource;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class TrustSelectorTest extends TestCase {
+
+	private static final Allowance[] BUDGET = { new Calls(10) };
+
+	public TrustSelectorTest() {
+		super("TrustSelectorTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( TrustSelectorTest.class );
+	}
+
+	/**
+	 * A source which answers with its input, with a fixed prior disbelief and cost, and which counts how
+	 * often its prior trust is computed
+	 */
+	private static class TrustedSource extends BasicSource<Integer, Integer, Trust> {
+
+		private final String name;
+		private final double disbelief;
+		private final int cost;
+		final AtomicInteger priors = new AtomicInteger();
+		final AtomicInteger calls = new AtomicInteger();
+
+		public TrustedSource(String name, double disbelief, int cost) {
+			this.name = name;
+			this.disbelief = disbelief;
+			this.cost = cost;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[] { new Calls(cost) };
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			calls.incrementAndGet();
+			return input;
+		}
+
+		@Override
+		public Trust getTrust(Integer args, Optional<Integer> value) {
+			if (! value.isPresent())
+				priors.incrementAndGet();
+			return new Trust(0.5, disbelief);
+		}
+
+	}
+
+	/**
+	 * A listener which records the names of the sources an invocation selects, in order
+	 */
+	private static class SelectionListener implements InvocationListener {
+
+		final List<String> selected = Collections.synchronizedList(new ArrayList<String>());
+
+		@Override
+		public void sourceSelected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+			selected.add(source.getName());
+		}
+
+	}
+
+	private static CI<Integer, Integer, Trust, Double> ci(TrustSelector<Integer, Integer> selector, SelectionListener listener,
+			List<? extends Source<Integer, Integer, Trust>> sources) {
+		CI<Integer, Integer, Trust, Double> ci = new CI<Integer, Integer, Trust, Double>(
+				new ArrayList<Source<Integer, Integer, Trust>>(sources), new ProbabalisticAggregator<Integer>(), selector);
+		ci.setListener(listener);
+		return ci;
+	}
+
+	public void testOrdersByDisbelief() throws Exception {
+		// Disbeliefs closer together than a truncating comparison could tell apart
+		List<TrustedSource> sources = Arrays.asList(new TrustedSource("a", 0.3, 1), new TrustedSource("b", 0.1, 1),
+				new TrustedSource("c", 0.15, 1), new TrustedSource("d", 0.1001, 1));
+		SelectionListener listener = new SelectionListener();
+
+		ci(new TrustSelector<Integer, Integer>(), listener, sources).apply(1, BUDGET).get();
+		assertEquals(Arrays.asList("b", "d", "c", "a"), listener.selected);
+
+		List<TrustedSource> sorted = new ArrayList<>(sources);
+		Collections.sort(sorted, new TrustSelector.TrustComparator<Integer>(1));
+		assertEquals(Arrays.asList(sources.get(1), sources.get(3), sources.get(2), sources.get(0)), sorted);
+	}
+
+	public void testTrustOncePerInvocation() throws Exception {
+		List<TrustedSource> sources = Arrays.asList(new TrustedSource("a", 0.3, 1), new TrustedSource("b", 0.1, 1),
+				new TrustedSource("c", 0.2, 1));
+		CI<Integer, Integer, Trust, Double> ci = ci(new TrustSelector<Integer, Integer>(), new SelectionListener(), sources);
+
+		// The selector is polled once per source, and once more, but only computes each prior trust once
+		ci.apply(1, BUDGET).get();
+		for (TrustedSource source : sources)
+			assertEquals(1, source.priors.get());
+
+		// Without a cache, the next invocation computes them again
+		ci.apply(1, BUDGET).get();
+		for (TrustedSource source : sources)
+			assertEquals(2, source.priors.get());
+	}
+
+	public void testDropsOverBudget() throws Exception {
+		TrustedSource expensive = new TrustedSource("expensive", 0.2, 5);
+		List<TrustedSource> sources = Arrays.asList(new TrustedSource("a", 0.1, 1), expensive, new TrustedSource("c", 0.3, 1));
+		SelectionListener listener = new SelectionListener();
+
+		// Once "a" has been paid for, "expensive" no longer fits, but "c" still does
+		Allowance[] budget = new Allowance[] { new Calls(3) };
+		ci(new TrustSelector<Integer, Integer>(), listener, sources).apply(1, budget).get();
+
+		assertEquals(Arrays.asList("a", "c"), listener.selected);
+		assertEquals(0, expensive.calls.get());
+		assertEquals(1, expensive.priors.get());
+	}
+
+	public void testRechecksUnavailable() throws Exception {
+		final TrustedSource busy = new TrustedSource("busy", 0.1, 1);
+		List<TrustedSource> sources = Arrays.asList(busy, new TrustedSource("a", 0.2, 1), new TrustedSource("b", 0.3, 1));
+
+		// The busy source's only place is taken, until the first other source is selected
+		Bulkhead bulkhead = new Bulkhead(1, 1, 1, 0.5, 2);
+		final Bulkhead.Permit permit = bulkhead.acquire(busy).get();
+		SelectionListener listener = new SelectionListener() {
+
+			@Override
+			public void sourceSelected(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source) {
+				super.sourceSelected(invocation, source);
+				permit.abandon();
+			}
+
+		};
+
+		CI<Integer, Integer, Trust, Double> ci = ci(new TrustSelector<Integer, Integer>(), listener, sources);
+		ci.setBulkhead(bulkhead);
+		ci.apply(1, BUDGET).get();
+
+		// It was skipped while it was unavailable, but not dropped
+		assertEquals(Arrays.asList("a", "busy", "b"), listener.selected);
+		assertEquals(1, busy.calls.get());
+		assertEquals(1, busy.priors.get());
+	}
+
+	public void testEndsWhenNothingIsAvailable() throws Exception {
+		TrustedSource first = new TrustedSource("first", 0.1, 1);
+		TrustedSource busy = new TrustedSource("busy", 0.2, 1);
+		TrustedSource other = new TrustedSource("other", 0.3, 1);
+		List<TrustedSource> sources = Arrays.asList(first, busy, other);
+
+		// The only places of the two less trusted sources are taken for the whole invocation
+		final Bulkhead bulkhead = new Bulkhead(1, 1, 1, 0.5, 2);
+		final Bulkhead.Permit busyPermit = bulkhead.acquire(busy).get();
+		final Bulkhead.Permit otherPermit = bulkhead.acquire(other).get();
+		SelectionListener listener = new SelectionListener();
+
+		CI<Integer, Integer, Trust, Double> ci = ci(new TrustSelector<Integer, Integer>(), listener, sources);
+		ci.setBulkhead(bulkhead);
+		ci.apply(1, BUDGET).get();
+
+		// The invocation ends without waiting for the unavailable sources
+		assertEquals(Arrays.asList("first"), listener.selected);
+		assertEquals(0, busy.calls.get());
+		assertEquals(0, other.calls.get());
+
+		// Later invocations consult them once they are available again
+		busyPermit.abandon();
+		otherPermit.abandon();
+		ci.apply(1, BUDGET).get();
+		assertEquals(Arrays.asList("first", "first", "busy", "other"), listener.selected);
+	}
+
+	public void testSharedCache() throws Exception {
+		List<TrustedSource> sources = Arrays.asList(new TrustedSource("a", 0.3, 1), new TrustedSource("b", 0.1, 1));
+		SelectionListener listener = new SelectionListener();
+		CI<Integer, Integer, Trust, Double> ci = ci(new TrustSelector<Integer, Integer>(1, TimeUnit.MINUTES, 100), listener, sources);
+
+		// Invocations with the same input share prior trusts, and still query every source in order
+		ci.apply(1, BUDGET).get();
+		ci.apply(1, BUDGET).get();
+		for (TrustedSource source : sources) {
+			assertEquals(1, source.priors.get());
+			assertEquals(2, source.calls.get());
+		}
+		assertEquals(Arrays.asList("b", "a", "b", "a"), listener.selected);
+
+		// Other inputs have their own entries
+		ci.apply(2, BUDGET).get();
+		for (TrustedSource source : sources)
+			assertEquals(2, source.priors.get());
+	}
+
+}
@@ -0,0 +1,201 @@
+package edu.toronto.cs.se.ci.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import edu.toronto.cs.se.ci.CI;
+import edu.toronto.cs.se.ci.Estimate;
+import edu.toronto.cs.se.ci.InvocationListener;
+import edu.toronto.cs.se.ci.Source;
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.aggregators.VoteAggregator;
+import edu.toronto.cs.se.ci.budget.Allowance;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.contexts.SharedExecutionContext;
+import edu.toronto.cs.se.ci.data.Opinion;
+import edu.toronto.cs.se.ci.selectors.AllSelector;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class AsyncSourceTest extends TestCase {
+
+	public AsyncSourceTest() {
+		super("AsyncSourceTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( AsyncSourceTest.class );
+	}
+
+	/**
+	 * A source whose opinions are completed by the test, as an asynchronous client would complete them
+	 */
+	private static class ClientSource extends AsyncSource<Integer, Integer, Double> {
+
+		final SettableFuture<Opinion<Integer, Double>> response = SettableFuture.create();
+
+		@Override
+		public String getName() {
+			return "client";
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public ListenableFuture<Opinion<Integer, Double>> getOpinionAsync(Integer args) {
+			return response;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	/**
+	 * A source which fails before returning a future
+	 */
+	private static class BrokenSource extends Source<Integer, Integer, Double> {
+
+		@Override
+		public String getName() {
+			return "broken";
+		}
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Opinion<Integer, Double> getOpinion(Integer args) throws UnknownException {
+			throw new UnknownException();
+		}
+
+		@Override
+		public ListenableFuture<Opinion<Integer, Double>> getOpinionAsync(Integer args, ListeningExecutorService pool) {
+			throw new IllegalStateException("Not connected");
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	/**
+	 * A basic source whose responses are immediate futures
+	 */
+	private static class ImmediateSource extends BasicSource<Integer, Integer, Double> {
+
+		@Override
+		public Expenditure[] getCost(Integer args) throws Exception {
+			return new Expenditure[0];
+		}
+
+		@Override
+		public Integer getResponse(Integer input) throws UnknownException {
+			throw new AssertionError("Only queried asynchronously");
+		}
+
+		@Override
+		public ListenableFuture<Integer> getResponseAsync(Integer input, ListeningExecutorService pool) {
+			if (input < 0)
+				return Futures.immediateFailedFuture(new UnknownException());
+
+			return Futures.immediateFuture(input);
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return value.isPresent() ? value.get() / 10.0 : 0;
+		}
+
+	}
+
+	@SafeVarargs
+	private static CI<Integer, Integer, Double, Double> createCI(Source<Integer, Integer, Double>... sources) {
+		List<Source<Integer, Integer, Double>> list = new ArrayList<>();
+		for (Source<Integer, Integer, Double> source : sources)
+			list.add(source);
+
+		CI<Integer, Integer, Double, Double> ci = new CI<>(list, new VoteAggregator<Integer>(), new AllSelector<Integer, Integer, Double>());
+		ci.setExecutionContext(new SharedExecutionContext(2));
+		return ci;
+	}
+
+	public void testCompletesOffPool() throws Exception {
+		ClientSource source = new ClientSource();
+		Estimate<Integer, Double> estimate = createCI(source).apply(1, new Allowance[0]);
+
+		// No thread is held while the client works, and the client completes the opinion on its own thread
+		assertFalse(estimate.isDone());
+		Thread client = new Thread(() -> source.response.set(new Opinion<Integer, Double>(7, 1.0)));
+		client.start();
+
+		assertEquals(Integer.valueOf(7), estimate.get(5, TimeUnit.SECONDS).getValue());
+		client.join();
+	}
+
+	public void testFailsSynchronously() throws Exception {
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		CI<Integer, Integer, Double, Double> ci = createCI(new BrokenSource(), new ImmediateSource());
+		ci.setListener(new InvocationListener() {
+
+			@Override
+			public void sourceFailed(CI<?, ?, ?, ?>.Invocation invocation, Source<?, ?, ?> source, Throwable cause, long elapsedNanos) {
+				failure.set(cause);
+			}
+
+		});
+
+		// The broken source is treated as a failed opinion, rather than failing the invocation
+		assertEquals(Integer.valueOf(3), ci.apply(3, new Allowance[0]).get(5, TimeUnit.SECONDS).getValue());
+		assertTrue(failure.get() instanceof IllegalStateException);
+	}
+
+	public void testBasicSourceResponses() throws Exception {
+		ImmediateSource source = new ImmediateSource();
+		ListeningExecutorService pool = MoreExecutors.sameThreadExecutor();
+
+		Opinion<Integer, Double> opinion = source.getOpinionAsync(5, pool).get();
+		assertEquals(Integer.valueOf(5), opinion.getValue());
+		assertEquals(0.5, opinion.getTrust());
+
+		try {
+			source.getOpinionAsync(-1, pool).get();
+			fail("The source has no opinion");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof UnknownException);
+		}
+	}
+
+	public void testSynchronousAccess() throws Exception {
+		ClientSource source = new ClientSource();
+		source.response.setException(new UnknownException("No opinion"));
+
+		try {
+			source.getOpinion(1);
+			fail("The source has no opinion");
+		} catch (UnknownException e) {
+			assertEquals("No opinion", e.getMessage());
+		}
+	}
+
+}
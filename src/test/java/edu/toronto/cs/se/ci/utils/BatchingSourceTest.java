@@ -0,0 +1,138 @@
+package edu.toronto.cs.se.ci.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import edu.toronto.cs.se.ci.UnknownException;
+import edu.toronto.cs.se.ci.budget.Expenditure;
+import edu.toronto.cs.se.ci.budget.basic.Dollars;
+import edu.toronto.cs.se.ci.contexts.SharedExecutionContext;
+import edu.toronto.cs.se.ci.data.Opinion;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class BatchingSourceTest extends TestCase {
+
+	public BatchingSourceTest() {
+		super("BatchingSourceTest");
+	}
+
+	public static Test suite() {
+		return new TestSuite( BatchingSourceTest.class );
+	}
+
+	/**
+	 * A source which answers with its inputs, records its bulk requests, and charges a dollar per request
+	 */
+	private static class EchoBatchSource extends BatchSource<Integer, Integer, Double> {
+
+		final List<List<Integer>> requests = Collections.synchronizedList(new ArrayList<List<Integer>>());
+
+		@Override
+		public String getName() {
+			return "echo";
+		}
+
+		@Override
+		public Expenditure[] getCost(List<Integer> args) throws Exception {
+			return new Expenditure[] { new Dollars(BigDecimal.ONE) };
+		}
+
+		@Override
+		public List<Optional<Opinion<Integer, Double>>> getOpinions(List<Integer> args) throws UnknownException {
+			requests.add(new ArrayList<>(args));
+
+			List<Optional<Opinion<Integer, Double>>> opinions = new ArrayList<>();
+			for (Integer arg : args)
+				opinions.add(Optional.of(new Opinion<Integer, Double>(arg, 1.0)));
+			return opinions;
+		}
+
+		@Override
+		public Double getTrust(Integer args, Optional<Integer> value) {
+			return 1.0;
+		}
+
+	}
+
+	private static BigDecimal dollars(Expenditure[] cost) {
+		return ((Dollars) cost[0]).getQuantity();
+	}
+
+	public void testFullBatch() throws Exception {
+		EchoBatchSource source = new EchoBatchSource();
+		BatchingSource<Integer, Integer, Double> batching = new BatchingSource<>(source, 2, 1, TimeUnit.HOURS, new SharedExecutionContext(2));
+
+		ListenableFuture<Opinion<Integer, Double>> first = batching.getOpinionAsync(1);
+		ListenableFuture<Opinion<Integer, Double>> again = batching.getOpinionAsync(1);
+		ListenableFuture<Opinion<Integer, Double>> second = batching.getOpinionAsync(2);
+
+		// The batch is sent as soon as it holds 2 distinct inputs, long before its window elapses
+		assertEquals(Integer.valueOf(1), first.get(5, TimeUnit.SECONDS).getValue());
+		assertEquals(Integer.valueOf(1), again.get(5, TimeUnit.SECONDS).getValue());
+		assertEquals(Integer.valueOf(2), second.get(5, TimeUnit.SECONDS).getValue());
+		assertEquals(Arrays.asList(Arrays.asList(1, 2)), source.requests);
+	}
+
+	public void testWindowFlush() throws Exception {
+		EchoBatchSource source = new EchoBatchSource();
+		BatchingSource<Integer, Integer, Double> batching = new BatchingSource<>(source, 10, 50, TimeUnit.MILLISECONDS, new SharedExecutionContext(2));
+
+		long start = System.nanoTime();
+		ListenableFuture<Opinion<Integer, Double>> opinion = batching.getOpinionAsync(1);
+
+		// The batch never fills up, so it is sent once its window elapses
+		assertEquals(Integer.valueOf(1), opinion.get(5, TimeUnit.SECONDS).getValue());
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(Arrays.asList(Arrays.asList(1)), source.requests);
+	}
+
+	public void testQuotesArePure() throws Exception {
+		EchoBatchSource source = new EchoBatchSource();
+		BatchingSource<Integer, Integer, Double> batching = new BatchingSource<>(source, 2, 1, TimeUnit.HOURS, new SharedExecutionContext(2));
+
+		ListenableFuture<Opinion<Integer, Double>> a = batching.getOpinionAsync(1);
+
+		// Quotes don't take a place in the batch, so every one is a share of a batch of 2
+		for (int i = 0; i < 10; i++) {
+			assertEquals(0, dollars(batching.getCost(2)).compareTo(new BigDecimal("0.5")));
+			assertEquals(0, dollars(batching.getCost(3)).compareTo(new BigDecimal("0.5")));
+		}
+		assertTrue(source.requests.isEmpty());
+
+		// The first query to join fills the batch, which is sent straight away
+		ListenableFuture<Opinion<Integer, Double>> c = batching.getOpinionAsync(3);
+		assertEquals(Integer.valueOf(1), a.get(5, TimeUnit.SECONDS).getValue());
+		assertEquals(Integer.valueOf(3), c.get(5, TimeUnit.SECONDS).getValue());
+		assertEquals(Arrays.asList(Arrays.asList(1, 3)), source.requests);
+
+		// 2 was quoted for the sent batch, so it starts a new one, and pays for it alone
+		assertEquals(0, dollars(batching.getCost(2)).compareTo(BigDecimal.ONE));
+		assertFalse(batching.getOpinionAsync(2).isDone());
+	}
+
+	public void testQuotesDontDelayFlush() throws Exception {
+		EchoBatchSource source = new EchoBatchSource();
+		BatchingSource<Integer, Integer, Double> batching = new BatchingSource<>(source, 2, 50, TimeUnit.MILLISECONDS, new SharedExecutionContext(2));
+
+		ListenableFuture<Opinion<Integer, Double>> a = batching.getOpinionAsync(1);
+		batching.getCost(2);
+
+		// 2 is never queried, so the batch is sent without it once its window elapses
+		assertEquals(Integer.valueOf(1), a.get(5, TimeUnit.SECONDS).getValue());
+		assertEquals(Arrays.asList(Arrays.asList(1)), source.requests);
+
+		// A late query of 2 joins a new batch
+		assertEquals(Integer.valueOf(2), batching.getOpinionAsync(2).get(5, TimeUnit.SECONDS).getValue());
+		assertEquals(Arrays.asList(Arrays.asList(1), Arrays.asList(2)), source.requests);
+	}
+
+}